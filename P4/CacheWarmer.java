@@ -0,0 +1,214 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filename:   CacheWarmer.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Cache of installation orders for the most frequently queried packages,
+ * filled in background threads by PackageManager.warmCache.
+ *
+ * The cache belongs to the snapshot of the graph taken when warming
+ * started. The warm-up threads only read that immutable snapshot, so live
+ * queries never wait for them; once the graph changes, queries stop using
+ * the cache. Besides the installation orders, the warm-up also builds the
+ * ClosureSets of the snapshot, which PackageManager.getClosureSets then
+ * returns. Calls picked by PackageManager.setProfileSampling are always
+ * computed and do not count as hits or misses.
+ *
+ * The warmer reports its progress and the hit rate of the queries it
+ * served, separately for queries made while warming was still running and
+ * queries made after it finished.
+ */
+public class CacheWarmer {
+	private final PackageManager manager;
+	private final IndexedGraph snapshot;
+	private final List<String> hot;
+
+	// installation orders of the warmed packages, read-only lists
+	private final ConcurrentHashMap<String, List<String>> orders = new ConcurrentHashMap<String, List<String>>();
+
+	// next task, hot packages processed and tasks finished including the closures
+	private final AtomicInteger next = new AtomicInteger();
+	private final AtomicInteger completed = new AtomicInteger();
+	private final AtomicInteger finished = new AtomicInteger();
+	private final CountDownLatch done;
+
+	private final long startNanos = System.nanoTime();
+	private volatile long endNanos;
+
+	// hits and misses while warming and after warming finished
+	private final LongAdder warmingHits = new LongAdder();
+	private final LongAdder warmingMisses = new LongAdder();
+	private final LongAdder warmHits = new LongAdder();
+	private final LongAdder warmMisses = new LongAdder();
+
+	CacheWarmer(PackageManager manager, IndexedGraph snapshot, List<String> hot) {
+		this.manager = manager;
+		this.snapshot = snapshot;
+		this.hot = hot;
+		this.done = new CountDownLatch(hot.size() + 1);
+	}
+
+	/*
+	 * Starts the warm-up threads.
+	 */
+	void start(int threads) {
+		for (int t = 0; t < Math.max(1, threads); t++) {
+			Thread worker = new Thread(this::warm, "cache-warmer-" + t);
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/*
+	 * Body of a warm-up thread: takes the hot packages in order until none
+	 * are left, the task after the last hot package builds the closures.
+	 */
+	private void warm() {
+		int i;
+		while ((i = next.getAndIncrement()) <= hot.size()) {
+			try {
+				if (i == hot.size()) {
+					manager.offerClosureSets(new ClosureSets(snapshot));
+				}
+				else {
+					String pkg = hot.get(i);
+					orders.put(pkg, Collections.unmodifiableList(manager.getInstallationOrder(snapshot, pkg)));
+					completed.incrementAndGet();
+				}
+			}
+			catch (CycleException | PackageNotFoundException e) {
+				// not cached, the query throws again when it is made
+				completed.incrementAndGet();
+			}
+			finally {
+				// the end time is written before the latch opens
+				if (finished.incrementAndGet() == hot.size() + 1) {
+					endNanos = System.nanoTime();
+				}
+				done.countDown();
+			}
+		}
+	}
+
+	/*
+	 * Returns a copy of the cached installation order of pkg, or null if it
+	 * is not cached. Counts the lookup as a hit or a miss.
+	 */
+	List<String> get(String pkg) {
+		List<String> order = orders.get(pkg);
+		boolean warming = isDone() == false;
+		if (order == null) {
+			(warming ? warmingMisses : warmMisses).increment();
+			return null;
+		}
+		(warming ? warmingHits : warmHits).increment();
+		return new ArrayList<String>(order);
+	}
+
+	/*
+	 * Returns the snapshot the cache was built from.
+	 */
+	IndexedGraph getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Returns the packages that are warmed, hottest first.
+	 */
+	public List<String> getHotPackages() {
+		return Collections.unmodifiableList(hot);
+	}
+
+	/**
+	 * Returns the number of hot packages that were processed so far.
+	 */
+	public int getCompleted() {
+		return completed.get();
+	}
+
+	/**
+	 * Returns the number of installation orders in the cache, hot packages
+	 * with a cycle are not cached.
+	 */
+	public int getCachedCount() {
+		return orders.size();
+	}
+
+	/**
+	 * Returns true once every hot package and the closures were processed.
+	 */
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	/**
+	 * Waits until the warm-up is done.
+	 *
+	 * @param timeout the longest time to wait
+	 * @param unit the unit of timeout
+	 * @return true if the warm-up is done, false if the time ran out
+	 * @throws InterruptedException if the current thread is interrupted
+	 */
+	public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+		return done.await(timeout, unit);
+	}
+
+	/**
+	 * Returns how long the warm-up took in milliseconds, or has taken so far.
+	 */
+	public long getElapsedMillis() {
+		long end = isDone() ? endNanos : System.nanoTime();
+		return TimeUnit.NANOSECONDS.toMillis(end - startNanos);
+	}
+
+	/**
+	 * Returns the share of the queries made while warming that were
+	 * answered from the cache, or 0 if there were none.
+	 */
+	public double getHitRateWhileWarming() {
+		return rate(warmingHits.sum(), warmingMisses.sum());
+	}
+
+	/**
+	 * Returns the share of the queries made after warming finished that were
+	 * answered from the cache, or 0 if there were none.
+	 */
+	public double getHitRateAfterWarming() {
+		return rate(warmHits.sum(), warmMisses.sum());
+	}
+
+	/**
+	 * Returns the number of queries answered from the cache.
+	 */
+	public long getHits() {
+		return warmingHits.sum() + warmHits.sum();
+	}
+
+	/**
+	 * Returns the number of queries the cache could not answer.
+	 */
+	public long getMisses() {
+		return warmingMisses.sum() + warmMisses.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "warmed " + getCompleted() + "/" + hot.size() + " packages (" + getCachedCount()
+				+ " cached) in " + getElapsedMillis() + " ms" + (isDone() ? "" : ", running")
+				+ ", hit rate " + String.format("%.2f", getHitRateWhileWarming()) + " while warming, "
+				+ String.format("%.2f", getHitRateAfterWarming()) + " after";
+	}
+
+	private static double rate(long hits, long misses) {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+}
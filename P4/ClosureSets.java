@@ -0,0 +1,411 @@
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Filename:   ClosureSets.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Transitive closures of every package, stored with structural sharing so
+ * that keeping all of them costs far less than one list per package.
+ *
+ * The closures are sets of component numbers of the SCC condensation. As
+ * dependencies always have lower component numbers than their dependents,
+ * the components a package reaches are mostly packed into the low numbers
+ * and the closures of related packages overlap in long runs of equal bits.
+ * Every closure is a sparse bitset split into fixed size chunks, and the
+ * chunks are hash-consed: each distinct chunk exists once and is referenced
+ * by every closure that contains it. Building a closure only copies a chunk
+ * if two different chunks of its dependencies have to be merged.
+ *
+ * Membership is a component lookup, a binary search over the chunks of the
+ * closure and a bit test. Iterating walks the set bits in ascending order,
+ * which is also a valid installation order unless the closure contains a
+ * cycle.
+ */
+public class ClosureSets {
+	// bits per chunk, as a shift and as a number of longs
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_LONGS = (1 << CHUNK_SHIFT) / 64;
+
+	private final IndexedGraph graph;
+	private final StronglyConnectedComponents components;
+
+	// start[c] .. start[c+1] are the vertices of component c in members
+	private final int[] start;
+	private final int[] members;
+
+	// chunks of the closure of every component, ordered by position
+	private final Chunk[][] closures;
+
+	// number of vertices in the closure of every component
+	private final int[] sizes;
+
+	// true if the closure of a component contains a cyclic component
+	private final boolean[] cyclic;
+
+	// number of distinct chunks
+	private final int chunkCount;
+
+	/*
+	 * A hash-consed block of the bitset, never modified once interned.
+	 */
+	private static final class Chunk {
+		final int position;
+		final long[] bits;
+		final int hash;
+
+		// number of vertices in the components of the set bits
+		int weight;
+
+		Chunk(int position, long[] bits) {
+			this.position = position;
+			this.bits = bits;
+			this.hash = 31 * position + Arrays.hashCode(bits);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o instanceof Chunk == false) {
+				return false;
+			}
+			Chunk other = (Chunk) o;
+			return position == other.position && hash == other.hash && Arrays.equals(bits, other.bits);
+		}
+	}
+
+	/**
+	 * Builds the closures of every package of a graph.
+	 *
+	 * @param graph the graph
+	 */
+	public ClosureSets(GraphADT graph) {
+		this(graph, DependencyKind.ALL);
+	}
+
+	/**
+	 * Builds the closures of every package of a graph, following only edges
+	 * with a DependencyKind in mask.
+	 *
+	 * @param graph the graph
+	 * @param mask the DependencyKind bits of the edges to follow
+	 */
+	public ClosureSets(GraphADT graph, int mask) {
+		if (graph instanceof IndexedGraph) {
+			this.graph = (IndexedGraph) graph;
+		}
+		else if (graph instanceof Graph) {
+			this.graph = ((Graph) graph).freeze();
+		}
+		else {
+			this.graph = FrozenGraph.of(graph);
+		}
+
+		components = new StronglyConnectedComponents(this.graph, mask);
+		int count = components.count();
+		int order = this.graph.order();
+
+		// group the vertices by component
+		start = new int[count + 1];
+		for (int vertex = 0; vertex < order; vertex++) {
+			start[components.componentOf(vertex) + 1]++;
+		}
+		for (int c = 0; c < count; c++) {
+			start[c + 1] += start[c];
+		}
+		members = new int[order];
+		int[] fill = Arrays.copyOf(start, count);
+		for (int vertex = 0; vertex < order; vertex++) {
+			members[fill[components.componentOf(vertex)]++] = vertex;
+		}
+
+		closures = new Chunk[count][];
+		sizes = new int[count];
+		cyclic = new boolean[count];
+
+		// scratch space for merging, indexed by chunk position
+		int positions = (count >>> CHUNK_SHIFT) + 1;
+		Chunk[] single = new Chunk[positions];
+		long[][] merged = new long[positions][];
+		int[] touched = new int[positions];
+
+		Map<Chunk, Chunk> interned = new HashMap<Chunk, Chunk>();
+		int[] stamp = new int[count];
+		int[] adjacent = new int[16];
+
+		// dependencies have lower numbers, so their closures are done first
+		for (int c = 0; c < count; c++) {
+			int used = 0;
+			boolean reachesCycle = components.isCyclic(c);
+
+			for (int m = start[c]; m < start[c + 1]; m++) {
+				int vertex = members[m];
+				int degree = this.graph.degreeOf(vertex);
+				if (adjacent.length < degree) {
+					adjacent = new int[degree];
+				}
+				int found = this.graph.adjacentIdsOf(vertex, mask, adjacent, 0);
+				for (int i = 0; i < found; i++) {
+					int d = components.componentOf(adjacent[i]);
+					if (d == c || stamp[d] == c + 1) {
+						continue;
+					}
+					stamp[d] = c + 1;
+					reachesCycle |= cyclic[d];
+
+					// or the closure of d in, sharing its chunks where possible
+					for (Chunk chunk : closures[d]) {
+						int p = chunk.position;
+						if (single[p] == null && merged[p] == null) {
+							single[p] = chunk;
+							touched[used++] = p;
+						}
+						else if (single[p] != chunk) {
+							if (merged[p] == null) {
+								merged[p] = single[p].bits.clone();
+							}
+							or(merged[p], chunk.bits);
+						}
+					}
+				}
+			}
+
+			// add the component itself
+			int p = c >>> CHUNK_SHIFT;
+			int word = (c >>> 6) & (CHUNK_LONGS - 1);
+			long bit = 1L << c;
+			if (single[p] == null && merged[p] == null) {
+				merged[p] = new long[CHUNK_LONGS];
+				touched[used++] = p;
+			}
+			else if (merged[p] == null && (single[p].bits[word] & bit) == 0) {
+				merged[p] = single[p].bits.clone();
+			}
+			if (merged[p] != null) {
+				merged[p][word] |= bit;
+			}
+
+			Arrays.sort(touched, 0, used);
+			Chunk[] closure = new Chunk[used];
+			int size = 0;
+			for (int i = 0; i < used; i++) {
+				int position = touched[i];
+				Chunk chunk = single[position];
+				if (merged[position] != null) {
+					chunk = intern(interned, new Chunk(position, merged[position]));
+				}
+				closure[i] = chunk;
+				size += chunk.weight;
+				single[position] = null;
+				merged[position] = null;
+			}
+			closures[c] = closure;
+			sizes[c] = size;
+			cyclic[c] = reachesCycle;
+		}
+		chunkCount = interned.size();
+	}
+
+	/**
+	 * Returns the closure of a package: the package and everything it
+	 * depends on, directly or indirectly.
+	 *
+	 * @param pkg the package
+	 * @return a read-only set that shares its storage with the other closures
+	 * @throws PackageNotFoundException if the package is not in the graph
+	 */
+	public Set<String> closureOf(String pkg) throws PackageNotFoundException {
+		return new Closure(component(pkg));
+	}
+
+	/**
+	 * Returns an installation order for a package, the same packages as
+	 * PackageManager.getInstallationOrder but not necessarily in the same
+	 * order.
+	 *
+	 * @param pkg the package
+	 * @return a new list of the package and its dependencies, dependencies first
+	 * @throws CycleException if the closure contains a cycle
+	 * @throws PackageNotFoundException if the package is not in the graph
+	 */
+	public List<String> getInstallationOrder(String pkg) throws CycleException, PackageNotFoundException {
+		int c = component(pkg);
+		if (cyclic[c]) {
+			throw new CycleException();
+		}
+		return new ArrayList<String>(new Closure(c));
+	}
+
+	/**
+	 * Returns the graph the closures were built from.
+	 */
+	public IndexedGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the number of distinct chunks shared by all closures.
+	 */
+	public int getChunkCount() {
+		return chunkCount;
+	}
+
+	/**
+	 * Returns the number of chunk references held by all closures.
+	 */
+	public long getChunkReferenceCount() {
+		long references = 0;
+		for (Chunk[] closure : closures) {
+			references += closure.length;
+		}
+		return references;
+	}
+
+	/**
+	 * Returns an estimate of the heap used by the closures in bytes,
+	 * counting the distinct chunks once and a reference per closure chunk.
+	 */
+	public long estimatedBytes() {
+		// object headers and fields of a chunk and its long[]
+		long chunkBytes = 32 + 16 + 8L * CHUNK_LONGS;
+		// a reference per chunk plus the array header of every closure
+		return chunkCount * chunkBytes + 8 * getChunkReferenceCount() + 16L * closures.length;
+	}
+
+	/*
+	 * Returns the component of a package.
+	 */
+	private int component(String pkg) throws PackageNotFoundException {
+		int id = graph.indexOf(pkg);
+		if (id < 0) {
+			throw new PackageNotFoundException();
+		}
+		return components.componentOf(id);
+	}
+
+	/*
+	 * Returns the interned chunk equal to chunk, interning it if it is new.
+	 */
+	private Chunk intern(Map<Chunk, Chunk> interned, Chunk chunk) {
+		Chunk existing = interned.putIfAbsent(chunk, chunk);
+		if (existing != null) {
+			return existing;
+		}
+		int base = chunk.position << CHUNK_SHIFT;
+		for (int w = 0; w < CHUNK_LONGS; w++) {
+			long word = chunk.bits[w];
+			while (word != 0) {
+				int c = base + w * 64 + Long.numberOfTrailingZeros(word);
+				chunk.weight += start[c + 1] - start[c];
+				word &= word - 1;
+			}
+		}
+		return chunk;
+	}
+
+	private static void or(long[] into, long[] bits) {
+		for (int w = 0; w < into.length; w++) {
+			into[w] |= bits[w];
+		}
+	}
+
+	/*
+	 * Read-only view of the closure of one component.
+	 */
+	private final class Closure extends AbstractSet<String> {
+		private final int component;
+
+		Closure(int component) {
+			this.component = component;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (o instanceof String == false) {
+				return false;
+			}
+			int id = graph.indexOf((String) o);
+			if (id < 0) {
+				return false;
+			}
+			int c = components.componentOf(id);
+
+			// binary search for the chunk of c
+			Chunk[] chunks = closures[component];
+			int position = c >>> CHUNK_SHIFT;
+			int low = 0;
+			int high = chunks.length - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int p = chunks[mid].position;
+				if (p < position) {
+					low = mid + 1;
+				}
+				else if (p > position) {
+					high = mid - 1;
+				}
+				else {
+					return (chunks[mid].bits[(c >>> 6) & (CHUNK_LONGS - 1)] & (1L << c)) != 0;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public int size() {
+			return sizes[component];
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+				private final Chunk[] chunks = closures[component];
+				private int chunk = 0;
+				private int word = 0;
+				private long bits = chunks.length == 0 ? 0 : chunks[0].bits[0];
+
+				// members of the current component still to return
+				private int next = 0;
+				private int end = 0;
+
+				public boolean hasNext() {
+					while (next == end) {
+						while (bits == 0) {
+							if (++word == CHUNK_LONGS) {
+								word = 0;
+								if (++chunk == chunks.length) {
+									return false;
+								}
+							}
+							bits = chunks[chunk].bits[word];
+						}
+						int c = (chunks[chunk].position << CHUNK_SHIFT) + word * 64 + Long.numberOfTrailingZeros(bits);
+						bits &= bits - 1;
+						next = start[c];
+						end = start[c + 1];
+					}
+					return true;
+				}
+
+				public String next() {
+					if (hasNext() == false) {
+						throw new NoSuchElementException();
+					}
+					return graph.nameOf(members[next++]);
+				}
+			};
+		}
+	}
+}
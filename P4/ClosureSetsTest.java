@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the structurally shared closure sets
+ * @author Stephen Fan
+ *
+ */
+class ClosureSetsTest {
+
+    /**
+     * Tests that closures contain the same packages as the installation order
+     * and iterate in a valid installation order
+     */
+    @Test
+    public void test1_closuresOfDag() {
+    	try {
+    		PackageManager manager = new PackageManager();
+    		manager.constructGraph("shared_dependencies.json");
+    		ClosureSets closures = manager.getClosureSets();
+
+    		for (String pkg : manager.getAllPackages()) {
+    			Set<String> closure = closures.closureOf(pkg);
+    			List<String> expected = manager.getInstallationOrder(pkg);
+    			if (closure.size() != expected.size() || closure.equals(new HashSet<String>(expected)) == false) {
+    				fail("closure of " + pkg + " should be " + expected + " but was " + closure);
+    			}
+    		}
+
+    		List<String> order = closures.getInstallationOrder("A");
+    		if (order.indexOf("D") > order.indexOf("B") || order.indexOf("D") > order.indexOf("C")
+    				|| order.indexOf("A") != 3) {
+    			fail("installation order of A is not valid: " + order);
+    		}
+    		if (closures.closureOf("B").contains("C") || closures.closureOf("B").contains("missing")) {
+    			fail("closure of B should not contain C or unknown packages");
+    		}
+    		if (manager.getClosureSets() != closures) {
+    			fail("closures should be reused while the graph does not change");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+
+    	try {
+    		new ClosureSets(new Graph()).closureOf("A");
+    		fail("PackageNotFoundException should be thrown");
+    	}
+    	catch (PackageNotFoundException e) {
+    		// expected
+    	}
+    }
+
+    /**
+     * Tests that the closures of a long chain share their chunks instead of
+     * growing quadratically
+     */
+    @Test
+    public void test2_sharedChunks() {
+    	int n = 5000;
+    	Graph graph = new Graph();
+    	for (int i = 1; i < n; i++) {
+    		graph.addEdge("p" + i, "p" + (i - 1));
+    	}
+
+    	ClosureSets closures = new ClosureSets(graph);
+    	try {
+    		Set<String> top = closures.closureOf("p" + (n - 1));
+    		if (top.size() != n || top.contains("p0") == false || top.contains("p2500") == false) {
+    			fail("closure of the last package should contain the whole chain");
+    		}
+    		Set<String> middle = closures.closureOf("p2500");
+    		if (middle.size() != 2501 || middle.contains("p2501") || middle.contains("p2500") == false) {
+    			fail("closure of p2500 should be p0 .. p2500");
+    		}
+
+    		int count = 0;
+    		for (String pkg : closures.getInstallationOrder("p" + (n - 1))) {
+    			if (pkg.equals("p" + count) == false) {
+    				fail("chain should be installed in order");
+    			}
+    			count++;
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+
+    	// n * n / 2 entries as plain lists, a few chunks per closure when shared
+    	if (closures.getChunkCount() > 2 * n || closures.getChunkReferenceCount() > 5L * n) {
+    		fail("closures should share their chunks, " + closures.getChunkCount() + " chunks and "
+    				+ closures.getChunkReferenceCount() + " references");
+    	}
+    }
+
+    /**
+     * Tests closures of cyclic packages and the kinds mask
+     */
+    @Test
+    public void test3_cyclesAndKinds() {
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "B");
+    	graph.addEdge("B", "C");
+    	graph.addEdge("C", "B");
+    	graph.addEdge("D", "E");
+    	graph.addEdge("D", "F", DependencyKind.TEST);
+
+    	try {
+    		ClosureSets closures = new ClosureSets(graph);
+    		Set<String> closure = closures.closureOf("A");
+    		if (closure.size() != 3 || closure.containsAll(List.of("A", "B", "C")) == false) {
+    			fail("closure of A should be A, B and C");
+    		}
+    		try {
+    			closures.getInstallationOrder("A");
+    			fail("CycleException should be thrown");
+    		}
+    		catch (CycleException e) {
+    			// expected
+    		}
+    		if (closures.getInstallationOrder("D").size() != 3) {
+    			fail("D should have 2 dependencies of all kinds");
+    		}
+
+    		ClosureSets runtime = new ClosureSets(graph, DependencyKind.RUNTIME);
+    		if (runtime.closureOf("D").contains("F") || runtime.closureOf("D").size() != 2) {
+    			fail("runtime closure of D should not contain its test dependency");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    }
+}
@@ -0,0 +1,316 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filename:   CompressedGraph.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Immutable, compressed copy of a graph for very large registries.
+ * 
+ * Vertices are numbered by sorted name. The dependency list of every vertex
+ * is sorted, de-duplicated and stored in one contiguous byte[] as
+ * [degree][first id][gap][gap]..., each number written as a varint. Since
+ * neighbour ids are sorted the gaps are small, so most edges take 1 to 3
+ * bytes. Lists are decoded on the fly when they are traversed.
+ * 
+ * The lowest bit of the degree varint tells whether the list has an edge
+ * that is not RUNTIME; only such lists are followed by one DependencyKind
+ * byte per edge, and the kinds of duplicate edges are merged.
+ * 
+ * Mutating methods throw UnsupportedOperationException.
+ */
+public class CompressedGraph implements IndexedGraph {
+	// vertex names in sorted order, the position is the vertex id
+	private final String[] names;
+	
+	// offsets[id] is where the list of vertex id starts in adjacency
+	private final int[] offsets;
+	
+	// varint encoded dependency lists of all vertices
+	private final byte[] adjacency;
+	
+	// number of edges after de-duplication
+	private final int edgeCount;
+	
+	private final Set<String> vertexSet;
+	
+	/**
+	 * Builds a compressed copy of the given graph.
+	 * 
+	 * @param graph the graph to compress
+	 */
+	public CompressedGraph(GraphADT graph) {
+		// number the vertices by sorted name
+		names = graph.getAllVertices().toArray(new String[0]);
+		Arrays.sort(names);
+		offsets = new int[names.length + 1];
+		
+		// encode every dependency list into one growing buffer
+		byte[] buffer = new byte[Math.max(16, names.length * 2)];
+		int length = 0;
+		int edges = 0;
+		long[] ids = new long[16];
+		
+		for (int id = 0; id < names.length; id++) {
+			offsets[id] = length;
+			List<String> adjacent = graph.getAdjacentVerticesOf(names[id]);
+			int degree = 0;
+			
+			// translate names to ids, with the kinds in the low bits
+			if (ids.length < adjacent.size()) {
+				ids = new long[adjacent.size()];
+			}
+			for (int i = 0; i < adjacent.size(); i++) {
+				int dependencyId = Arrays.binarySearch(names, adjacent.get(i));
+				if (dependencyId >= 0) {
+					ids[degree++] = ((long) dependencyId << 4) | DependencyKind.of(graph, names[id], i);
+				}
+			}
+			
+			// sort and remove duplicate edges, merging their kinds
+			Arrays.sort(ids, 0, degree);
+			int unique = 0;
+			boolean typed = false;
+			for (int i = 0; i < degree; i++) {
+				if (unique > 0 && ids[i] >>> 4 == ids[unique - 1] >>> 4) {
+					ids[unique - 1] |= ids[i] & DependencyKind.ALL;
+				}
+				else {
+					ids[unique++] = ids[i];
+				}
+			}
+			for (int i = 0; i < unique; i++) {
+				typed |= (ids[i] & DependencyKind.ALL) != DependencyKind.RUNTIME;
+			}
+			
+			// worst case 5 bytes per varint and a kind byte per edge
+			if (buffer.length - length < (unique + 1) * 6) {
+				long grown = Math.max((long) buffer.length * 2, (long) length + (unique + 1) * 6);
+				if (grown > Integer.MAX_VALUE - 8) {
+					throw new IllegalArgumentException("graph too large to compress");
+				}
+				buffer = Arrays.copyOf(buffer, (int) grown);
+			}
+			
+			length = writeVarint(buffer, length, unique << 1 | (typed ? 1 : 0));
+			int previous = 0;
+			for (int i = 0; i < unique; i++) {
+				int dependencyId = (int) (ids[i] >>> 4);
+				length = writeVarint(buffer, length, dependencyId - previous);
+				previous = dependencyId;
+			}
+			if (typed) {
+				for (int i = 0; i < unique; i++) {
+					buffer[length++] = (byte) (ids[i] & DependencyKind.ALL);
+				}
+			}
+			edges += unique;
+		}
+		
+		offsets[names.length] = length;
+		adjacency = Arrays.copyOf(buffer, length);
+		edgeCount = edges;
+		vertexSet = new IndexedVertexSet(this);
+	}
+
+	/**
+	 * Not supported, the compressed graph is immutable.
+	 */
+	public void addVertex(String vertex) {
+		throw new UnsupportedOperationException("CompressedGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the compressed graph is immutable.
+	 */
+	public void removeVertex(String vertex) {
+		throw new UnsupportedOperationException("CompressedGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the compressed graph is immutable.
+	 */
+	public void addEdge(String vertex1, String vertex2) {
+		throw new UnsupportedOperationException("CompressedGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the compressed graph is immutable.
+	 */
+	public void removeEdge(String vertex1, String vertex2) {
+		throw new UnsupportedOperationException("CompressedGraph is immutable");
+	}
+
+	/**
+     * Returns a read-only Set that contains all the vertices
+	 */
+	public Set<String> getAllVertices() {
+		return vertexSet;
+	}
+
+	/**
+     * Get all the neighbor (adjacent) vertices of a vertex, decoded into
+     * a new list, or null if the vertex does not exist
+	 */
+	public List<String> getAdjacentVerticesOf(String vertex) {
+		int id = indexOf(vertex);
+		if (id < 0) {
+			return null;
+		}
+		
+		int[] ids = new int[degreeOf(id)];
+		int count = adjacentIdsOf(id, ids, 0);
+		
+		List<String> adjacent = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			adjacent.add(names[ids[i]]);
+		}
+		return adjacent;
+	}
+
+	/**
+     * Returns the number of edges in this graph.
+     */
+	public int size() {
+		return edgeCount;
+	}
+
+	/**
+     * Returns the number of vertices in this graph.
+     */
+	public int order() {
+		return names.length;
+	}
+
+	public int indexOf(String vertex) {
+		if (vertex == null) {
+			return -1;
+		}
+		int id = Arrays.binarySearch(names, vertex);
+		return id >= 0 ? id : -1;
+	}
+
+	public String nameOf(int id) {
+		return names[id];
+	}
+
+	public int degreeOf(int id) {
+		// the degree is the first varint of the list
+		return readHeader(offsets[id]) >>> 1;
+	}
+
+	public int adjacentIdsOf(int id, int[] dest, int offset) {
+		int position = offsets[id];
+		int header = readHeader(position);
+		int degree = header >>> 1;
+		position = skipVarint(position);
+		
+		// decode [first][gap]... inline to avoid per-value calls
+		int previous = 0;
+		for (int count = 0; count < degree; count++) {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = adjacency[position++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			previous += value;
+			dest[offset + count] = previous;
+		}
+		
+		return degree;
+	}
+	
+	@Override
+	public int adjacentIdsOf(int id, int mask, int[] dest, int offset) {
+		int header = readHeader(offsets[id]);
+		if ((header & 1) == 0) {
+			return (mask & DependencyKind.RUNTIME) != 0 ? adjacentIdsOf(id, dest, offset) : 0;
+		}
+		
+		// the kind bytes follow the last id of the list
+		int degree = adjacentIdsOf(id, dest, offset);
+		int kinds = offsets[id + 1] - degree;
+		int count = 0;
+		for (int i = 0; i < degree; i++) {
+			if ((adjacency[kinds + i] & mask) != 0) {
+				dest[offset + count++] = dest[offset + i];
+			}
+		}
+		return count;
+	}
+	
+	/*
+	 * Returns the kinds of the i-th edge of vertex id.
+	 */
+	int kindsAt(int id, int i) {
+		int header = readHeader(offsets[id]);
+		if ((header & 1) == 0) {
+			return DependencyKind.RUNTIME;
+		}
+		return adjacency[offsets[id + 1] - (header >>> 1) + i];
+	}
+	
+	/*
+	 * Reads the varint at position, the header of a list.
+	 */
+	private int readHeader(int position) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = adjacency[position++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+	
+	/*
+	 * Returns the position after the varint at position.
+	 */
+	private int skipVarint(int position) {
+		while (adjacency[position] < 0) {
+			position++;
+		}
+		return position + 1;
+	}
+	
+	/**
+	 * Returns the number of bytes used by the adjacency lists, excluding the
+	 * vertex names. Divide by size() for the bytes per edge.
+	 */
+	public long adjacencyBytes() {
+		return adjacency.length + (long) offsets.length * Integer.BYTES;
+	}
+	
+	/*
+	 * Estimated retained heap of the names and adjacency of this graph. See
+	 * GraphStats.
+	 */
+	long estimatedBytes() {
+		// adjacencyBytes() plus the headers of its two arrays
+		long bytes = 32 + GraphStats.arrayBytes(4, names.length) + GraphStats.align(32 + adjacencyBytes());
+		for (String name : names) {
+			bytes += GraphStats.stringBytes(name);
+		}
+		return bytes;
+	}
+	
+	/*
+	 * Writes value as an unsigned LEB128 varint and returns the new position.
+	 */
+	private static int writeVarint(byte[] buffer, int position, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+		return position;
+	}
+}
@@ -0,0 +1,125 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the compressed immutable graph representation
+ * @author Stephen Fan
+ *
+ */
+class CompressedGraphTest {
+
+    /** 
+     * Tests that a compressed graph keeps all vertices and de-duplicated edges
+     */
+    @Test
+    public void test1_compressGraph() {
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "C");
+    	graph.addEdge("A", "B");
+    	graph.addEdge("A", "B");
+    	graph.addEdge("B", "D");
+    	graph.addVertex("E");
+    	
+    	CompressedGraph compressed = new CompressedGraph(graph);
+    	
+    	if (compressed.order() != 5) {
+    		fail("order should be 5");
+    	}
+    	if (compressed.size() != 3) {
+    		fail("duplicate edge should be removed, size should be 3");
+    	}
+    	
+    	// adjacency is decoded in sorted order
+    	List<String> adjacent = compressed.getAdjacentVerticesOf("A");
+    	if (adjacent.size() != 2 || adjacent.get(0).equals("B") == false 
+    			|| adjacent.get(1).equals("C") == false) {
+    		fail("adjacent vertices of A should be [B, C]");
+    	}
+    	if (compressed.getAdjacentVerticesOf("X") != null) {
+    		fail("unknown vertex should have no adjacent vertices");
+    	}
+    	if (compressed.getAllVertices().contains("E") == false) {
+    		fail("vertex set should contain E");
+    	}
+    }
+    
+    /** 
+     * Tests that PackageManager resolves installation orders over a compressed graph
+     */
+    @Test
+    public void test2_installationOrder() {
+    	// same graph as jsonfile.json
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "B");
+    	graph.addEdge("A", "C");
+    	graph.addEdge("B", "D");
+    	graph.addEdge("C", "D");
+    	
+    	PackageManager pm = new PackageManager(new CompressedGraph(graph));
+    	List<String> list = null;
+    	try {
+    		list = pm.getInstallationOrder("A");
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    	
+    	if (list.size() != 4 || list.get(0).equals("D") == false || list.get(3).equals("A") == false) {
+    		fail("Installation order is not correct");
+    	}
+    	
+    	// large ids need multi-byte varints
+    	Graph wide = new Graph();
+    	for (int i = 0; i < 1000; i++) {
+    		wide.addEdge("root", "pkg" + i);
+    	}
+    	CompressedGraph compressed = new CompressedGraph(wide);
+    	if (compressed.getAdjacentVerticesOf("root").size() != 1000) {
+    		fail("root should have 1000 dependencies");
+    	}
+    	if (compressed.adjacencyBytes() > 4 * compressed.size() + 4 * (compressed.order() + 1) + 2) {
+    		fail("adjacency should take at most 4 bytes per edge");
+    	}
+    }
+
+    /**
+     * Tests that the kinds of the edges are kept and masked traversals
+     * follow only the requested kinds
+     */
+    @Test
+    public void test3_dependencyKinds() {
+    	try {
+    		PackageManager typed = new PackageManager();
+    		typed.constructGraph("typed.json");
+    		CompressedGraph graph = new CompressedGraph(typed.getGraph());
+    		PackageManager pm = new PackageManager(graph);
+    		
+    		if (pm.getInstallationOrder("app", DependencyKind.RUNTIME).equals(List.of("core", "lib", "app")) == false) {
+    			fail("runtime order of app should be core, lib, app");
+    		}
+    		// dependencies may be listed in a different order than in the file
+    		List<String> test = pm.getInstallationOrder("app", DependencyKind.TEST);
+    		if (test.size() != 3 || test.containsAll(List.of("lib", "junit")) == false || test.get(2).equals("app") == false) {
+    			fail("test order of app should be lib and junit, then app");
+    		}
+    		List<String> build = pm.getInstallationOrder("app", DependencyKind.BUILD);
+    		if (build.size() != 2 || build.get(0).equals("compiler") == false) {
+    			fail("build order of app should be compiler, app");
+    		}
+    		if (pm.getInstallationOrder("app").size() != 8) {
+    			fail("every kind should reach all 8 packages");
+    		}
+    		
+    		// a copy of the copy keeps the kinds too
+    		if (new PackageManager(FrozenGraph.of(graph)).getInstallationOrder("app", DependencyKind.TEST).size() != 3) {
+    			fail("a snapshot of the graph should keep the kinds");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    }
+}
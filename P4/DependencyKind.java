@@ -0,0 +1,76 @@
+/**
+ * Filename:   DependencyKind.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Kinds of dependency edges. Every edge stores its kinds as a bitmask of
+ * these constants, and traversals take a mask of the kinds to follow, e.g.
+ * RUNTIME | BUILD. Edges added without a kind are RUNTIME edges.
+ *
+ * In the json file the kinds are listed under separate keys:
+ * "dependencies" (runtime), "buildDependencies", "testDependencies" and
+ * "optionalDependencies".
+ */
+public final class DependencyKind {
+	public static final int RUNTIME = 1;
+	public static final int BUILD = 2;
+	public static final int TEST = 4;
+	public static final int OPTIONAL = 8;
+
+	// every kind
+	public static final int ALL = RUNTIME | BUILD | TEST | OPTIONAL;
+
+	// every single kind, in the order of their bits
+	static final int[] KINDS = { RUNTIME, BUILD, TEST, OPTIONAL };
+
+	private DependencyKind() {
+	}
+
+	/**
+	 * Returns the json key that lists the dependencies of a single kind.
+	 *
+	 * @param kind one of RUNTIME, BUILD, TEST or OPTIONAL
+	 * @return the key, e.g. "buildDependencies"
+	 */
+	public static String jsonKey(int kind) {
+		switch (kind) {
+			case RUNTIME:
+				return "dependencies";
+			case BUILD:
+				return "buildDependencies";
+			case TEST:
+				return "testDependencies";
+			case OPTIONAL:
+				return "optionalDependencies";
+			default:
+				throw new IllegalArgumentException("not a single dependency kind: " + kind);
+		}
+	}
+
+	/*
+	 * Returns the kinds of the i-th edge of vertex for the graphs that store
+	 * kinds, RUNTIME for the others.
+	 */
+	static int of(GraphADT graph, String vertex, int i) {
+		if (graph instanceof Graph) {
+			return ((Graph) graph).kindsAt(vertex, i);
+		}
+		if (graph instanceof FrozenGraph) {
+			FrozenGraph frozen = (FrozenGraph) graph;
+			return frozen.kindsAt(frozen.indexOf(vertex), i);
+		}
+		if (graph instanceof LazyGraph) {
+			LazyGraph lazy = (LazyGraph) graph;
+			return lazy.kindsAt(lazy.indexOf(vertex), i);
+		}
+		if (graph instanceof CompressedGraph) {
+			CompressedGraph compressed = (CompressedGraph) graph;
+			return compressed.kindsAt(compressed.indexOf(vertex), i);
+		}
+		if (graph instanceof OffHeapGraph) {
+			OffHeapGraph offHeap = (OffHeapGraph) graph;
+			return offHeap.kindsAt(offHeap.indexOf(vertex), i);
+		}
+		return RUNTIME;
+	}
+}
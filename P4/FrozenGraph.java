@@ -0,0 +1,306 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filename:   FrozenGraph.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Immutable, read-optimised snapshot of a graph, created by Graph.freeze().
+ * 
+ * Vertices are numbered by sorted name. All dependency lists are stored
+ * back to back in a single int[] (compressed sparse row layout), so a
+ * traversal walks contiguous memory instead of chasing HashMap entries and
+ * ArrayList objects. Names are found through an open-addressing hash table
+ * of ids. The DependencyKind bits of every edge are kept in a byte[]
+ * parallel to the targets, or not at all if every edge is RUNTIME. All
+ * fields are final and never modified after construction, so a snapshot
+ * can be shared between threads without synchronization.
+ * 
+ * Mutating methods throw UnsupportedOperationException.
+ */
+public class FrozenGraph implements IndexedGraph {
+	// vertex names in sorted order, the position is the vertex id
+	private final String[] names;
+	
+	// open-addressing table of id + 1 (0 is an empty slot), length is a power of two
+	private final int[] table;
+	
+	// offsets[id] .. offsets[id+1] are the dependencies of vertex id in targets
+	private final int[] offsets;
+	private final int[] targets;
+	
+	// kinds[i] are the kinds of targets[i], null if all edges are RUNTIME
+	private final byte[] kinds;
+	
+	private final Set<String> vertexSet;
+	
+	/*
+	 * Builds the snapshot, use Graph.freeze() or FrozenGraph.of()
+	 */
+	private FrozenGraph(GraphADT graph) {
+		// number the vertices by sorted name
+		names = graph.getAllVertices().toArray(new String[0]);
+		Arrays.sort(names);
+		
+		table = buildTable(names);
+		
+		// copy the dependency lists in their original order, with the kinds
+		// of the edges if the graph stores them
+		offsets = new int[names.length + 1];
+		int[] edges = new int[Math.max(1, graph.size())];
+		byte[] edgeKinds = null;
+		int count = 0;
+		for (int id = 0; id < names.length; id++) {
+			offsets[id] = count;
+			List<String> adjacent = graph.getAdjacentVerticesOf(names[id]);
+			for (int i = 0; i < adjacent.size(); i++) {
+				int dependencyId = indexOf(adjacent.get(i));
+				if (dependencyId >= 0) {
+					if (count == edges.length) {
+						edges = Arrays.copyOf(edges, count * 2);
+					}
+					int kind = DependencyKind.of(graph, names[id], i);
+					if (kind != DependencyKind.RUNTIME && edgeKinds == null) {
+						edgeKinds = new byte[edges.length];
+						Arrays.fill(edgeKinds, (byte) DependencyKind.RUNTIME);
+					}
+					if (edgeKinds != null) {
+						if (edgeKinds.length < edges.length) {
+							int length = edgeKinds.length;
+							edgeKinds = Arrays.copyOf(edgeKinds, edges.length);
+							Arrays.fill(edgeKinds, length, edgeKinds.length, (byte) DependencyKind.RUNTIME);
+						}
+						edgeKinds[count] = (byte) kind;
+					}
+					edges[count++] = dependencyId;
+				}
+			}
+		}
+		offsets[names.length] = count;
+		targets = edges.length == count ? edges : Arrays.copyOf(edges, count);
+		kinds = edgeKinds == null || edgeKinds.length == count ? edgeKinds : Arrays.copyOf(edgeKinds, count);
+		
+		vertexSet = new IndexedVertexSet(this);
+	}
+	
+	/*
+	 * Wraps arrays that are already laid out, used by GraphBuilder. names must
+	 * be sorted, kinds may be null if all edges are RUNTIME and the arrays 
+	 * must not be modified afterwards.
+	 */
+	FrozenGraph(String[] names, int[] offsets, int[] targets, byte[] kinds) {
+		this.names = names;
+		this.table = buildTable(names);
+		this.offsets = offsets;
+		this.targets = targets;
+		this.kinds = kinds;
+		this.vertexSet = new IndexedVertexSet(this);
+	}
+	
+	/**
+	 * Returns a frozen snapshot of any graph. For a Graph, prefer
+	 * Graph.freeze() which caches the snapshot until the next mutation.
+	 * 
+	 * @param graph the graph to copy
+	 * @return the snapshot
+	 */
+	public static FrozenGraph of(GraphADT graph) {
+		if (graph instanceof FrozenGraph) {
+			return (FrozenGraph) graph;
+		}
+		return new FrozenGraph(graph);
+	}
+
+	/**
+	 * Not supported, the frozen graph is immutable.
+	 */
+	public void addVertex(String vertex) {
+		throw new UnsupportedOperationException("FrozenGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the frozen graph is immutable.
+	 */
+	public void removeVertex(String vertex) {
+		throw new UnsupportedOperationException("FrozenGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the frozen graph is immutable.
+	 */
+	public void addEdge(String vertex1, String vertex2) {
+		throw new UnsupportedOperationException("FrozenGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the frozen graph is immutable.
+	 */
+	public void removeEdge(String vertex1, String vertex2) {
+		throw new UnsupportedOperationException("FrozenGraph is immutable");
+	}
+
+	/**
+     * Returns a read-only Set that contains all the vertices
+	 */
+	public Set<String> getAllVertices() {
+		return vertexSet;
+	}
+
+	/**
+     * Get all the neighbor (adjacent) vertices of a vertex as a read-only
+     * list, or null if the vertex does not exist
+	 */
+	public List<String> getAdjacentVerticesOf(String vertex) {
+		int id = indexOf(vertex);
+		if (id < 0) {
+			return null;
+		}
+		
+		List<String> adjacent = new ArrayList<String>(offsets[id + 1] - offsets[id]);
+		for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+			adjacent.add(names[targets[i]]);
+		}
+		return Collections.unmodifiableList(adjacent);
+	}
+	
+	/**
+     * Get the adjacent vertices of a vertex whose edge has any of the given
+     * kinds as a read-only list, or null if the vertex does not exist
+	 */
+	public List<String> getAdjacentVerticesOf(String vertex, int mask) {
+		int id = indexOf(vertex);
+		if (id < 0) {
+			return null;
+		}
+		
+		List<String> adjacent = new ArrayList<String>();
+		for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+			if ((kindsAt(i) & mask) != 0) {
+				adjacent.add(names[targets[i]]);
+			}
+		}
+		return Collections.unmodifiableList(adjacent);
+	}
+
+	/**
+     * Returns the number of edges in this graph.
+     */
+	public int size() {
+		return offsets[names.length];
+	}
+
+	/**
+     * Returns the number of vertices in this graph.
+     */
+	public int order() {
+		return names.length;
+	}
+
+	public int indexOf(String vertex) {
+		if (vertex == null) {
+			return -1;
+		}
+		
+		int mask = table.length - 1;
+		int slot = hash(vertex) & mask;
+		while (table[slot] != 0) {
+			int id = table[slot] - 1;
+			if (names[id].equals(vertex)) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	public String nameOf(int id) {
+		return names[id];
+	}
+
+	public int degreeOf(int id) {
+		return offsets[id + 1] - offsets[id];
+	}
+
+	public int adjacentIdsOf(int id, int[] dest, int offset) {
+		int length = offsets[id + 1] - offsets[id];
+		System.arraycopy(targets, offsets[id], dest, offset, length);
+		return length;
+	}
+	
+	@Override
+	public int adjacentIdsOf(int id, int mask, int[] dest, int offset) {
+		if ((mask & DependencyKind.ALL) == DependencyKind.ALL) {
+			return adjacentIdsOf(id, dest, offset);
+		}
+		if (kinds == null) {
+			return (mask & DependencyKind.RUNTIME) != 0 ? adjacentIdsOf(id, dest, offset) : 0;
+		}
+		
+		int count = 0;
+		for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+			if ((kinds[i] & mask) != 0) {
+				dest[offset + count++] = targets[i];
+			}
+		}
+		return count;
+	}
+	
+	/*
+	 * Estimated retained heap of the arrays and names of this snapshot. See
+	 * GraphStats.
+	 */
+	long estimatedBytes() {
+		long bytes = 32 + 16 + GraphStats.arrayBytes(4, names.length) + GraphStats.arrayBytes(4, table.length)
+				+ GraphStats.arrayBytes(4, offsets.length) + GraphStats.arrayBytes(4, targets.length);
+		if (kinds != null) {
+			bytes += GraphStats.arrayBytes(1, kinds.length);
+		}
+		for (String name : names) {
+			bytes += GraphStats.stringBytes(name);
+		}
+		return bytes;
+	}
+	
+	/*
+	 * Returns the kinds of the i-th edge of vertex id.
+	 */
+	int kindsAt(int id, int i) {
+		return kindsAt(offsets[id] + i);
+	}
+	
+	/*
+	 * Returns the kinds of the i-th edge in targets.
+	 */
+	private int kindsAt(int i) {
+		return kinds == null ? DependencyKind.RUNTIME : kinds[i];
+	}
+	
+	/*
+	 * Builds the open-addressing table of ids, at most half full so probe 
+	 * sequences stay short.
+	 */
+	private static int[] buildTable(String[] names) {
+		int capacity = Integer.highestOneBit(Math.max(2, names.length * 2 - 1)) << 1;
+		int[] table = new int[capacity];
+		for (int id = 0; id < names.length; id++) {
+			int slot = hash(names[id]) & (capacity - 1);
+			while (table[slot] != 0) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			table[slot] = id + 1;
+		}
+		return table;
+	}
+	
+	/*
+	 * Spreads the String hash so that linear probing works on similar names.
+	 */
+	private static int hash(String vertex) {
+		int h = vertex.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
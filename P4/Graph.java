@@ -1,6 +1,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Set;
@@ -12,17 +13,37 @@ import java.util.Set;
  * Authors:    Stephen Fan
  * 
  * Directed and unweighted graph implementation
+ * 
+ * Every edge also has a bitmask of DependencyKind values. Kinds are kept
+ * in a byte[] per vertex, parallel to its adjacency list, and only for
+ * vertices that have an edge that is not just RUNTIME.
  */
 
 public class Graph implements GraphADT {
 	// declare class variables
 	HashMap<String, ArrayList<String>> map;
 	
+	// kinds[vertex][i] are the kinds of the i-th edge of vertex, entries past
+	// the end of the array and vertices without an array are RUNTIME
+	HashMap<String, byte[]> kinds;
+	
+	// cached read-only snapshot, cleared by every mutation
+	private FrozenGraph frozen;
+	
 	/*
 	 * Default no-argument constructor
 	 */ 
 	public Graph() {
 		map = new HashMap();
+		kinds = new HashMap<String, byte[]>();
+	}
+	
+	/*
+	 * Constructor over a fully built map and its edge kinds, used by GraphBuilder
+	 */
+	Graph(HashMap<String, ArrayList<String>> map, HashMap<String, byte[]> kinds) {
+		this.map = map;
+		this.kinds = kinds;
 	}
 
 	/**
@@ -45,6 +66,7 @@ public class Graph implements GraphADT {
 		// check if hashmap contains the key and add it if not
 		if (map.containsKey(vertex) == false) {
 			map.put(vertex, new ArrayList<String>());
+			frozen = null;
 		}
 	}
 
@@ -69,6 +91,8 @@ public class Graph implements GraphADT {
 		// check if map contains the vertex and remove it if it does
 		if (map.containsKey(vertex) == true) {
 			map.remove(vertex);
+			kinds.remove(vertex);
+			frozen = null;
 			
 			// iterate through hashmap to remove the edges that other vertices may have with
 			// the removed vertex
@@ -78,14 +102,12 @@ public class Graph implements GraphADT {
 		        Map.Entry<String, ArrayList<String>> pair = (Map.Entry)it.next();
 		        ArrayList<String> value = (ArrayList<String>) pair.getValue();
 		        
-		        // remove the edges corresponding to this vertex from the graph
-		        value.remove(vertex);
-		        
-		        // change the value of pair to the ArrayList in which the vertex was removed
-		        pair.setValue(value);
-		        
-		        // replace the vertex with the updated key-value pair
-		        map.put(pair.getKey(), pair.getValue());
+		        // remove the edge corresponding to this vertex and its kinds
+		        int index = value.indexOf(vertex);
+		        if (index >= 0) {
+		        	value.remove(index);
+		        	removeKinds(pair.getKey(), index);
+		        }
 		    }
 
 		}
@@ -120,6 +142,8 @@ public class Graph implements GraphADT {
 			map.put(vertex2, new ArrayList<String>());
 		}
 		
+		frozen = null;
+		
 		// add edge between the vertexes if they both exist
 		if (map.containsKey(vertex1) == true) {
 			ArrayList<String> value = map.get(vertex1);
@@ -128,6 +152,91 @@ public class Graph implements GraphADT {
 		}
 	}
 	
+	/**
+     * Add the kinds of a dependency to the edge from vertex1 to vertex2.
+     * If the edge already exists, the kinds are added to it, otherwise
+     * a new edge with these kinds is added (and either vertex if needed).
+     * 
+     * Valid argument conditions:
+     * 1. neither vertex is null
+     * 2. kind is a non-zero combination of DependencyKind values
+     * 
+     * @param vertex1 the dependent
+     * @param vertex2 the dependency
+     * @param kind the DependencyKind bits to add
+	 */
+	public void addEdge(String vertex1, String vertex2, int kind) {
+		if (vertex1 == null || vertex2 == null || (kind & DependencyKind.ALL) == 0) {
+			return;
+		}
+		kind &= DependencyKind.ALL;
+		
+		// add the vertices if they do not exist yet
+		map.putIfAbsent(vertex1, new ArrayList<String>());
+		map.putIfAbsent(vertex2, new ArrayList<String>());
+		frozen = null;
+		
+		ArrayList<String> value = map.get(vertex1);
+		int index = value.indexOf(vertex2);
+		if (index >= 0) {
+			setKinds(vertex1, index, kindsAt(vertex1, index) | kind);
+		}
+		else {
+			value.add(vertex2);
+			setKinds(vertex1, value.size() - 1, kind);
+		}
+	}
+	
+	/**
+     * Remove kinds from the edge from vertex1 to vertex2. The edge is 
+     * removed once it has no kinds left. If the edge does not exist,
+     * nothing is changed and no exception is thrown.
+     * 
+     * @param vertex1 the dependent
+     * @param vertex2 the dependency
+     * @param kind the DependencyKind bits to remove
+	 */
+	public void removeEdge(String vertex1, String vertex2, int kind) {
+		if (vertex1 == null || vertex2 == null || map.containsKey(vertex1) == false) {
+			return;
+		}
+		
+		ArrayList<String> value = map.get(vertex1);
+		int index = value.indexOf(vertex2);
+		if (index < 0) {
+			return;
+		}
+		frozen = null;
+		
+		int left = kindsAt(vertex1, index) & ~kind;
+		if (left == 0) {
+			value.remove(index);
+			removeKinds(vertex1, index);
+		}
+		else {
+			setKinds(vertex1, index, left);
+		}
+	}
+	
+	/**
+     * Returns the DependencyKind bits of the edge from vertex1 to vertex2,
+     * or 0 if there is no such edge.
+	 */
+	public int getEdgeKinds(String vertex1, String vertex2) {
+		List<String> value = map.get(vertex1);
+		if (value == null) {
+			return 0;
+		}
+		
+		int kind = 0;
+		for (int i = 0; i < value.size(); i++) {
+			if (value.get(i).equals(vertex2)) {
+				kind |= kindsAt(vertex1, i);
+			}
+		}
+		return kind;
+	}
+	
 	/**
      * Remove the edge from vertex1 to vertex2
      * from this graph.  (edge is directed and unweighted)
@@ -149,8 +258,12 @@ public class Graph implements GraphADT {
 		// remove the edge between two vertices
 		if (map.containsKey(vertex1) == true) {
 			ArrayList<String> value = map.get(vertex1);
-			value.remove(vertex2);
-			map.put(vertex1, value);
+			int index = value.indexOf(vertex2);
+			if (index >= 0) {
+				value.remove(index);
+				removeKinds(vertex1, index);
+				frozen = null;
+			}
 		}
 	}	
 
@@ -179,6 +292,28 @@ public class Graph implements GraphADT {
 		return value;
 	}
 	
+	/**
+     * Get the adjacent vertices of a vertex whose edge has any of the given
+     * kinds, or null if the vertex does not exist
+     * 
+     * @param vertex the vertex
+     * @param mask the DependencyKind bits to follow
+	 */
+	public List<String> getAdjacentVerticesOf(String vertex, int mask) {
+		List<String> value = map.get(vertex);
+		if (value == null) {
+			return null;
+		}
+		
+		List<String> adjacent = new ArrayList<String>();
+		for (int i = 0; i < value.size(); i++) {
+			if ((kindsAt(vertex, i) & mask) != 0) {
+				adjacent.add(value.get(i));
+			}
+		}
+		return adjacent;
+	}
+	
 	/**
      * Returns the number of edges in this graph.
      */
@@ -207,4 +342,99 @@ public class Graph implements GraphADT {
 		// simple getter method
         return map.size();
     }
+
+	/*
+	 * Appends an edge with the given kinds even if the edge already exists,
+	 * used to restore graphs that were saved edge by edge.
+	 */
+	void appendEdge(String vertex1, String vertex2, int kind) {
+		map.putIfAbsent(vertex1, new ArrayList<String>());
+		map.putIfAbsent(vertex2, new ArrayList<String>());
+		frozen = null;
+		
+		ArrayList<String> value = map.get(vertex1);
+		value.add(vertex2);
+		setKinds(vertex1, value.size() - 1, kind);
+	}
+	
+	/*
+	 * Returns the kinds of the index-th edge of a vertex.
+	 */
+	int kindsAt(String vertex, int index) {
+		byte[] edgeKinds = kinds.get(vertex);
+		return edgeKinds == null || index >= edgeKinds.length ? DependencyKind.RUNTIME : edgeKinds[index];
+	}
+	
+	/*
+	 * Sets the kinds of the index-th edge of a vertex, creating or growing
+	 * its array only for kinds other than RUNTIME.
+	 */
+	private void setKinds(String vertex, int index, int kind) {
+		byte[] edgeKinds = kinds.get(vertex);
+		if (edgeKinds == null || index >= edgeKinds.length) {
+			if (kind == DependencyKind.RUNTIME) {
+				return;
+			}
+			int length = edgeKinds == null ? 0 : edgeKinds.length;
+			edgeKinds = edgeKinds == null ? new byte[Math.max(4, index + 1)] 
+					: Arrays.copyOf(edgeKinds, Math.max(index + 1, length * 2));
+			Arrays.fill(edgeKinds, length, edgeKinds.length, (byte) DependencyKind.RUNTIME);
+			kinds.put(vertex, edgeKinds);
+		}
+		edgeKinds[index] = (byte) kind;
+	}
+	
+	/*
+	 * Removes the kinds of the index-th edge of a vertex after that edge was
+	 * removed from its adjacency list.
+	 */
+	private void removeKinds(String vertex, int index) {
+		byte[] edgeKinds = kinds.get(vertex);
+		if (edgeKinds != null && index < edgeKinds.length) {
+			System.arraycopy(edgeKinds, index + 1, edgeKinds, index, edgeKinds.length - index - 1);
+			edgeKinds[edgeKinds.length - 1] = DependencyKind.RUNTIME;
+		}
+	}
+	
+	/*
+	 * Returns whether a snapshot of the current graph is cached.
+	 */
+	boolean isFrozen() {
+		return frozen != null;
+	}
+
+	/*
+	 * Estimated retained heap of the maps, lists and names of this graph,
+	 * without the cached snapshot. See GraphStats.
+	 */
+	long estimatedBytes() {
+		long bytes = 24 + GraphStats.hashMapBytes(map.size()) + GraphStats.hashMapBytes(kinds.size());
+		for (Map.Entry<String, ArrayList<String>> entry : map.entrySet()) {
+			// dependency names are counted as shared with the vertex names
+			bytes += GraphStats.stringBytes(entry.getKey()) + 24 + GraphStats.arrayBytes(4, entry.getValue().size());
+		}
+		for (byte[] edgeKinds : kinds.values()) {
+			bytes += GraphStats.arrayBytes(1, edgeKinds.length);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns an immutable, read-optimised snapshot of this graph.
+	 * 
+	 * The snapshot is cached and returned again until the graph is changed
+	 * through addVertex, removeVertex, addEdge or removeEdge. Changes made
+	 * directly to the collections returned by getAllVertices and
+	 * getAdjacentVerticesOf are not tracked.
+	 * 
+	 * @return the snapshot of the current graph
+	 */
+	public FrozenGraph freeze() {
+		FrozenGraph snapshot = frozen;
+		if (snapshot == null) {
+			snapshot = FrozenGraph.of(this);
+			frozen = snapshot;
+		}
+		return snapshot;
+	}
 }
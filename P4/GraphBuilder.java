@@ -0,0 +1,289 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Filename:   GraphBuilder.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Bulk loader for large graphs.
+ * 
+ * Graph.addEdge looks the vertices up several times per call and grows 
+ * every dependency list one element at a time. The builder instead interns
+ * each name once into a presized table, records edges as pairs of int ids
+ * and, when built, groups them by source with one counting sort, drops 
+ * duplicate edges and creates every dependency list at its final size. 
+ * The order in which the dependencies of a package were added is kept, and
+ * the DependencyKind bits of duplicate edges are combined.
+ * 
+ * A builder can be used once; build() and buildFrozen() consume it.
+ */
+public class GraphBuilder {
+	// name -> id, ids are assigned in order of first appearance
+	private HashMap<String, Integer> ids;
+	private String[] names;
+	private int vertexCount;
+	
+	// edges as parallel arrays of source and target ids and kinds
+	private int[] sources;
+	private int[] targets;
+	private byte[] kinds;
+	private int edgeCount;
+	
+	// whether any edge is not just RUNTIME
+	private boolean typed;
+	
+	/**
+	 * Creates a builder for a graph of unknown size.
+	 */
+	public GraphBuilder() {
+		this(16, 16);
+	}
+	
+	/**
+	 * Creates a builder with tables presized for the expected graph size.
+	 * 
+	 * @param expectedVertices the expected number of vertices
+	 * @param expectedEdges the expected number of edges
+	 */
+	public GraphBuilder(int expectedVertices, int expectedEdges) {
+		int vertices = Math.max(16, expectedVertices);
+		ids = new HashMap<String, Integer>((int) (vertices / 0.75f) + 1);
+		names = new String[vertices];
+		sources = new int[Math.max(16, expectedEdges)];
+		targets = new int[sources.length];
+		kinds = new byte[sources.length];
+	}
+	
+	/**
+	 * Adds a vertex if it is not in the graph yet.
+	 * 
+	 * @param name the vertex, null is ignored
+	 * @return the id of the vertex, or -1 for null
+	 */
+	public int addVertex(String name) {
+		if (name == null) {
+			return -1;
+		}
+		
+		Integer id = ids.get(name);
+		if (id != null) {
+			return id;
+		}
+		
+		if (vertexCount == names.length) {
+			names = Arrays.copyOf(names, vertexCount * 2);
+		}
+		names[vertexCount] = name;
+		ids.put(name, vertexCount);
+		return vertexCount++;
+	}
+	
+	/**
+	 * Adds all of the given vertices.
+	 */
+	public void addVertices(String[] vertices) {
+		for (String vertex : vertices) {
+			addVertex(vertex);
+		}
+	}
+	
+	/**
+	 * Adds the edge from vertex1 to vertex2, adding either vertex if needed.
+	 * Duplicate edges are removed when the graph is built.
+	 */
+	public void addEdge(String vertex1, String vertex2) {
+		if (vertex1 == null || vertex2 == null) {
+			return;
+		}
+		addEdge(addVertex(vertex1), addVertex(vertex2), DependencyKind.RUNTIME);
+	}
+	
+	/**
+	 * Adds the edge from vertex1 to vertex2 with the given DependencyKind 
+	 * bits, adding either vertex if needed. Duplicate edges are merged when 
+	 * the graph is built, combining their kinds.
+	 */
+	public void addEdge(String vertex1, String vertex2, int kind) {
+		if (vertex1 == null || vertex2 == null || (kind & DependencyKind.ALL) == 0) {
+			return;
+		}
+		addEdge(addVertex(vertex1), addVertex(vertex2), kind & DependencyKind.ALL);
+	}
+	
+	/**
+	 * Adds the edges from[i] -> to[i] for every i.
+	 */
+	public void addEdges(String[] from, String[] to) {
+		if (from.length != to.length) {
+			throw new IllegalArgumentException("from and to must have the same length");
+		}
+		for (int i = 0; i < from.length; i++) {
+			addEdge(from[i], to[i]);
+		}
+	}
+	
+	/**
+	 * Returns the number of vertices added so far.
+	 */
+	public int order() {
+		return vertexCount;
+	}
+	
+	/**
+	 * Builds a mutable Graph with the added vertices and de-duplicated edges.
+	 * 
+	 * @return the new graph
+	 */
+	public Graph build() {
+		byte[] groupedKinds = new byte[edgeCount];
+		int[][] csr = groupEdges(groupedKinds);
+		int[] offsets = csr[0];
+		int[] grouped = csr[1];
+		
+		// each list is created at its final size
+		HashMap<String, ArrayList<String>> map = new HashMap<String, ArrayList<String>>((int) (vertexCount / 0.75f) + 1);
+		HashMap<String, byte[]> edgeKinds = new HashMap<String, byte[]>();
+		for (int id = 0; id < vertexCount; id++) {
+			ArrayList<String> adjacent = new ArrayList<String>(offsets[id + 1] - offsets[id]);
+			boolean runtimeOnly = true;
+			for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+				adjacent.add(names[grouped[i]]);
+				runtimeOnly &= groupedKinds[i] == DependencyKind.RUNTIME;
+			}
+			map.put(names[id], adjacent);
+			
+			// only lists with other kinds need an array of kinds
+			if (runtimeOnly == false) {
+				edgeKinds.put(names[id], Arrays.copyOfRange(groupedKinds, offsets[id], offsets[id + 1]));
+			}
+		}
+		
+		release();
+		return new Graph(map, edgeKinds);
+	}
+	
+	/**
+	 * Builds an immutable FrozenGraph directly, without creating a Graph.
+	 * 
+	 * @return the new snapshot
+	 */
+	public FrozenGraph buildFrozen() {
+		byte[] groupedKinds = new byte[edgeCount];
+		boolean hasKinds = typed;
+		int[][] csr = groupEdges(groupedKinds);
+		int[] offsets = csr[0];
+		int[] grouped = csr[1];
+		
+		// FrozenGraph numbers vertices by sorted name
+		Integer[] bySortedName = new Integer[vertexCount];
+		for (int id = 0; id < vertexCount; id++) {
+			bySortedName[id] = id;
+		}
+		String[] vertexNames = names;
+		Arrays.sort(bySortedName, (a, b) -> vertexNames[a].compareTo(vertexNames[b]));
+		
+		int[] newId = new int[vertexCount];
+		String[] sortedNames = new String[vertexCount];
+		for (int i = 0; i < vertexCount; i++) {
+			newId[bySortedName[i]] = i;
+			sortedNames[i] = names[bySortedName[i]];
+		}
+		
+		// lay the lists out again in sorted order
+		int[] sortedOffsets = new int[vertexCount + 1];
+		int[] sortedTargets = new int[grouped.length];
+		byte[] sortedKinds = hasKinds ? new byte[grouped.length] : null;
+		int count = 0;
+		for (int i = 0; i < vertexCount; i++) {
+			int id = bySortedName[i];
+			sortedOffsets[i] = count;
+			for (int e = offsets[id]; e < offsets[id + 1]; e++) {
+				if (sortedKinds != null) {
+					sortedKinds[count] = groupedKinds[e];
+				}
+				sortedTargets[count++] = newId[grouped[e]];
+			}
+		}
+		sortedOffsets[vertexCount] = count;
+		
+		release();
+		return new FrozenGraph(sortedNames, sortedOffsets, sortedTargets, sortedKinds);
+	}
+	
+	private void addEdge(int from, int to, int kind) {
+		if (edgeCount == sources.length) {
+			sources = Arrays.copyOf(sources, edgeCount * 2);
+			targets = Arrays.copyOf(targets, edgeCount * 2);
+			kinds = Arrays.copyOf(kinds, edgeCount * 2);
+		}
+		sources[edgeCount] = from;
+		targets[edgeCount] = to;
+		kinds[edgeCount] = (byte) kind;
+		typed |= kind != DependencyKind.RUNTIME;
+		edgeCount++;
+	}
+	
+	/*
+	 * Groups the edges by source with a stable counting sort and removes
+	 * duplicates. Returns {offsets, targets} in compressed sparse row form
+	 * and fills groupedKinds with the combined kinds of every kept edge.
+	 */
+	private int[][] groupEdges(byte[] groupedKinds) {
+		if (ids == null) {
+			throw new IllegalStateException("GraphBuilder has already been built");
+		}
+		
+		int[] offsets = new int[vertexCount + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			offsets[sources[e] + 1]++;
+		}
+		for (int id = 0; id < vertexCount; id++) {
+			offsets[id + 1] += offsets[id];
+		}
+		
+		int[] grouped = new int[edgeCount];
+		int[] fill = Arrays.copyOf(offsets, vertexCount);
+		for (int e = 0; e < edgeCount; e++) {
+			int position = fill[sources[e]]++;
+			grouped[position] = targets[e];
+			groupedKinds[position] = kinds[e];
+		}
+		
+		// drop repeated targets within each list, stamp[target] holds the
+		// last source (+1) that listed it and kept[target] where it was kept
+		int[] stamp = new int[vertexCount];
+		int[] kept = new int[vertexCount];
+		int count = 0;
+		for (int id = 0; id < vertexCount; id++) {
+			int start = offsets[id];
+			offsets[id] = count;
+			for (int e = start; e < offsets[id + 1]; e++) {
+				int target = grouped[e];
+				if (stamp[target] != id + 1) {
+					stamp[target] = id + 1;
+					kept[target] = count;
+					groupedKinds[count] = groupedKinds[e];
+					grouped[count++] = target;
+				}
+				else {
+					groupedKinds[kept[target]] |= groupedKinds[e];
+				}
+			}
+		}
+		offsets[vertexCount] = count;
+		
+		return new int[][] { offsets, count == grouped.length ? grouped : Arrays.copyOf(grouped, count) };
+	}
+	
+	/*
+	 * Drops the build tables so they can be garbage collected.
+	 */
+	private void release() {
+		ids = null;
+		sources = null;
+		targets = null;
+		kinds = null;
+	}
+}
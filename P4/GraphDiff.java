@@ -0,0 +1,205 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Filename:   GraphDiff.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Differences between two versions of a dependency graph.
+ * 
+ * Besides the added and removed packages and edges, the diff reports every
+ * package present in both versions whose transitive closure (the set of
+ * packages in its installation order) changed. No closure is computed for
+ * that: the last added edge S -> T on a new path from a package P can only
+ * add something if P did not reach T before, so P gained packages exactly
+ * when it reaches S in the new version but did not reach T in the old one,
+ * and removed edges work the other way round. Both are found by walking
+ * dependents backwards from the ends of the changed edges, so the cost of
+ * that step tracks the size of the change and the packages above it rather
+ * than the size of the registry, and an unchanged graph skips it.
+ */
+public class GraphDiff {
+	private final Set<String> addedPackages = new TreeSet<String>();
+	private final Set<String> removedPackages = new TreeSet<String>();
+	private final Map<String, Set<String>> addedEdges = new TreeMap<String, Set<String>>();
+	private final Map<String, Set<String>> removedEdges = new TreeMap<String, Set<String>>();
+	private final Set<String> changedClosures = new TreeSet<String>();
+	
+	/*
+	 * Use GraphDiff.compare()
+	 */
+	private GraphDiff() {
+	}
+	
+	/**
+	 * Compares two versions of a graph.
+	 * 
+	 * @param before the old version
+	 * @param after the new version
+	 * @return the differences from before to after
+	 */
+	public static GraphDiff compare(GraphADT before, GraphADT after) {
+		GraphDiff diff = new GraphDiff();
+		
+		// packages only in one of the versions
+		for (String vertex : after.getAllVertices()) {
+			if (before.getAllVertices().contains(vertex) == false) {
+				diff.addedPackages.add(vertex);
+			}
+		}
+		for (String vertex : before.getAllVertices()) {
+			if (after.getAllVertices().contains(vertex) == false) {
+				diff.removedPackages.add(vertex);
+			}
+		}
+		
+		// edges only in one of the versions
+		collectEdges(after, before, diff.addedEdges);
+		collectEdges(before, after, diff.removedEdges);
+		
+		if (diff.addedEdges.isEmpty() && diff.removedEdges.isEmpty()) {
+			return diff;
+		}
+		
+		// a package gains something through an added edge S -> T exactly when
+		// it reaches S afterwards but did not reach T before, and loses
+		// something through a removed edge in the same way
+		Map<String, List<String>> dependentsBefore = dependents(before);
+		Map<String, List<String>> dependentsAfter = dependents(after);
+		diff.propagate(diff.addedEdges, dependentsAfter, dependentsBefore, before, after);
+		diff.propagate(diff.removedEdges, dependentsBefore, dependentsAfter, before, after);
+		
+		return diff;
+	}
+	
+	/**
+	 * Returns the packages only in the new version.
+	 */
+	public Set<String> getAddedPackages() {
+		return Collections.unmodifiableSet(addedPackages);
+	}
+	
+	/**
+	 * Returns the packages only in the old version.
+	 */
+	public Set<String> getRemovedPackages() {
+		return Collections.unmodifiableSet(removedPackages);
+	}
+	
+	/**
+	 * Returns the edges only in the new version, as a map from package to 
+	 * its added dependencies.
+	 */
+	public Map<String, Set<String>> getAddedEdges() {
+		return Collections.unmodifiableMap(addedEdges);
+	}
+	
+	/**
+	 * Returns the edges only in the old version, as a map from package to 
+	 * its removed dependencies.
+	 */
+	public Map<String, Set<String>> getRemovedEdges() {
+		return Collections.unmodifiableMap(removedEdges);
+	}
+	
+	/**
+	 * Returns the packages in both versions whose transitive closure changed,
+	 * i.e. whose installation order contains different packages.
+	 */
+	public Set<String> getChangedClosures() {
+		return Collections.unmodifiableSet(changedClosures);
+	}
+	
+	/**
+	 * Returns true if the two versions are identical.
+	 */
+	public boolean isEmpty() {
+		return addedPackages.isEmpty() && removedPackages.isEmpty() 
+				&& addedEdges.isEmpty() && removedEdges.isEmpty();
+	}
+	
+	/*
+	 * Adds the edges of graph that are not in other to edges.
+	 */
+	private static void collectEdges(GraphADT graph, GraphADT other, Map<String, Set<String>> edges) {
+		for (String vertex : graph.getAllVertices()) {
+			List<String> adjacent = graph.getAdjacentVerticesOf(vertex);
+			List<String> otherAdjacent = other.getAdjacentVerticesOf(vertex);
+			if (adjacent.isEmpty() || adjacent.equals(otherAdjacent)) {
+				continue;
+			}
+			
+			Set<String> otherSet = otherAdjacent == null ? Collections.emptySet() 
+					: new HashSet<String>(otherAdjacent);
+			for (String dependency : adjacent) {
+				if (otherSet.contains(dependency) == false) {
+					edges.computeIfAbsent(vertex, k -> new TreeSet<String>()).add(dependency);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Builds the reverse adjacency of a graph.
+	 */
+	private static Map<String, List<String>> dependents(GraphADT graph) {
+		Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+		for (String vertex : graph.getAllVertices()) {
+			for (String dependency : graph.getAdjacentVerticesOf(vertex)) {
+				dependents.computeIfAbsent(dependency, k -> new ArrayList<String>()).add(vertex);
+			}
+		}
+		return dependents;
+	}
+	
+	/*
+	 * For every edge S -> T in edges, adds the packages that reach S through
+	 * dependents but do not reach T through otherDependents to the changed
+	 * closures, if they are in both versions. The packages reaching each
+	 * source and target are walked once.
+	 */
+	private void propagate(Map<String, Set<String>> edges, Map<String, List<String>> dependents, 
+			Map<String, List<String>> otherDependents, GraphADT before, GraphADT after) {
+		Map<String, Set<String>> reachingTarget = new HashMap<String, Set<String>>();
+		for (Map.Entry<String, Set<String>> entry : edges.entrySet()) {
+			Set<String> reachingSource = ancestors(dependents, entry.getKey());
+			for (String target : entry.getValue()) {
+				Set<String> reached = reachingTarget.computeIfAbsent(target, t -> ancestors(otherDependents, t));
+				for (String vertex : reachingSource) {
+					if (reached.contains(vertex) == false && before.getAllVertices().contains(vertex) 
+							&& after.getAllVertices().contains(vertex)) {
+						changedClosures.add(vertex);
+					}
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Returns every package that reaches vertex, including itself.
+	 */
+	private static Set<String> ancestors(Map<String, List<String>> dependents, String vertex) {
+		Set<String> ancestors = new HashSet<String>();
+		Deque<String> stack = new ArrayDeque<String>();
+		ancestors.add(vertex);
+		stack.push(vertex);
+		while (stack.isEmpty() == false) {
+			for (String dependent : dependents.getOrDefault(stack.pop(), Collections.emptyList())) {
+				if (ancestors.add(dependent)) {
+					stack.push(dependent);
+				}
+			}
+		}
+		return ancestors;
+	}
+}
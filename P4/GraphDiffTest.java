@@ -0,0 +1,95 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the diff between two graph versions
+ * @author Stephen Fan
+ *
+ */
+class GraphDiffTest {
+
+    /** 
+     * Tests that added/removed packages, edges and changed closures are reported
+     */
+    @Test
+    public void test1_compare() {
+    	// A -> B, C    B -> D    C -> D    E -> F
+    	Graph before = new Graph();
+    	before.addEdge("A", "B");
+    	before.addEdge("A", "C");
+    	before.addEdge("B", "D");
+    	before.addEdge("C", "D");
+    	before.addEdge("E", "F");
+    	
+    	// A loses the redundant edge to C, B gains a new package G
+    	Graph after = new Graph();
+    	after.addEdge("A", "B");
+    	after.addEdge("B", "D");
+    	after.addEdge("B", "C");
+    	after.addEdge("C", "D");
+    	after.addEdge("D", "G");
+    	after.addEdge("E", "F");
+    	
+    	GraphDiff diff = GraphDiff.compare(before, after);
+    	
+    	if (diff.getAddedPackages().equals(Set.of("G")) == false) {
+    		fail("G should be added");
+    	}
+    	if (diff.getRemovedPackages().isEmpty() == false) {
+    		fail("no package should be removed");
+    	}
+    	if (diff.getRemovedEdges().get("A").contains("C") == false) {
+    		fail("edge A -> C should be removed");
+    	}
+    	if (diff.getAddedEdges().get("B").contains("C") == false || diff.getAddedEdges().get("D").contains("G") == false) {
+    		fail("edges B -> C and D -> G should be added");
+    	}
+    	
+    	// everything above D now also pulls in G, E and F are untouched
+    	if (diff.getChangedClosures().equals(Set.of("A", "B", "C", "D")) == false) {
+    		fail("closures of A, B, C and D should change");
+    	}
+    	
+    	if (GraphDiff.compare(before, before).isEmpty() == false) {
+    		fail("a graph should not differ from itself");
+    	}
+    }
+    
+    /** 
+     * Tests that changed edges which do not change what a package reaches,
+     * also inside cycles, leave its closure unchanged
+     */
+    @Test
+    public void test2_unchangedClosures() {
+    	// X -> Y -> Z    P <-> Q -> R    W -> P
+    	Graph before = new Graph();
+    	before.addEdge("X", "Y");
+    	before.addEdge("Y", "Z");
+    	before.addEdge("P", "Q");
+    	before.addEdge("Q", "P");
+    	before.addEdge("Q", "R");
+    	before.addEdge("W", "P");
+    	
+    	// redundant X -> Z, R moves from Q to P and Z gains a new package N
+    	Graph after = new Graph();
+    	after.addEdge("X", "Y");
+    	after.addEdge("Y", "Z");
+    	after.addEdge("X", "Z");
+    	after.addEdge("Z", "N");
+    	after.addEdge("P", "Q");
+    	after.addEdge("Q", "P");
+    	after.addEdge("P", "R");
+    	after.addEdge("W", "P");
+    	
+    	GraphDiff diff = GraphDiff.compare(before, after);
+    	if (diff.getRemovedEdges().get("Q").equals(Set.of("R")) == false) {
+    		fail("edge Q -> R should be removed");
+    	}
+    	if (diff.getChangedClosures().equals(Set.of("X", "Y", "Z")) == false) {
+    		fail("only the closures of X, Y and Z should change: " + diff.getChangedClosures());
+    	}
+    }
+}
@@ -0,0 +1,359 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Filename:   GraphStats.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Shape and memory footprint of a dependency graph, for sizing resolver
+ * JVMs before a new registry is deployed.
+ *
+ * After the strongly connected components are found, every edge is
+ * visited exactly once, component by component in dependency order, which
+ * gives the degree distributions, the duplicate edges and the longest
+ * dependency chain in the same pass. The longest chain counts the
+ * components on the longest path of the condensation, which is the number
+ * of packages on the path if the graph has no cycles.
+ *
+ * The retained heap is estimated for a 64-bit JVM with compressed
+ * references, from the sizes of the arrays, maps and strings the graph
+ * holds. Graph, FrozenGraph and CompressedGraph are estimated, a LazyGraph
+ * by what it has loaded, which after computing the statistics is all of
+ * it. The buffers of an OffHeapGraph are reported as off-heap bytes. Other
+ * representations report -1. toJSON() returns all of it as a JSONObject.
+ * 
+ * A Graph is measured through its cached snapshot if it has one, otherwise
+ * through a temporary one, so computing the statistics does not leave a
+ * snapshot behind in the graph.
+ */
+public class GraphStats {
+	private final String representation;
+	private final int vertices;
+	private final int edges;
+	private final int duplicateEdges;
+
+	// degree -> number of vertices with that degree
+	private final Map<Integer, Integer> outDegrees = new TreeMap<Integer, Integer>();
+	private final Map<Integer, Integer> inDegrees = new TreeMap<Integer, Integer>();
+
+	private final int componentCount;
+	private final int cyclicComponents;
+
+	// component size -> number of components of that size
+	private final Map<Integer, Integer> componentSizes = new TreeMap<Integer, Integer>();
+
+	private final int longestChain;
+
+	private final long estimatedBytes;
+	private final long snapshotBytes;
+	private final long offHeapBytes;
+
+	/**
+	 * Computes the statistics of a graph.
+	 *
+	 * @param graph the graph
+	 */
+	public GraphStats(GraphADT graph) {
+		IndexedGraph indexed;
+		if (graph instanceof IndexedGraph) {
+			indexed = (IndexedGraph) graph;
+		}
+		else if (graph instanceof Graph && ((Graph) graph).isFrozen()) {
+			indexed = ((Graph) graph).freeze();
+		}
+		else {
+			indexed = FrozenGraph.of(graph);
+		}
+
+		representation = graph.getClass().getSimpleName();
+		vertices = indexed.order();
+
+		StronglyConnectedComponents components = new StronglyConnectedComponents(indexed);
+		componentCount = components.count();
+
+		// group the vertices by component
+		int[] start = new int[componentCount + 1];
+		for (int vertex = 0; vertex < vertices; vertex++) {
+			start[components.componentOf(vertex) + 1]++;
+		}
+		for (int c = 0; c < componentCount; c++) {
+			start[c + 1] += start[c];
+		}
+		int[] members = new int[vertices];
+		int[] fill = Arrays.copyOf(start, componentCount);
+		for (int vertex = 0; vertex < vertices; vertex++) {
+			members[fill[components.componentOf(vertex)]++] = vertex;
+		}
+
+		// one pass over the edges, dependencies before their dependents
+		int[] inDegree = new int[vertices];
+		int[] chain = new int[componentCount];
+		int[] stamp = new int[vertices];
+		int[] adjacent = new int[16];
+		int edgeCount = 0;
+		int duplicates = 0;
+		int cyclic = 0;
+		int longest = 0;
+		for (int c = 0; c < componentCount; c++) {
+			int size = start[c + 1] - start[c];
+			componentSizes.merge(size, 1, Integer::sum);
+			if (components.isCyclic(c)) {
+				cyclic++;
+			}
+
+			int below = 0;
+			for (int m = start[c]; m < start[c + 1]; m++) {
+				int vertex = members[m];
+				int degree = indexed.degreeOf(vertex);
+				if (adjacent.length < degree) {
+					adjacent = new int[degree];
+				}
+				indexed.adjacentIdsOf(vertex, adjacent, 0);
+				outDegrees.merge(degree, 1, Integer::sum);
+				edgeCount += degree;
+
+				for (int i = 0; i < degree; i++) {
+					int dependency = adjacent[i];
+					if (stamp[dependency] == vertex + 1) {
+						duplicates++;
+						continue;
+					}
+					stamp[dependency] = vertex + 1;
+					inDegree[dependency]++;
+
+					int d = components.componentOf(dependency);
+					if (d != c && chain[d] > below) {
+						below = chain[d];
+					}
+				}
+			}
+			chain[c] = below + 1;
+			longest = Math.max(longest, chain[c]);
+		}
+		for (int vertex = 0; vertex < vertices; vertex++) {
+			inDegrees.merge(inDegree[vertex], 1, Integer::sum);
+		}
+
+		edges = edgeCount;
+		duplicateEdges = duplicates;
+		cyclicComponents = cyclic;
+		longestChain = longest;
+
+		if (graph instanceof Graph) {
+			estimatedBytes = ((Graph) graph).estimatedBytes();
+		}
+		else if (graph instanceof FrozenGraph) {
+			estimatedBytes = ((FrozenGraph) graph).estimatedBytes();
+		}
+		else if (graph instanceof CompressedGraph) {
+			estimatedBytes = ((CompressedGraph) graph).estimatedBytes();
+		}
+		else if (graph instanceof OffHeapGraph) {
+			estimatedBytes = ((OffHeapGraph) graph).estimatedBytes();
+		}
+		else if (graph instanceof LazyGraph) {
+			estimatedBytes = ((LazyGraph) graph).estimatedBytes();
+		}
+		else {
+			estimatedBytes = -1;
+		}
+		snapshotBytes = indexed == graph ? 0 : ((FrozenGraph) indexed).estimatedBytes();
+		offHeapBytes = graph instanceof OffHeapGraph ? ((OffHeapGraph) graph).offHeapBytes() : 0;
+	}
+
+	/**
+	 * Returns the class name of the graph, e.g. Graph.
+	 */
+	public String getRepresentation() {
+		return representation;
+	}
+
+	/**
+	 * Returns the number of vertices.
+	 */
+	public int getVertexCount() {
+		return vertices;
+	}
+
+	/**
+	 * Returns the number of edges, including duplicates.
+	 */
+	public int getEdgeCount() {
+		return edges;
+	}
+
+	/**
+	 * Returns the number of edges that repeat an earlier edge between the
+	 * same two vertices.
+	 */
+	public int getDuplicateEdgeCount() {
+		return duplicateEdges;
+	}
+
+	/**
+	 * Returns the out-degree distribution: number of vertices per number of
+	 * dependencies, by increasing degree. Duplicate edges are counted.
+	 */
+	public Map<Integer, Integer> getOutDegreeDistribution() {
+		return outDegrees;
+	}
+
+	/**
+	 * Returns the in-degree distribution: number of vertices per number of
+	 * dependents, by increasing degree. Duplicate edges are counted once.
+	 */
+	public Map<Integer, Integer> getInDegreeDistribution() {
+		return inDegrees;
+	}
+
+	/**
+	 * Returns the number of strongly connected components.
+	 */
+	public int getComponentCount() {
+		return componentCount;
+	}
+
+	/**
+	 * Returns the number of components that contain a cycle.
+	 */
+	public int getCyclicComponentCount() {
+		return cyclicComponents;
+	}
+
+	/**
+	 * Returns the number of components per component size, by increasing size.
+	 */
+	public Map<Integer, Integer> getComponentSizeDistribution() {
+		return componentSizes;
+	}
+
+	/**
+	 * Returns the number of components on the longest dependency chain.
+	 */
+	public int getLongestChain() {
+		return longestChain;
+	}
+
+	/**
+	 * Returns the estimated retained heap of the graph in bytes, or -1 if
+	 * the representation is not known.
+	 */
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+
+	/**
+	 * Returns the estimated retained heap of the int-indexed snapshot that
+	 * queries use in addition to the graph, 0 if the graph is its own
+	 * snapshot.
+	 */
+	public long getSnapshotBytes() {
+		return snapshotBytes;
+	}
+
+	/**
+	 * Returns the bytes the graph holds outside of the heap, 0 for every
+	 * representation but OffHeapGraph.
+	 */
+	public long getOffHeapBytes() {
+		return offHeapBytes;
+	}
+
+	/**
+	 * Returns the statistics as a JSONObject, e.g. for capacity planning
+	 * scripts.
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONObject toJSON() {
+		JSONObject json = new JSONObject();
+		json.put("representation", representation);
+		json.put("vertices", vertices);
+		json.put("edges", edges);
+		json.put("duplicateEdges", duplicateEdges);
+		json.put("outDegree", distribution(outDegrees));
+		json.put("inDegree", distribution(inDegrees));
+
+		JSONObject scc = new JSONObject();
+		scc.put("count", componentCount);
+		scc.put("cyclic", cyclicComponents);
+		scc.put("sizes", histogram(componentSizes));
+		json.put("components", scc);
+
+		json.put("longestChain", longestChain);
+
+		JSONObject heap = new JSONObject();
+		heap.put("graph", estimatedBytes);
+		heap.put("snapshot", snapshotBytes);
+		heap.put("offHeap", offHeapBytes);
+		json.put("estimatedBytes", heap);
+		return json;
+	}
+
+	/**
+	 * Returns the statistics as a JSON string.
+	 */
+	@Override
+	public String toString() {
+		return toJSON().toJSONString();
+	}
+
+	/*
+	 * Max, mean and histogram of a degree distribution.
+	 */
+	@SuppressWarnings("unchecked")
+	private JSONObject distribution(Map<Integer, Integer> degrees) {
+		long total = 0;
+		int max = 0;
+		for (Map.Entry<Integer, Integer> entry : degrees.entrySet()) {
+			total += (long) entry.getKey() * entry.getValue();
+			max = Math.max(max, entry.getKey());
+		}
+
+		JSONObject json = new JSONObject();
+		json.put("max", max);
+		json.put("mean", vertices == 0 ? 0.0 : (double) total / vertices);
+		json.put("histogram", histogram(degrees));
+		return json;
+	}
+
+	/*
+	 * Histogram with string keys, as json objects need them.
+	 */
+	@SuppressWarnings("unchecked")
+	private static JSONObject histogram(Map<Integer, Integer> counts) {
+		JSONObject json = new JSONObject();
+		for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+			json.put(String.valueOf(entry.getKey()), entry.getValue());
+		}
+		return json;
+	}
+
+	/*
+	 * Heap size helpers for a 64-bit JVM with compressed references: 12 byte
+	 * object headers, 16 byte array headers, 4 byte references and every
+	 * object padded to 8 bytes.
+	 */
+
+	static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	static long arrayBytes(int elementBytes, int length) {
+		return align(16 + (long) elementBytes * length);
+	}
+
+	static long stringBytes(String s) {
+		// String object and its Latin-1 byte[]
+		return 24 + arrayBytes(1, s.length());
+	}
+
+	static long hashMapBytes(int size) {
+		// the HashMap, its table at load factor 0.75 and a node per entry
+		int capacity = Integer.highestOneBit(Math.max(1, (int) (size / 0.75f)) * 2 - 1);
+		return 48 + (size == 0 ? 0 : arrayBytes(4, Math.max(16, capacity))) + 32L * size;
+	}
+}
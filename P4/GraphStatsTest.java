@@ -0,0 +1,131 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the graph statistics
+ * @author Stephen Fan
+ *
+ */
+class GraphStatsTest {
+
+    /**
+     * Tests counts, degree distributions, components and the longest chain
+     */
+    @Test
+    public void test1_shape() {
+    	// A -> B -> C -> D, A -> C, and a cycle E -> F -> E depending on D
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "B");
+    	graph.addEdge("B", "C");
+    	graph.addEdge("C", "D");
+    	graph.addEdge("A", "C");
+    	graph.addEdge("E", "F");
+    	graph.addEdge("F", "E");
+    	graph.addEdge("F", "D");
+    	
+    	GraphStats stats = new GraphStats(graph);
+    	if (stats.getVertexCount() != 6 || stats.getEdgeCount() != 7 || stats.getDuplicateEdgeCount() != 0) {
+    		fail("graph should have 6 vertices, 7 edges and no duplicates");
+    	}
+    	if (stats.getComponentCount() != 5 || stats.getCyclicComponentCount() != 1
+    			|| stats.getComponentSizeDistribution().equals(Map.of(1, 4, 2, 1)) == false) {
+    		fail("graph should have 4 single components and one cycle of 2");
+    	}
+    	if (stats.getLongestChain() != 4) {
+    		fail("longest chain should be A, B, C, D");
+    	}
+    	if (stats.getOutDegreeDistribution().equals(Map.of(0, 1, 1, 3, 2, 2)) == false) {
+    		fail("out-degrees should be 0 once, 1 three times and 2 twice");
+    	}
+    	if (stats.getInDegreeDistribution().equals(Map.of(0, 1, 1, 3, 2, 2)) == false) {
+    		fail("in-degrees should be 0 once, 1 three times and 2 twice");
+    	}
+    	if (stats.getEstimatedBytes() <= 0 || stats.getSnapshotBytes() <= 0) {
+    		fail("heap of a Graph and its snapshot should be estimated");
+    	}
+    }
+
+    /**
+     * Tests that duplicate edges are counted and the json output can be parsed
+     */
+    @Test
+    public void test2_duplicatesAndJson() {
+    	GraphBuilder builder = new GraphBuilder();
+    	builder.addEdge("A", "B");
+    	builder.addEdge("A", "B");
+    	FrozenGraph frozen = builder.buildFrozen();
+    	
+    	try {
+    		JSONObject json = (JSONObject) new JSONParser().parse(new GraphStats(frozen).toString());
+    		if (((Number) json.get("edges")).intValue() != frozen.size()
+    				|| ((Number) json.get("vertices")).intValue() != 2
+    				|| json.get("representation").equals("FrozenGraph") == false) {
+    			fail("json should contain the counts and the representation");
+    		}
+    		JSONObject components = (JSONObject) json.get("components");
+    		if (((Number) components.get("count")).intValue() != 2) {
+    			fail("json should contain 2 components");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    	
+    	// a graph copied edge by edge keeps its duplicates
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "B");
+    	graph.appendEdge("A", "B", DependencyKind.RUNTIME);
+    	GraphStats stats = new GraphStats(graph);
+    	if (stats.getEdgeCount() != 2 || stats.getDuplicateEdgeCount() != 1) {
+    		fail("the appended edge should be counted as a duplicate");
+    	}
+    }
+
+    /**
+     * Tests the estimates of the other representations and that a plain
+     * Graph is not left with a cached snapshot
+     */
+    @Test
+    public void test3_representations() {
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "B");
+    	graph.addEdge("B", "C");
+    	
+    	GraphStats stats = new GraphStats(graph);
+    	if (graph.isFrozen() || stats.getSnapshotBytes() <= 0) {
+    		fail("the snapshot should be measured without being cached");
+    	}
+    	
+    	if (new GraphStats(new CompressedGraph(graph)).getEstimatedBytes() <= 0) {
+    		fail("heap of a CompressedGraph should be estimated");
+    	}
+    	GraphStats offHeap = new GraphStats(new OffHeapGraph(graph));
+    	if (offHeap.getEstimatedBytes() <= 0 || offHeap.getOffHeapBytes() <= 0) {
+    		fail("heap and buffers of an OffHeapGraph should be estimated");
+    	}
+    	
+    	try {
+    		Path file = Files.createTempFile("registry", ".idx");
+    		LazyGraph.writeIndex(graph, file);
+    		try (LazyGraph lazy = LazyGraph.open(file)) {
+    			GraphStats loaded = new GraphStats(lazy);
+    			if (loaded.getEstimatedBytes() <= 0 || loaded.getEdgeCount() != 2 || loaded.getSnapshotBytes() != 0) {
+    				fail("heap of the loaded LazyGraph should be estimated");
+    			}
+    		}
+    		finally {
+    			Files.delete(file);
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    }
+}
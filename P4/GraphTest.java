@@ -1,5 +1,7 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
+
 import org.junit.jupiter.api.Test;
 
 /**
@@ -216,4 +218,130 @@ class GraphTest {
     		fail("number of adjacent vertices should be 4");
     	}
     }
+    
+    /** 
+     * Tests that freeze() returns a cached snapshot that is rebuilt after a mutation
+     */
+    @Test
+    public void test11_freeze() {
+    	Graph graph = new Graph();
+    	graph.addEdge("KeyOne", "KeyTwo");
+    	graph.addEdge("KeyOne", "KeyThree");
+    	
+    	FrozenGraph frozen = graph.freeze();
+    	if (frozen.order() != 3 || frozen.size() != 2) {
+    		fail("snapshot should have 3 vertices and 2 edges");
+    	}
+    	if (graph.freeze() != frozen) {
+    		fail("unchanged graph should return the cached snapshot");
+    	}
+    	
+    	// the snapshot cannot be modified
+    	try {
+    		frozen.addVertex("KeyFour");
+    		fail("UnsupportedOperationException should have been thrown");
+    	}
+    	catch (UnsupportedOperationException e) {
+    		// test passed
+    	}
+    	
+    	// a mutation produces a new snapshot
+    	graph.addEdge("KeyTwo", "KeyFour");
+    	if (graph.freeze() == frozen || graph.freeze().size() != 3) {
+    		fail("snapshot should be rebuilt after a mutation");
+    	}
+    	if (frozen.size() != 2) {
+    		fail("old snapshot should not change");
+    	}
+    }
+    
+    /** 
+     * Tests that GraphBuilder builds the same graph as addEdge without duplicates
+     */
+    @Test
+    public void test12_graphBuilder() {
+    	GraphBuilder builder = new GraphBuilder(4, 4);
+    	builder.addEdges(new String[] { "KeyOne", "KeyOne", "KeyOne", "KeyTwo" }, 
+    			new String[] { "KeyThree", "KeyTwo", "KeyThree", "KeyThree" });
+    	builder.addVertex("KeyFour");
+    	Graph graph = builder.build();
+    	
+    	if (graph.order() != 4 || graph.size() != 3) {
+    		fail("graph should have 4 vertices and 3 edges");
+    	}
+    	
+    	// dependencies keep the order they were added in
+    	if (graph.getAdjacentVerticesOf("KeyOne").get(0).equals("KeyThree") == false) {
+    		fail("first dependency of KeyOne should be KeyThree");
+    	}
+    	
+    	// the built graph is still mutable
+    	graph.addEdge("KeyFour", "KeyOne");
+    	if (graph.size() != 4) {
+    		fail("number of edges should be 4");
+    	}
+    	
+    	GraphBuilder frozenBuilder = new GraphBuilder();
+    	frozenBuilder.addEdge("KeyTwo", "KeyOne");
+    	frozenBuilder.addEdge("KeyTwo", "KeyOne");
+    	FrozenGraph frozen = frozenBuilder.buildFrozen();
+    	if (frozen.order() != 2 || frozen.size() != 1 || frozen.getAdjacentVerticesOf("KeyTwo").contains("KeyOne") == false) {
+    		fail("frozen graph should have 2 vertices and 1 edge");
+    	}
+    }
+    
+    /** 
+     * Tests that edge kinds are combined, removed and kept by freeze() and GraphBuilder
+     */
+    @Test
+    public void test13_edgeKinds() {
+    	Graph graph = new Graph();
+    	graph.addEdge("KeyOne", "KeyTwo");
+    	graph.addEdge("KeyOne", "KeyTwo", DependencyKind.BUILD);
+    	graph.addEdge("KeyOne", "KeyThree", DependencyKind.TEST);
+    	
+    	// kinds of the same dependency share one edge
+    	if (graph.size() != 2) {
+    		fail("number of edges should be 2");
+    	}
+    	if (graph.getEdgeKinds("KeyOne", "KeyTwo") != (DependencyKind.RUNTIME | DependencyKind.BUILD)) {
+    		fail("edge to KeyTwo should be RUNTIME and BUILD");
+    	}
+    	if (graph.getAdjacentVerticesOf("KeyOne", DependencyKind.TEST).equals(Arrays.asList("KeyThree")) == false) {
+    		fail("only KeyThree is a TEST dependency");
+    	}
+    	
+    	// the edge stays until its last kind is removed
+    	graph.removeEdge("KeyOne", "KeyTwo", DependencyKind.RUNTIME);
+    	if (graph.getEdgeKinds("KeyOne", "KeyTwo") != DependencyKind.BUILD) {
+    		fail("edge to KeyTwo should only be BUILD");
+    	}
+    	graph.removeEdge("KeyOne", "KeyTwo", DependencyKind.BUILD);
+    	if (graph.size() != 1 || graph.getEdgeKinds("KeyOne", "KeyThree") != DependencyKind.TEST) {
+    		fail("only the TEST edge to KeyThree should be left");
+    	}
+    	
+    	// the snapshot filters on the kinds
+    	graph.addEdge("KeyOne", "KeyFour");
+    	FrozenGraph frozen = graph.freeze();
+    	if (frozen.getAdjacentVerticesOf("KeyOne", DependencyKind.RUNTIME).equals(Arrays.asList("KeyFour")) == false) {
+    		fail("only KeyFour is a RUNTIME dependency in the snapshot");
+    	}
+    	int[] ids = new int[2];
+    	if (frozen.adjacentIdsOf(frozen.indexOf("KeyOne"), DependencyKind.ALL, ids, 0) != 2) {
+    		fail("all kinds should follow both edges");
+    	}
+    	
+    	GraphBuilder builder = new GraphBuilder();
+    	builder.addEdge("KeyOne", "KeyTwo", DependencyKind.BUILD);
+    	builder.addEdge("KeyOne", "KeyTwo", DependencyKind.OPTIONAL);
+    	builder.addEdge("KeyOne", "KeyThree");
+    	Graph built = builder.build();
+    	if (built.size() != 2 || built.getEdgeKinds("KeyOne", "KeyTwo") != (DependencyKind.BUILD | DependencyKind.OPTIONAL)) {
+    		fail("builder should combine the kinds of duplicate edges");
+    	}
+    	if (built.freeze().getAdjacentVerticesOf("KeyOne", DependencyKind.RUNTIME).equals(Arrays.asList("KeyThree")) == false) {
+    		fail("only KeyThree is a RUNTIME dependency of the built graph");
+    	}
+    }
 }
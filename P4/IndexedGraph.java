@@ -0,0 +1,67 @@
+/**
+ * Filename:   IndexedGraph.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * A graph whose vertices are also numbered 0 .. order()-1, so traversals
+ * can work on int ids and primitive arrays instead of String keys.
+ */
+public interface IndexedGraph extends GraphADT {
+
+    /**
+     * Returns the id of a vertex.
+     * 
+     * @param vertex the vertex name
+     * @return the id of the vertex, or -1 if it is not in the graph
+     */
+    public int indexOf(String vertex);
+    
+    
+    /**
+     * Returns the name of the vertex with the given id.
+     * 
+     * @param id a vertex id between 0 and order()-1
+     * @return the vertex name
+     */
+    public String nameOf(int id);
+    
+    
+    /**
+     * Returns the number of adjacent vertices (dependencies) of a vertex.
+     * 
+     * @param id a vertex id between 0 and order()-1
+     * @return the out-degree of the vertex
+     */
+    public int degreeOf(int id);
+    
+    
+    /**
+     * Copies the ids of the adjacent vertices of a vertex into dest,
+     * starting at offset. dest must have room for degreeOf(id) entries.
+     * 
+     * @param id a vertex id between 0 and order()-1
+     * @param dest the array to copy the ids into
+     * @param offset the first index of dest to write
+     * @return the number of ids written
+     */
+    public int adjacentIdsOf(int id, int[] dest, int offset);
+    
+    
+    /**
+     * Copies the ids of the adjacent vertices whose edge has any of the
+     * DependencyKind bits in mask into dest, starting at offset. dest must 
+     * have room for degreeOf(id) entries.
+     * 
+     * Graphs that do not store edge kinds treat every edge as RUNTIME.
+     * 
+     * @param id a vertex id between 0 and order()-1
+     * @param mask the DependencyKind bits to follow
+     * @param dest the array to copy the ids into
+     * @param offset the first index of dest to write
+     * @return the number of ids written
+     */
+    public default int adjacentIdsOf(int id, int mask, int[] dest, int offset) {
+    	return (mask & DependencyKind.RUNTIME) != 0 ? adjacentIdsOf(id, dest, offset) : 0;
+    }
+    
+}
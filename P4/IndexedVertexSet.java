@@ -0,0 +1,49 @@
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Filename:   IndexedVertexSet.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Read-only Set view of the vertices of an IndexedGraph. Membership checks
+ * go through indexOf and iteration walks the ids in order, so no copy of
+ * the vertex names is ever made.
+ */
+class IndexedVertexSet extends AbstractSet<String> {
+	// graph whose vertices are viewed
+	private final IndexedGraph graph;
+	
+	IndexedVertexSet(IndexedGraph graph) {
+		this.graph = graph;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof String && graph.indexOf((String) o) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return graph.order();
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int next = 0;
+
+			public boolean hasNext() {
+				return next < graph.order();
+			}
+
+			public String next() {
+				if (next >= graph.order()) {
+					throw new NoSuchElementException();
+				}
+				return graph.nameOf(next++);
+			}
+		};
+	}
+}
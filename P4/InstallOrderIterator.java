@@ -0,0 +1,192 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Filename:   InstallOrderIterator.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Lazily produces the installation order of a package.
+ * 
+ * The depth-first traversal only advances far enough to finish the next
+ * package, so a consumer can start installing (or writing output) before
+ * the whole closure has been visited. No result list is built: besides one
+ * state byte per vertex, memory is bounded by the current path and the
+ * dependency ids of the vertices on it.
+ * 
+ * This is the traversal behind every installation order of PackageManager.
+ * The state array can be shared by several traversals, e.g. one per root
+ * for the order of all packages, and vertices can be blocked beforehand so
+ * they are never entered. Bounded queries keep the states in a
+ * VertexStateMap instead, so they do not pay for an array over the whole
+ * graph. If a QueryProfile is given, the visited vertices and edges, the
+ * depth and the exclusive work of every vertex are recorded into it.
+ * 
+ * A cycle is reported by throwing UncheckedCycleException from hasNext or
+ * next once the traversal reaches it.
+ */
+class InstallOrderIterator implements Iterator<String> {
+	// values of the state array
+	static final byte UNVISITED = 0;
+	static final byte ON_PATH = 1;
+	static final byte FINISHED = 2;
+	static final byte BLOCKED = 3;
+	
+	private final IndexedGraph graph;
+	
+	// DependencyKind bits of the edges to follow
+	private final int mask;
+	
+	// state of every vertex id, BLOCKED and higher are never entered; one
+	// of the two is null
+	private final byte[] state;
+	private final VertexStateMap sparse;
+	
+	// where the visit is recorded, or null
+	private final QueryProfile profile;
+	
+	// one frame per vertex on the current path, sharing one array of dependency ids
+	private int[] vertexStack = new int[16];
+	private int[] nextStack = new int[16];
+	private int[] endStack = new int[16];
+	private int[] edges = new int[16];
+	private int depth;
+	
+	// vertices finished so far and when each vertex on the path was entered,
+	// only kept with a profile
+	private int finished;
+	private int[] enteredStack;
+	
+	// the next package to return, or -1 if it has not been found yet
+	private int ready = -1;
+	
+	InstallOrderIterator(IndexedGraph graph, int root, int mask) {
+		this(graph, root, mask, new byte[graph.order()], null);
+	}
+	
+	/*
+	 * Traversal from root over the vertices that are UNVISITED in state,
+	 * which is updated as the traversal goes.
+	 */
+	InstallOrderIterator(IndexedGraph graph, int root, int mask, byte[] state, QueryProfile profile) {
+		this(graph, root, mask, state, null, profile);
+	}
+	
+	/*
+	 * Traversal from root over the vertices that are UNVISITED in states.
+	 */
+	InstallOrderIterator(IndexedGraph graph, int root, int mask, VertexStateMap states) {
+		this(graph, root, mask, null, states, null);
+	}
+	
+	private InstallOrderIterator(IndexedGraph graph, int root, int mask, byte[] state, VertexStateMap sparse, 
+			QueryProfile profile) {
+		this.graph = graph;
+		this.mask = mask;
+		this.state = state;
+		this.sparse = sparse;
+		this.profile = profile;
+		if (profile != null) {
+			enteredStack = new int[16];
+		}
+		if (stateOf(root) == UNVISITED) {
+			push(root, 0);
+		}
+	}
+	
+	public boolean hasNext() {
+		if (ready < 0) {
+			ready = nextId();
+		}
+		return ready >= 0;
+	}
+	
+	public String next() {
+		if (hasNext() == false) {
+			throw new NoSuchElementException();
+		}
+		int vertex = ready;
+		ready = -1;
+		return graph.nameOf(vertex);
+	}
+	
+	/*
+	 * Runs the traversal until the next vertex is finished and returns its
+	 * id, or -1 when the traversal is complete.
+	 */
+	int nextId() {
+		while (depth > 0) {
+			int top = depth - 1;
+			
+			// all dependencies visited, the vertex can be installed
+			if (nextStack[top] == endStack[top]) {
+				int vertex = vertexStack[top];
+				setState(vertex, FINISHED);
+				depth--;
+				if (profile != null) {
+					finished++;
+					profile.exclusiveWork(graph.nameOf(vertex), finished - enteredStack[top]);
+				}
+				return vertex;
+			}
+			
+			int node = edges[nextStack[top]++];
+			if (profile != null) {
+				profile.edge();
+			}
+			
+			// checks for a cycle if the node is on the current path
+			byte nodeState = stateOf(node);
+			if (nodeState == ON_PATH) {
+				throw new UncheckedCycleException(new CycleException());
+			}
+			if (nodeState == UNVISITED) {
+				push(node, endStack[top]);
+			}
+		}
+		return -1;
+	}
+	
+	/*
+	 * Pushes a frame for vertex whose dependency ids start at start.
+	 */
+	private void push(int vertex, int start) {
+		if (depth == vertexStack.length) {
+			vertexStack = Arrays.copyOf(vertexStack, depth * 2);
+			nextStack = Arrays.copyOf(nextStack, depth * 2);
+			endStack = Arrays.copyOf(endStack, depth * 2);
+			if (profile != null) {
+				enteredStack = Arrays.copyOf(enteredStack, depth * 2);
+			}
+		}
+		
+		int degree = graph.degreeOf(vertex);
+		if (edges.length < start + degree) {
+			edges = Arrays.copyOf(edges, Math.max(edges.length * 2, start + degree));
+		}
+		
+		setState(vertex, ON_PATH);
+		vertexStack[depth] = vertex;
+		nextStack[depth] = start;
+		endStack[depth] = start + graph.adjacentIdsOf(vertex, mask, edges, start);
+		depth++;
+		if (profile != null) {
+			enteredStack[depth - 1] = finished;
+			profile.enter(depth);
+		}
+	}
+	
+	private byte stateOf(int vertex) {
+		return state != null ? state[vertex] : sparse.get(vertex);
+	}
+	
+	private void setState(int vertex, byte value) {
+		if (state != null) {
+			state[vertex] = value;
+		}
+		else {
+			sparse.put(vertex, value);
+		}
+	}
+}
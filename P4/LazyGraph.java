@@ -0,0 +1,483 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Filename:   LazyGraph.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Read-only graph backed by an indexed registry file, loading packages on
+ * demand.
+ *
+ * The file written by writeIndex() has a fixed-size header, a name index
+ * sorted by UTF-8 bytes with the byte offset of every package record, the
+ * names themselves and one record per package listing the index positions
+ * of its dependencies followed by the DependencyKind bits of each edge. Opening the file only reads the header. Names are
+ * found by binary search over the index and dependency lists are read the
+ * first time a traversal asks for them, then cached. A query about one
+ * package therefore only reads that package's closure.
+ *
+ * Vertex ids are index positions. Mutating methods throw
+ * UnsupportedOperationException.
+ */
+public class LazyGraph implements IndexedGraph, Closeable {
+	// "P4IX" and the format version, format 1 files have no edge kinds
+	private static final int MAGIC = 0x50344958;
+	private static final int FORMAT = 2;
+
+	// magic, format, vertices, edges, index, names and records offsets
+	private static final int HEADER_BYTES = 4 * Integer.BYTES + 3 * Long.BYTES;
+
+	// name offset, name length and record offset of every vertex
+	private static final int ENTRY_BYTES = 2 * Integer.BYTES + Long.BYTES;
+
+	private final FileChannel file;
+	private final int format;
+	private final int vertexCount;
+	private final int edgeCount;
+	private final long indexOffset;
+	private final long namesOffset;
+
+	// everything read so far
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private final ConcurrentHashMap<Integer, String> names = new ConcurrentHashMap<Integer, String>();
+	private final ConcurrentHashMap<Integer, int[]> adjacency = new ConcurrentHashMap<Integer, int[]>();
+
+	// kinds of the loaded dependency lists that have an edge other than RUNTIME
+	private final ConcurrentHashMap<Integer, byte[]> kinds = new ConcurrentHashMap<Integer, byte[]>();
+
+	private final Set<String> vertexSet;
+
+	/*
+	 * Use LazyGraph.open()
+	 */
+	private LazyGraph(FileChannel file) throws IOException {
+		this.file = file;
+
+		ByteBuffer header = read(0, HEADER_BYTES);
+		if (header.getInt() != MAGIC) {
+			throw new IOException("not a registry index file");
+		}
+		format = header.getInt();
+		if (format != 1 && format != FORMAT) {
+			throw new IOException("unsupported registry index format " + format);
+		}
+		vertexCount = header.getInt();
+		edgeCount = header.getInt();
+		indexOffset = header.getLong();
+		namesOffset = header.getLong();
+		header.getLong();
+
+		vertexSet = new IndexedVertexSet(this);
+	}
+
+	/**
+	 * Opens an index written by writeIndex(). Only the header is read.
+	 *
+	 * @param path the index file
+	 * @return the graph
+	 * @throws IOException if the file cannot be read or is not an index
+	 */
+	public static LazyGraph open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new LazyGraph(channel);
+		}
+		catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes a graph as an indexed registry file. The index is written to a
+	 * temporary file next to path, synced and then renamed over path, so
+	 * readers either see the old index or the complete new one.
+	 *
+	 * @param graph the graph to write
+	 * @param path the file to create or replace
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeIndex(GraphADT graph, Path path) throws IOException {
+		// sort the names by UTF-8 bytes, the position is the vertex id
+		String[] sorted = graph.getAllVertices().toArray(new String[0]);
+		byte[][] encoded = new byte[sorted.length][];
+		Integer[] order = new Integer[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			encoded[i] = sorted[i].getBytes(StandardCharsets.UTF_8);
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(encoded[a], encoded[b]));
+
+		HashMap<String, Integer> idOf = new HashMap<String, Integer>();
+		for (int id = 0; id < order.length; id++) {
+			idOf.put(sorted[order[id]], id);
+		}
+
+		// section offsets
+		int edges = 0;
+		long nameBytes = 0;
+		long[] recordOffsets = new long[order.length];
+		long recordBytes = 0;
+		for (int id = 0; id < order.length; id++) {
+			int degree = graph.getAdjacentVerticesOf(sorted[order[id]]).size();
+			recordOffsets[id] = recordBytes;
+			recordBytes += Integer.BYTES + (long) degree * (Integer.BYTES + 1);
+			nameBytes += encoded[order[id]].length;
+			edges += degree;
+		}
+		long index = HEADER_BYTES;
+		long namesStart = index + (long) order.length * ENTRY_BYTES;
+		long records = namesStart + nameBytes;
+
+		Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+			OutputStream stream = Channels.newOutputStream(channel);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT);
+			out.writeInt(order.length);
+			out.writeInt(edges);
+			out.writeLong(index);
+			out.writeLong(namesStart);
+			out.writeLong(records);
+
+			int nameOffset = 0;
+			for (int id = 0; id < order.length; id++) {
+				out.writeInt(nameOffset);
+				out.writeInt(encoded[order[id]].length);
+				out.writeLong(records + recordOffsets[id]);
+				nameOffset += encoded[order[id]].length;
+			}
+
+			for (int id = 0; id < order.length; id++) {
+				out.write(encoded[order[id]]);
+			}
+
+			for (int id = 0; id < order.length; id++) {
+				String vertex = sorted[order[id]];
+				List<String> adjacent = graph.getAdjacentVerticesOf(vertex);
+				out.writeInt(adjacent.size());
+				for (String dependency : adjacent) {
+					out.writeInt(idOf.get(dependency));
+				}
+				for (int i = 0; i < adjacent.size(); i++) {
+					out.writeByte(DependencyKind.of(graph, vertex, i));
+				}
+			}
+			out.flush();
+			channel.force(true);
+		}
+		catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		try {
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+	}
+
+	/**
+	 * Not supported, the lazy graph is immutable.
+	 */
+	public void addVertex(String vertex) {
+		throw new UnsupportedOperationException("LazyGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the lazy graph is immutable.
+	 */
+	public void removeVertex(String vertex) {
+		throw new UnsupportedOperationException("LazyGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the lazy graph is immutable.
+	 */
+	public void addEdge(String vertex1, String vertex2) {
+		throw new UnsupportedOperationException("LazyGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the lazy graph is immutable.
+	 */
+	public void removeEdge(String vertex1, String vertex2) {
+		throw new UnsupportedOperationException("LazyGraph is immutable");
+	}
+
+	/**
+     * Returns a read-only Set that contains all the vertices. Iterating it
+     * reads the whole name index.
+	 */
+	public Set<String> getAllVertices() {
+		return vertexSet;
+	}
+
+	/**
+     * Get all the neighbor (adjacent) vertices of a vertex, loading them
+     * from the file if needed, or null if the vertex does not exist
+	 */
+	public List<String> getAdjacentVerticesOf(String vertex) {
+		int id = indexOf(vertex);
+		if (id < 0) {
+			return null;
+		}
+
+		int[] adjacent = record(id);
+		List<String> list = new ArrayList<String>(adjacent.length);
+		for (int dependency : adjacent) {
+			list.add(nameOf(dependency));
+		}
+		return list;
+	}
+
+	/**
+     * Get the adjacent vertices of a vertex whose edge has any of the given
+     * kinds, loading them from the file if needed, or null if the vertex
+     * does not exist
+	 */
+	public List<String> getAdjacentVerticesOf(String vertex, int mask) {
+		int id = indexOf(vertex);
+		if (id < 0) {
+			return null;
+		}
+
+		int[] adjacent = record(id);
+		List<String> list = new ArrayList<String>();
+		for (int i = 0; i < adjacent.length; i++) {
+			if ((kindsAt(id, i) & mask) != 0) {
+				list.add(nameOf(adjacent[i]));
+			}
+		}
+		return list;
+	}
+
+	/**
+     * Returns the number of edges in this graph.
+     */
+	public int size() {
+		return edgeCount;
+	}
+
+	/**
+     * Returns the number of vertices in this graph.
+     */
+	public int order() {
+		return vertexCount;
+	}
+
+	public int indexOf(String vertex) {
+		if (vertex == null) {
+			return -1;
+		}
+		Integer cached = ids.get(vertex);
+		if (cached != null) {
+			return cached;
+		}
+
+		// binary search over the name index
+		byte[] key = vertex.getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = vertexCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = Arrays.compareUnsigned(nameBytes(middle), key);
+			if (comparison < 0) {
+				low = middle + 1;
+			}
+			else if (comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				ids.put(vertex, middle);
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	public String nameOf(int id) {
+		String name = names.get(id);
+		if (name == null) {
+			name = new String(nameBytes(id), StandardCharsets.UTF_8);
+			names.put(id, name);
+		}
+		return name;
+	}
+
+	public int degreeOf(int id) {
+		return record(id).length;
+	}
+
+	public int adjacentIdsOf(int id, int[] dest, int offset) {
+		int[] adjacent = record(id);
+		System.arraycopy(adjacent, 0, dest, offset, adjacent.length);
+		return adjacent.length;
+	}
+
+	@Override
+	public int adjacentIdsOf(int id, int mask, int[] dest, int offset) {
+		int[] adjacent = record(id);
+		byte[] edgeKinds = kinds.get(id);
+		if (edgeKinds == null) {
+			return (mask & DependencyKind.RUNTIME) != 0 ? adjacentIdsOf(id, dest, offset) : 0;
+		}
+
+		int count = 0;
+		for (int i = 0; i < adjacent.length; i++) {
+			if ((edgeKinds[i] & mask) != 0) {
+				dest[offset + count++] = adjacent[i];
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Returns the kinds of the i-th edge of vertex id.
+	 */
+	int kindsAt(int id, int i) {
+		record(id);
+		byte[] edgeKinds = kinds.get(id);
+		return edgeKinds == null ? DependencyKind.RUNTIME : edgeKinds[i];
+	}
+
+	/*
+	 * Returns false for index files written before edge kinds were stored,
+	 * where every edge reads as RUNTIME.
+	 */
+	boolean storesKinds() {
+		return format >= 2;
+	}
+
+	/*
+	 * Estimated retained heap of the names, dependency lists and kinds read
+	 * so far, with a boxed Integer per map entry. See GraphStats.
+	 */
+	long estimatedBytes() {
+		long bytes = 64 + GraphStats.hashMapBytes(ids.size()) + GraphStats.hashMapBytes(names.size())
+				+ GraphStats.hashMapBytes(adjacency.size()) + GraphStats.hashMapBytes(kinds.size())
+				+ 16L * (ids.size() + names.size() + adjacency.size() + kinds.size());
+		for (String name : names.values()) {
+			bytes += GraphStats.stringBytes(name);
+		}
+		for (int[] dependencies : adjacency.values()) {
+			bytes += GraphStats.arrayBytes(4, dependencies.length);
+		}
+		for (byte[] edgeKinds : kinds.values()) {
+			bytes += GraphStats.arrayBytes(1, edgeKinds.length);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns how many dependency lists have been loaded from the file.
+	 */
+	public int loadedCount() {
+		return adjacency.size();
+	}
+
+	/**
+	 * Closes the registry file.
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/*
+	 * Returns the dependency ids of a vertex, reading its record once. The
+	 * kinds of the record are stored before the ids are published, so any
+	 * thread that sees the ids also sees the kinds.
+	 */
+	private int[] record(int id) {
+		int[] adjacent = adjacency.get(id);
+		if (adjacent != null) {
+			return adjacent;
+		}
+
+		try {
+			long offset = entry(id).getLong(2 * Integer.BYTES);
+			int degree = read(offset, Integer.BYTES).getInt();
+			ByteBuffer buffer = read(offset + Integer.BYTES, degree * Integer.BYTES);
+			adjacent = new int[degree];
+			buffer.asIntBuffer().get(adjacent);
+
+			if (format >= 2 && degree > 0) {
+				byte[] edgeKinds = new byte[degree];
+				read(offset + Integer.BYTES + (long) degree * Integer.BYTES, degree).get(edgeKinds);
+				for (byte kind : edgeKinds) {
+					if (kind != DependencyKind.RUNTIME) {
+						kinds.put(id, edgeKinds);
+						break;
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("cannot read registry index", e);
+		}
+
+		adjacency.put(id, adjacent);
+		return adjacent;
+	}
+
+	/*
+	 * Reads the UTF-8 name of a vertex.
+	 */
+	private byte[] nameBytes(int id) {
+		try {
+			ByteBuffer entry = entry(id);
+			int nameOffset = entry.getInt(0);
+			int length = entry.getInt(Integer.BYTES);
+			ByteBuffer buffer = read(namesOffset + nameOffset, length);
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return bytes;
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("cannot read registry index", e);
+		}
+	}
+
+	private ByteBuffer entry(int id) throws IOException {
+		return read(indexOffset + (long) id * ENTRY_BYTES, ENTRY_BYTES);
+	}
+
+	/*
+	 * Reads length bytes at position with a positional read, which is safe
+	 * to use from several threads at once.
+	 */
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (file.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("registry index is truncated");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,129 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the lazily loaded registry index
+ * @author Stephen Fan
+ *
+ */
+class LazyGraphTest {
+
+    /**
+     * Tests that the index keeps all vertices and edges of the written graph
+     */
+    @Test
+    public void test1_writeAndOpen() throws IOException {
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "C");
+    	graph.addEdge("A", "B");
+    	graph.addEdge("B", "D");
+    	graph.addVertex("E");
+    	graph.addVertex("caf\u00e9");
+
+    	Path file = Files.createTempFile("registry", ".idx");
+    	LazyGraph.writeIndex(graph, file);
+
+    	try (LazyGraph lazy = LazyGraph.open(file)) {
+    		if (lazy.order() != 6) {
+    			fail("order should be 6");
+    		}
+    		if (lazy.size() != 3) {
+    			fail("size should be 3");
+    		}
+
+    		// adjacency keeps the order of the original graph
+    		List<String> adjacent = lazy.getAdjacentVerticesOf("A");
+    		if (adjacent.size() != 2 || adjacent.get(0).equals("C") == false
+    				|| adjacent.get(1).equals("B") == false) {
+    			fail("adjacent vertices of A should be [C, B]");
+    		}
+    		if (lazy.getAdjacentVerticesOf("X") != null) {
+    			fail("unknown vertex should have no adjacent vertices");
+    		}
+    		if (lazy.getAllVertices().contains("caf\u00e9") == false) {
+    			fail("vertex set should contain non-ASCII names");
+    		}
+
+    		try {
+    			lazy.addVertex("F");
+    			fail("LazyGraph should be immutable");
+    		}
+    		catch (UnsupportedOperationException e) {
+    			// expected
+    		}
+    	}
+    }
+
+    /**
+     * Tests that a single package query only loads the closure of the package
+     */
+    @Test
+    public void test2_loadsOnlyClosure() throws IOException {
+    	// two unrelated chains
+    	Graph graph = new Graph();
+    	for (int i = 0; i < 100; i++) {
+    		graph.addEdge("a" + i, "a" + (i + 1));
+    		graph.addEdge("b" + i, "b" + (i + 1));
+    	}
+
+    	Path file = Files.createTempFile("registry", ".idx");
+    	LazyGraph.writeIndex(graph, file);
+
+    	try (LazyGraph lazy = LazyGraph.open(file)) {
+    		if (lazy.loadedCount() != 0) {
+    			fail("opening the index should not load any package");
+    		}
+
+    		PackageManager pm = new PackageManager(lazy);
+    		List<String> list = null;
+    		try {
+    			list = pm.getInstallationOrder("a90");
+    		}
+    		catch (Exception e) {
+    			fail("An incorrect exception was thrown");
+    		}
+
+    		if (list.size() != 11 || list.get(0).equals("a100") == false
+    				|| list.get(10).equals("a90") == false) {
+    			fail("Installation order is not correct");
+    		}
+    		if (lazy.loadedCount() != 11) {
+    			fail("only the 11 packages of the closure should be loaded");
+    		}
+    	}
+    }
+
+    /**
+     * Tests that the index keeps the kinds of every edge, so masked queries give
+     * the same results as on the original graph
+     */
+    @Test
+    public void test3_edgeKinds() throws Exception {
+    	PackageManager pm = new PackageManager();
+    	pm.constructGraph("typed.json");
+
+    	Path file = Files.createTempFile("typed", ".idx");
+    	LazyGraph.writeIndex(pm.getGraph(), file);
+
+    	try (LazyGraph lazy = LazyGraph.open(file)) {
+    		PackageManager lazyPm = new PackageManager(lazy);
+    		for (int mask : new int[] { DependencyKind.RUNTIME, DependencyKind.TEST, DependencyKind.ALL }) {
+    			if (lazyPm.getInstallationOrder("app", mask).equals(pm.getInstallationOrder("app", mask)) == false) {
+    				fail("order of app for mask " + mask + " should match the original graph");
+    			}
+    		}
+    		if (lazy.getAdjacentVerticesOf("app", DependencyKind.BUILD).equals(List.of("compiler")) == false) {
+    			fail("the only build dependency of app should be compiler");
+    		}
+    	}
+    	finally {
+    		Files.delete(file);
+    	}
+    }
+}
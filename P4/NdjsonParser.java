@@ -0,0 +1,483 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * Filename:   NdjsonParser.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Reads a registry in newline-delimited json: one package object per line,
+ * e.g. {"name": "A", "version": "1.0.0", "dependencies": ["B", "C@^2"]},
+ * with the same keys for build, test and optional dependencies as the json
+ * format. Blank lines are skipped and unknown keys are ignored.
+ *
+ * The file is memory-mapped and split into chunks that end at line breaks.
+ * Chunks are parsed in parallel directly from the mapped bytes; a String is
+ * only created the first time a chunk sees a given name, later occurrences
+ * are looked up by their bytes.
+ */
+class NdjsonParser {
+	// target size of one chunk
+	private static final long CHUNK_BYTES = 16L << 20;
+
+	private final ByteBuffer bytes;
+	private final long base;
+
+	// names seen so far in this chunk
+	private final Interner interner = new Interner();
+
+	private int position;
+
+	private NdjsonParser(ByteBuffer bytes, long base) {
+		this.bytes = bytes;
+		this.base = base;
+	}
+
+	/**
+	 * Parses a newline-delimited registry file.
+	 *
+	 * @param path the file to read
+	 * @return List<Package> of all packages, in file order
+	 * @throws IOException if the file cannot be read
+	 * @throws ParseException if a line is not a valid package object; the
+	 * position is the byte offset in the file
+	 */
+	static List<Package> parse(Path path) throws IOException, ParseException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long[] bounds = chunkBounds(channel, size);
+			int chunks = bounds.length - 1;
+
+			MappedByteBuffer[] maps = new MappedByteBuffer[chunks];
+			for (int i = 0; i < chunks; i++) {
+				maps[i] = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+			}
+
+			// each chunk keeps its packages or the error it ran into
+			Object[] results = new Object[chunks];
+			IntStream.range(0, chunks).parallel().forEach(i -> {
+				try {
+					results[i] = new NdjsonParser(maps[i], bounds[i]).parseChunk();
+				}
+				catch (ParseException e) {
+					results[i] = e;
+				}
+			});
+
+			List<Package> packages = new ArrayList<Package>();
+			for (Object result : results) {
+				if (result instanceof ParseException) {
+					throw (ParseException) result;
+				}
+				@SuppressWarnings("unchecked")
+				List<Package> chunk = (List<Package>) result;
+				packages.addAll(chunk);
+			}
+			return packages;
+		}
+	}
+
+	/*
+	 * Splits the file into chunks of about CHUNK_BYTES (at least one per
+	 * core) and moves every boundary to just after the next line break.
+	 */
+	private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+		int cores = Runtime.getRuntime().availableProcessors();
+		long target = Math.max(1, Math.min(CHUNK_BYTES, size / cores));
+
+		List<Long> bounds = new ArrayList<Long>();
+		bounds.add(0L);
+		long start = 0;
+		ByteBuffer window = ByteBuffer.allocate(4096);
+		while (start < size) {
+			long end = Math.min(size, start + target);
+			while (end < size) {
+				window.clear();
+				int read = channel.read(window, end);
+				int newline = -1;
+				for (int i = 0; i < read && newline < 0; i++) {
+					if (window.get(i) == '\n') {
+						newline = i;
+					}
+				}
+				if (newline >= 0) {
+					end += newline + 1;
+					break;
+				}
+				end += Math.max(read, 0);
+			}
+			bounds.add(end);
+			start = end;
+		}
+
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	/*
+	 * Parses every line of the chunk.
+	 */
+	private List<Package> parseChunk() throws ParseException {
+		List<Package> packages = new ArrayList<Package>();
+		int limit = bytes.limit();
+		while (true) {
+			skipWhitespace();
+			if (position >= limit) {
+				return packages;
+			}
+			packages.add(parsePackage());
+
+			// nothing else may follow on the line
+			while (position < limit && bytes.get(position) != '\n') {
+				if (isWhitespace(bytes.get(position)) == false) {
+					throw unexpected();
+				}
+				position++;
+			}
+		}
+	}
+
+	private Package parsePackage() throws ParseException {
+		expect('{');
+		String name = null;
+		String version = null;
+		Package pkg = new Package(null, null, new String[0]);
+
+		skipWhitespace();
+		if (peek() == '}') {
+			position++;
+		}
+		else {
+			while (true) {
+				skipWhitespace();
+				String key = parseString();
+				skipWhitespace();
+				expect(':');
+				skipWhitespace();
+
+				if (key.equals("name")) {
+					name = parseString();
+				}
+				else if (key.equals("version")) {
+					// versions may be written as numbers, e.g. 1.2
+					version = peek() == '"' ? parseString() : parseLiteral();
+				}
+				else if (key.equals("dependencies")) {
+					pkg.setDependencies(parseStringArray());
+				}
+				else if (key.equals("buildDependencies")) {
+					pkg.setBuildDependencies(parseStringArray());
+				}
+				else if (key.equals("testDependencies")) {
+					pkg.setTestDependencies(parseStringArray());
+				}
+				else if (key.equals("optionalDependencies")) {
+					pkg.setOptionalDependencies(parseStringArray());
+				}
+				else {
+					skipValue();
+				}
+
+				skipWhitespace();
+				byte next = next();
+				if (next == '}') {
+					break;
+				}
+				if (next != ',') {
+					position--;
+					throw unexpected();
+				}
+			}
+		}
+
+		if (name == null) {
+			throw new ParseException(offset(), ParseException.ERROR_UNEXPECTED_TOKEN, "package without name");
+		}
+		pkg.setName(name);
+		pkg.setVersion(version);
+		return pkg;
+	}
+
+	private String[] parseStringArray() throws ParseException {
+		expect('[');
+		List<String> values = new ArrayList<String>();
+		skipWhitespace();
+		if (peek() == ']') {
+			position++;
+			return new String[0];
+		}
+		while (true) {
+			skipWhitespace();
+			values.add(parseString());
+			skipWhitespace();
+			byte next = next();
+			if (next == ']') {
+				return values.toArray(new String[values.size()]);
+			}
+			if (next != ',') {
+				position--;
+				throw unexpected();
+			}
+		}
+	}
+
+	/*
+	 * Parses a string. Strings without escapes are interned straight from
+	 * the mapped bytes.
+	 */
+	private String parseString() throws ParseException {
+		expect('"');
+		int start = position;
+		int limit = bytes.limit();
+		while (position < limit) {
+			byte b = bytes.get(position);
+			if (b == '"') {
+				String value = interner.intern(bytes, start, position);
+				position++;
+				return value;
+			}
+			if (b == '\\') {
+				position = start;
+				return parseEscapedString();
+			}
+			if (b == '\n') {
+				break;
+			}
+			position++;
+		}
+		throw unexpected();
+	}
+
+	/*
+	 * Slow path for strings containing escape sequences.
+	 */
+	private String parseEscapedString() throws ParseException {
+		StringBuilder builder = new StringBuilder();
+		int limit = bytes.limit();
+		int start = position;
+		while (position < limit) {
+			byte b = bytes.get(position);
+			if (b == '"' || b == '\\') {
+				builder.append(decode(start, position));
+				position++;
+				if (b == '"') {
+					return builder.toString();
+				}
+				char escape = (char) next();
+				switch (escape) {
+					case '"': case '\\': case '/': builder.append(escape); break;
+					case 'b': builder.append('\b'); break;
+					case 'f': builder.append('\f'); break;
+					case 'n': builder.append('\n'); break;
+					case 'r': builder.append('\r'); break;
+					case 't': builder.append('\t'); break;
+					case 'u':
+						if (position + 4 > limit) {
+							throw unexpected();
+						}
+						try {
+							builder.append((char) Integer.parseInt(decode(position, position + 4), 16));
+						}
+						catch (NumberFormatException e) {
+							throw unexpected();
+						}
+						position += 4;
+						break;
+					default:
+						position--;
+						throw unexpected();
+				}
+				start = position;
+			}
+			else if (b == '\n') {
+				break;
+			}
+			else {
+				position++;
+			}
+		}
+		throw unexpected();
+	}
+
+	/*
+	 * Returns the text of a number, true, false or null.
+	 */
+	private String parseLiteral() throws ParseException {
+		int start = position;
+		int limit = bytes.limit();
+		while (position < limit) {
+			byte b = bytes.get(position);
+			if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+				break;
+			}
+			position++;
+		}
+		if (position == start) {
+			throw unexpected();
+		}
+		String literal = decode(start, position);
+		return literal.equals("null") ? null : literal;
+	}
+
+	/*
+	 * Skips a value of a key that is not used.
+	 */
+	private void skipValue() throws ParseException {
+		byte b = peek();
+		if (b == '"') {
+			parseString();
+		}
+		else if (b == '[' || b == '{') {
+			// skip to the matching bracket, strings may contain brackets
+			int depth = 0;
+			do {
+				b = peek();
+				if (b == '"') {
+					parseString();
+					continue;
+				}
+				if (b == '[' || b == '{') {
+					depth++;
+				}
+				else if (b == ']' || b == '}') {
+					depth--;
+				}
+				else if (b == '\n') {
+					throw unexpected();
+				}
+				position++;
+			} while (depth > 0);
+		}
+		else {
+			parseLiteral();
+		}
+	}
+
+	private void skipWhitespace() {
+		int limit = bytes.limit();
+		while (position < limit && isWhitespace(bytes.get(position))) {
+			position++;
+		}
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+	private void expect(char c) throws ParseException {
+		if (peek() != c) {
+			throw unexpected();
+		}
+		position++;
+	}
+
+	private byte peek() throws ParseException {
+		if (position >= bytes.limit()) {
+			throw new ParseException(offset(), ParseException.ERROR_UNEXPECTED_TOKEN, "end of input");
+		}
+		return bytes.get(position);
+	}
+
+	private byte next() throws ParseException {
+		byte b = peek();
+		position++;
+		return b;
+	}
+
+	private String decode(int from, int to) {
+		byte[] slice = new byte[to - from];
+		bytes.get(from, slice);
+		return new String(slice, StandardCharsets.UTF_8);
+	}
+
+	private ParseException unexpected() {
+		Object unexpected = position < bytes.limit() ? Character.valueOf((char) (bytes.get(position) & 0xff)) : "end of input";
+		return new ParseException(offset(), ParseException.ERROR_UNEXPECTED_CHAR, unexpected);
+	}
+
+	/*
+	 * Byte offset of the current position in the file.
+	 */
+	private int offset() {
+		return (int) Math.min(Integer.MAX_VALUE, base + position);
+	}
+
+	/*
+	 * Open addressing table from the bytes of a string to the String itself.
+	 */
+	private static class Interner {
+		private byte[][] keys = new byte[1024][];
+		private String[] values = new String[1024];
+		private int size;
+
+		String intern(ByteBuffer bytes, int from, int to) {
+			int length = to - from;
+			int hash = 1;
+			for (int i = from; i < to; i++) {
+				hash = 31 * hash + bytes.get(i);
+			}
+
+			int mask = keys.length - 1;
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (keys[slot] != null) {
+				byte[] key = keys[slot];
+				if (key.length == length && matches(key, bytes, from)) {
+					return values[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			byte[] key = new byte[length];
+			bytes.get(from, key);
+			String value = new String(key, StandardCharsets.UTF_8);
+			keys[slot] = key;
+			values[slot] = value;
+			if (++size * 2 > keys.length) {
+				grow();
+			}
+			return value;
+		}
+
+		private static boolean matches(byte[] key, ByteBuffer bytes, int from) {
+			for (int i = 0; i < key.length; i++) {
+				if (key[i] != bytes.get(from + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void grow() {
+			byte[][] oldKeys = keys;
+			String[] oldValues = values;
+			keys = new byte[oldKeys.length * 2][];
+			values = new String[oldKeys.length * 2];
+			int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					int hash = Arrays.hashCode(oldKeys[i]);
+					int slot = (hash ^ (hash >>> 16)) & mask;
+					while (keys[slot] != null) {
+						slot = (slot + 1) & mask;
+					}
+					keys[slot] = oldKeys[i];
+					values[slot] = oldValues[i];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,287 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filename:   OffHeapGraph.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Immutable copy of a graph stored outside of the Java heap.
+ * 
+ * The vertex names are stored as UTF-8 bytes in sorted order in one direct
+ * buffer and the dependency lists as int ids in compressed sparse row form
+ * in two more, plus a DependencyKind byte per edge if any edge is not
+ * RUNTIME. The heap only holds the buffer handles, so the garbage
+ * collector does not have to scan one String and one ArrayList per package
+ * and heap size no longer depends on the registry size.
+ * 
+ * Names are materialized as Strings only when nameOf or
+ * getAdjacentVerticesOf is called. Mutating methods throw
+ * UnsupportedOperationException.
+ */
+public class OffHeapGraph implements IndexedGraph {
+	// UTF-8 bytes of all names, sorted by unsigned byte order
+	private final ByteBuffer nameBytes;
+	
+	// nameOffsets[id] .. nameOffsets[id+1] is the name of vertex id
+	private final IntBuffer nameOffsets;
+	
+	// edgeOffsets[id] .. edgeOffsets[id+1] are the dependencies of vertex id in targets
+	private final IntBuffer edgeOffsets;
+	private final IntBuffer targets;
+	
+	// kinds of every edge in targets, null if all edges are RUNTIME
+	private final ByteBuffer kinds;
+	
+	private final int vertexCount;
+	private final int edgeCount;
+	
+	private final Set<String> vertexSet;
+	
+	/**
+	 * Copies the given graph into off-heap buffers.
+	 * 
+	 * @param graph the graph to copy
+	 */
+	public OffHeapGraph(GraphADT graph) {
+		// sort names by their UTF-8 bytes so lookups can compare raw bytes
+		String[] names = graph.getAllVertices().toArray(new String[0]);
+		byte[][] encoded = new byte[names.length][];
+		Integer[] sorted = new Integer[names.length];
+		long totalNameBytes = 0;
+		for (int i = 0; i < names.length; i++) {
+			encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+			sorted[i] = i;
+			totalNameBytes += encoded[i].length;
+		}
+		Arrays.sort(sorted, (a, b) -> Arrays.compareUnsigned(encoded[a], encoded[b]));
+		
+		if (totalNameBytes > Integer.MAX_VALUE || (long) graph.size() * Integer.BYTES > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("graph too large for a single buffer");
+		}
+		
+		vertexCount = names.length;
+		nameBytes = ByteBuffer.allocateDirect((int) totalNameBytes);
+		nameOffsets = allocateInts(vertexCount + 1);
+		
+		// write the string table
+		String[] byId = new String[vertexCount];
+		for (int id = 0; id < vertexCount; id++) {
+			nameOffsets.put(id, nameBytes.position());
+			nameBytes.put(encoded[sorted[id]]);
+			byId[id] = names[sorted[id]];
+		}
+		nameOffsets.put(vertexCount, nameBytes.position());
+		
+		// write the adjacency, names are resolved through the new string table
+		edgeOffsets = allocateInts(vertexCount + 1);
+		IntBuffer edges = allocateInts(Math.max(1, graph.size()));
+		ByteBuffer edgeKinds = null;
+		int count = 0;
+		for (int id = 0; id < vertexCount; id++) {
+			edgeOffsets.put(id, count);
+			List<String> adjacent = graph.getAdjacentVerticesOf(byId[id]);
+			for (int i = 0; i < adjacent.size(); i++) {
+				int dependencyId = indexOf(adjacent.get(i));
+				if (dependencyId < 0) {
+					continue;
+				}
+				int kind = DependencyKind.of(graph, byId[id], i);
+				if (kind != DependencyKind.RUNTIME && edgeKinds == null) {
+					// the edges so far were all RUNTIME
+					edgeKinds = ByteBuffer.allocateDirect(edges.capacity());
+					for (int e = 0; e < count; e++) {
+						edgeKinds.put(e, (byte) DependencyKind.RUNTIME);
+					}
+				}
+				if (edgeKinds != null) {
+					edgeKinds.put(count, (byte) kind);
+				}
+				edges.put(count++, dependencyId);
+			}
+		}
+		edgeOffsets.put(vertexCount, count);
+		
+		targets = edges;
+		kinds = edgeKinds;
+		edgeCount = count;
+		vertexSet = new IndexedVertexSet(this);
+	}
+
+	/**
+	 * Not supported, the off-heap graph is immutable.
+	 */
+	public void addVertex(String vertex) {
+		throw new UnsupportedOperationException("OffHeapGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the off-heap graph is immutable.
+	 */
+	public void removeVertex(String vertex) {
+		throw new UnsupportedOperationException("OffHeapGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the off-heap graph is immutable.
+	 */
+	public void addEdge(String vertex1, String vertex2) {
+		throw new UnsupportedOperationException("OffHeapGraph is immutable");
+	}
+
+	/**
+	 * Not supported, the off-heap graph is immutable.
+	 */
+	public void removeEdge(String vertex1, String vertex2) {
+		throw new UnsupportedOperationException("OffHeapGraph is immutable");
+	}
+
+	/**
+     * Returns a read-only Set that contains all the vertices
+	 */
+	public Set<String> getAllVertices() {
+		return vertexSet;
+	}
+
+	/**
+     * Get all the neighbor (adjacent) vertices of a vertex as a new list,
+     * or null if the vertex does not exist
+	 */
+	public List<String> getAdjacentVerticesOf(String vertex) {
+		int id = indexOf(vertex);
+		if (id < 0) {
+			return null;
+		}
+		
+		int start = edgeOffsets.get(id);
+		int end = edgeOffsets.get(id + 1);
+		List<String> adjacent = new ArrayList<String>(end - start);
+		for (int i = start; i < end; i++) {
+			adjacent.add(nameOf(targets.get(i)));
+		}
+		return adjacent;
+	}
+
+	/**
+     * Returns the number of edges in this graph.
+     */
+	public int size() {
+		return edgeCount;
+	}
+
+	/**
+     * Returns the number of vertices in this graph.
+     */
+	public int order() {
+		return vertexCount;
+	}
+
+	public int indexOf(String vertex) {
+		if (vertex == null) {
+			return -1;
+		}
+		byte[] key = vertex.getBytes(StandardCharsets.UTF_8);
+		
+		// binary search over the off-heap string table
+		int low = 0;
+		int high = vertexCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compareName(middle, key);
+			if (comparison < 0) {
+				low = middle + 1;
+			}
+			else if (comparison > 0) {
+				high = middle - 1;
+			}
+			else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	public String nameOf(int id) {
+		int start = nameOffsets.get(id);
+		byte[] bytes = new byte[nameOffsets.get(id + 1) - start];
+		nameBytes.get(start, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public int degreeOf(int id) {
+		return edgeOffsets.get(id + 1) - edgeOffsets.get(id);
+	}
+
+	public int adjacentIdsOf(int id, int[] dest, int offset) {
+		int start = edgeOffsets.get(id);
+		int length = edgeOffsets.get(id + 1) - start;
+		targets.get(start, dest, offset, length);
+		return length;
+	}
+	
+	@Override
+	public int adjacentIdsOf(int id, int mask, int[] dest, int offset) {
+		if (kinds == null) {
+			return (mask & DependencyKind.RUNTIME) != 0 ? adjacentIdsOf(id, dest, offset) : 0;
+		}
+		int count = 0;
+		for (int i = edgeOffsets.get(id); i < edgeOffsets.get(id + 1); i++) {
+			if ((kinds.get(i) & mask) != 0) {
+				dest[offset + count++] = targets.get(i);
+			}
+		}
+		return count;
+	}
+	
+	/*
+	 * Returns the kinds of the i-th edge of vertex id.
+	 */
+	int kindsAt(int id, int i) {
+		return kinds == null ? DependencyKind.RUNTIME : kinds.get(edgeOffsets.get(id) + i);
+	}
+	
+	/**
+	 * Returns the number of bytes held outside of the heap.
+	 */
+	public long offHeapBytes() {
+		return nameBytes.capacity() + (kinds == null ? 0 : kinds.capacity())
+				+ ((long) nameOffsets.capacity() + edgeOffsets.capacity() + targets.capacity()) * Integer.BYTES;
+	}
+	
+	/*
+	 * Estimated retained heap of this graph, only the buffer objects whose
+	 * contents are counted by offHeapBytes(). See GraphStats.
+	 */
+	long estimatedBytes() {
+		return 40 + (kinds == null ? 4 : 5) * 64;
+	}
+	
+	/*
+	 * Compares the stored name of a vertex with key by unsigned bytes.
+	 */
+	private int compareName(int id, byte[] key) {
+		int start = nameOffsets.get(id);
+		int length = nameOffsets.get(id + 1) - start;
+		int common = Math.min(length, key.length);
+		for (int i = 0; i < common; i++) {
+			int difference = (nameBytes.get(start + i) & 0xFF) - (key[i] & 0xFF);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return length - key.length;
+	}
+	
+	/*
+	 * Allocates a direct int buffer in native byte order.
+	 */
+	private static IntBuffer allocateInts(int count) {
+		return ByteBuffer.allocateDirect(count * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+}
@@ -0,0 +1,87 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the off-heap graph representation
+ * @author Stephen Fan
+ *
+ */
+class OffHeapGraphTest {
+
+    /** 
+     * Tests that an off-heap copy keeps vertices, edges and installation orders
+     */
+    @Test
+    public void test1_offHeapCopy() {
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "B");
+    	graph.addEdge("A", "C");
+    	graph.addEdge("B", "D");
+    	graph.addEdge("C", "D");
+    	graph.addEdge("\u00e9clair", "A");
+    	
+    	OffHeapGraph offHeap = new OffHeapGraph(graph);
+    	if (offHeap.order() != 5 || offHeap.size() != 5) {
+    		fail("graph should have 5 vertices and 5 edges");
+    	}
+    	if (offHeap.getAllVertices().contains("\u00e9clair") == false) {
+    		fail("non-ASCII names should be found");
+    	}
+    	if (offHeap.getAdjacentVerticesOf("A").equals(graph.getAdjacentVerticesOf("A")) == false) {
+    		fail("adjacent vertices of A should be [B, C]");
+    	}
+    	
+    	PackageManager pm = new PackageManager(offHeap);
+    	List<String> list = null;
+    	try {
+    		list = pm.getInstallationOrder("\u00e9clair");
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    	if (list.size() != 5 || list.get(0).equals("D") == false || list.get(4).equals("\u00e9clair") == false) {
+    		fail("Installation order is not correct");
+    	}
+    }
+
+    /**
+     * Tests that the kinds of the edges are kept and masked traversals
+     * follow only the requested kinds
+     */
+    @Test
+    public void test2_dependencyKinds() {
+    	try {
+    		PackageManager typed = new PackageManager();
+    		typed.constructGraph("typed.json");
+    		OffHeapGraph graph = new OffHeapGraph(typed.getGraph());
+    		PackageManager pm = new PackageManager(graph);
+    		
+    		if (pm.getInstallationOrder("app", DependencyKind.RUNTIME).equals(List.of("core", "lib", "app")) == false) {
+    			fail("runtime order of app should be core, lib, app");
+    		}
+    		// dependencies may be listed in a different order than in the file
+    		List<String> test = pm.getInstallationOrder("app", DependencyKind.TEST);
+    		if (test.size() != 3 || test.containsAll(List.of("lib", "junit")) == false || test.get(2).equals("app") == false) {
+    			fail("test order of app should be lib and junit, then app");
+    		}
+    		List<String> build = pm.getInstallationOrder("app", DependencyKind.BUILD);
+    		if (build.size() != 2 || build.get(0).equals("compiler") == false) {
+    			fail("build order of app should be compiler, app");
+    		}
+    		if (pm.getInstallationOrder("app").size() != 8) {
+    			fail("every kind should reach all 8 packages");
+    		}
+    		
+    		// a copy of the copy keeps the kinds too
+    		if (new PackageManager(FrozenGraph.of(graph)).getInstallationOrder("app", DependencyKind.TEST).size() != 3) {
+    			fail("a snapshot of the graph should keep the kinds");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    }
+}
@@ -8,10 +8,21 @@
  * A package is a package name and an array of the names of other packages
  * that this package depends upon.
  * 
+ * A package may also have a version, and each dependency may be followed
+ * by @ and a VersionRange, e.g. "B@^1.2" or "C@>=2.0 <3". A dependency 
+ * without a range accepts any version.
+ * 
+ * The dependencies are runtime dependencies. Build, test and optional
+ * dependencies are kept separately and may be null.
+ * 
  */
 public class Package {
 	private String name;	
+	private String version;
 	private String[] dependencies;
+	private String[] buildDependencies;
+	private String[] testDependencies;
+	private String[] optionalDependencies;
 	
 	public Package() {
 		
@@ -22,10 +33,20 @@ public class Package {
 		this.dependencies = dependencies;
 	}
 	
+	public Package(String name, String version, String[] dependencies) {
+		this.name = name;
+		this.version = version;
+		this.dependencies = dependencies;
+	}
+	
 	public String getName() {
 		return this.name;
 	}
 	
+	public String getVersion() {
+		return this.version;
+	}
+	
 	public String[] getDependencies() {
 		return this.dependencies;
 	}
@@ -33,8 +54,112 @@ public class Package {
 	public void setName(String name) {
 		this.name = name;
 	}
+	
+	public void setVersion(String version) {
+		this.version = version;
+	}
 
 	public void setDependencies(String[] dependencies) {
 		this.dependencies = dependencies;
 	}
+	
+	public String[] getBuildDependencies() {
+		return this.buildDependencies;
+	}
+	
+	public String[] getTestDependencies() {
+		return this.testDependencies;
+	}
+	
+	public String[] getOptionalDependencies() {
+		return this.optionalDependencies;
+	}
+	
+	public void setBuildDependencies(String[] buildDependencies) {
+		this.buildDependencies = buildDependencies;
+	}
+	
+	public void setTestDependencies(String[] testDependencies) {
+		this.testDependencies = testDependencies;
+	}
+	
+	public void setOptionalDependencies(String[] optionalDependencies) {
+		this.optionalDependencies = optionalDependencies;
+	}
+	
+	/**
+	 * Returns the dependencies of one kind.
+	 * 
+	 * @param kind one of the DependencyKind constants RUNTIME, BUILD, TEST or OPTIONAL
+	 * @return the dependencies of that kind, possibly null
+	 */
+	public String[] getDependencies(int kind) {
+		switch (kind) {
+			case DependencyKind.RUNTIME:
+				return this.dependencies;
+			case DependencyKind.BUILD:
+				return this.buildDependencies;
+			case DependencyKind.TEST:
+				return this.testDependencies;
+			case DependencyKind.OPTIONAL:
+				return this.optionalDependencies;
+			default:
+				throw new IllegalArgumentException("not a single dependency kind: " + kind);
+		}
+	}
+	
+	/**
+	 * Sets the dependencies of one kind.
+	 * 
+	 * @param kind one of the DependencyKind constants RUNTIME, BUILD, TEST or OPTIONAL
+	 * @param dependencies the dependencies of that kind
+	 */
+	public void setDependencies(int kind, String[] dependencies) {
+		switch (kind) {
+			case DependencyKind.RUNTIME:
+				this.dependencies = dependencies;
+				break;
+			case DependencyKind.BUILD:
+				this.buildDependencies = dependencies;
+				break;
+			case DependencyKind.TEST:
+				this.testDependencies = dependencies;
+				break;
+			case DependencyKind.OPTIONAL:
+				this.optionalDependencies = dependencies;
+				break;
+			default:
+				throw new IllegalArgumentException("not a single dependency kind: " + kind);
+		}
+	}
+	
+	/**
+	 * Returns the parsed version, 0.0.0 if the package has none.
+	 */
+	public Version getParsedVersion() {
+		return this.version == null ? Version.ZERO : Version.parse(this.version);
+	}
+	
+	/**
+	 * Returns the package name of a dependency, without its range.
+	 * 
+	 * @param dependency a dependency such as "B" or "B@^1.2"
+	 * @return the package name, e.g. "B"
+	 */
+	public static String dependencyName(String dependency) {
+		// a leading @ belongs to a scoped name such as @corp/lib
+		int at = dependency.lastIndexOf('@');
+		return at > 0 ? dependency.substring(0, at).trim() : dependency.trim();
+	}
+	
+	/**
+	 * Returns the version range of a dependency.
+	 * 
+	 * @param dependency a dependency such as "B" or "B@^1.2"
+	 * @return the range, VersionRange.ANY if there is none
+	 */
+	public static VersionRange dependencyRange(String dependency) {
+		int at = dependency.lastIndexOf('@');
+		return at > 0 ? VersionRange.parse(dependency.substring(at + 1)) : VersionRange.ANY;
+	}
 }
@@ -1,10 +1,34 @@
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.json.simple.JSONObject;
 import org.json.simple.parser.*;
@@ -46,7 +70,34 @@ import org.json.simple.JSONArray;
  */
 public class PackageManager {
     
-    private Graph graph;
+    private GraphADT graph;
+    
+    // InstallOrderIterator state of packages excluded by QueryOptions, kept 
+    // apart from the packages blocked by the depth limit
+    private static final byte EXCLUDED = InstallOrderIterator.BLOCKED + 1;
+    
+    // every version of every package read by constructGraph, null until an
+    // entry with a version or a version range is read; until then every 
+    // package has one version and the resolver takes it from the graph
+    private Map<String, List<Package>> registry;
+    
+    // share of queries that are profiled and where their profiles go
+    private volatile double profileRate;
+    private volatile Consumer<QueryProfile> profileSink;
+    
+    // closures of the last snapshot they were requested for
+    private volatile ClosureSets closureSets;
+    
+    // number of getInstallationOrder calls per package and the file they 
+    // are saved to, null if queries are not recorded
+    private final Map<String, LongAdder> queryCounts = new ConcurrentHashMap<String, LongAdder>();
+    private volatile Path queryLog;
+    
+    // cache of the hottest installation orders, null if warmCache was not called
+    private volatile CacheWarmer cacheWarmer;
+    
+    // most packages kept in a saved query log
+    static final int MAX_LOGGED_QUERIES = 10000;
     
     /*
      * Package Manager default no-argument constructor.
@@ -55,16 +106,32 @@ public class PackageManager {
         graph = new Graph();
     }
     
+    /*
+     * Package Manager constructor over an existing graph, e.g. a PersistentGraph
+     * recovered from disk.
+     */
+    public PackageManager(GraphADT graph) {
+        this.graph = graph;
+    }
+    
     /**
      * Takes in a file path for a json file and builds the
      * package dependency graph from it. 
      * 
+     * Files ending in .ndjson are read as newline-delimited json, one package
+     * object per line, which is parsed in parallel (see NdjsonParser).
+     * 
      * @param jsonFilepath the name of json data file with package dependency information
      * @throws FileNotFoundException if file path is incorrect
      * @throws IOException if the give file cannot be read
      * @throws ParseException if the given json cannot be parsed 
      */
     public void constructGraph(String jsonFilepath) throws FileNotFoundException, IOException, ParseException {
+    	if (jsonFilepath.endsWith(".ndjson")) {
+    		constructGraphFromNdjson(jsonFilepath);
+    		return;
+    	}
+    	
         // create JSON object
     	Object object = new JSONParser().parse(new FileReader(jsonFilepath));
         JSONObject jsonobject = (JSONObject) object;
@@ -72,17 +139,255 @@ public class PackageManager {
         // create JSON array
         JSONArray jsonarray = (JSONArray) jsonobject.get("packages");
         
-        // loop through JSON array and add key/value pairs to graph
+        // loop through JSON array and collect all packages
+        List<Package> packages = new ArrayList<Package>(jsonarray.size());
         for (int i = 0; i < jsonarray.size(); i++) {
         	JSONObject obj = (JSONObject) jsonarray.get(i);
+        	String name = (String)obj.get("name");
+        	
+        	Object version = obj.get("version");
+        	Package pkg = new Package(name, version == null ? null : version.toString(), new String[0]);
+        	
+        	// runtime, build, test and optional dependencies have their own keys
+        	for (int kind : DependencyKind.KINDS) {
+        		JSONArray dependencyArray =  (JSONArray)obj.get(DependencyKind.jsonKey(kind));
+        		if (dependencyArray != null) {
+        			String[] dependencies = new String[dependencyArray.size()];
+        			for (int j = 0; j < dependencies.length; j++) {
+        				dependencies[j] = (String)dependencyArray.get(j);
+        			}
+        			pkg.setDependencies(kind, dependencies);
+        		}
+        	}
+        	packages.add(pkg);
+        }
+        
+        addPackages(packages);
+    }
+    
+    /**
+     * Builds the package dependency graph from a newline-delimited json file
+     * with one package object per line, e.g.
+     * {"name": "A", "dependencies": ["B", "C"]}
+     * 
+     * The file is memory-mapped and its lines are parsed in parallel chunks.
+     * 
+     * @param ndjsonFilepath the name of the newline-delimited json file
+     * @throws IOException if the give file cannot be read
+     * @throws ParseException if a line cannot be parsed, the position is the 
+     * byte offset in the file
+     */
+    public void constructGraphFromNdjson(String ndjsonFilepath) throws IOException, ParseException {
+    	addPackages(NdjsonParser.parse(Paths.get(ndjsonFilepath)));
+    }
+    
+    /*
+     * Adds the packages to the registry and builds the graph in bulk.
+     */
+    private void addPackages(List<Package> packages) {
+        if (registry == null && isVersioned(packages)) {
+        	// the packages read so far were only kept in the graph
+        	registry = new HashMap<String, List<Package>>();
+        	IndexedGraph indexed = indexed();
+        	for (int id = 0; id < indexed.order(); id++) {
+        		List<Package> versions = new ArrayList<Package>();
+        		versions.add(packageOf(indexed, indexed.nameOf(id)));
+        		registry.put(indexed.nameOf(id), versions);
+        	}
+        }
+        
+        GraphBuilder builder = new GraphBuilder(packages.size(), packages.size() * 4);
+        
+        for (Package pkg : packages) {
+        	String name = pkg.getName();
+        	builder.addVertex(name);
         	
-        	graph.addVertex((String)obj.get("name"));
-        	JSONArray dependencyArray =  (JSONArray)obj.get("dependencies");
+        	// the graph only knows package names and kinds, ranges are kept for 
+        	// the resolver
+        	for (int kind : DependencyKind.KINDS) {
+        		String[] dependencies = pkg.getDependencies(kind);
+        		if (dependencies != null) {
+        			for (String dependency : dependencies) {
+        				builder.addEdge(name, Package.dependencyName(dependency), kind);
+        			}
+        		}
+        	}
         	
-        	for (int j = 0; j < dependencyArray.size(); j++) {
-        		graph.addEdge((String)obj.get("name"), (String)dependencyArray.get(j));
+        	// every entry is a candidate version of its package
+        	if (registry != null) {
+        		registry.computeIfAbsent(name, k -> new ArrayList<Package>()).add(pkg);
         	}
         }
+        
+        addToGraph(builder.build());
+    }
+    
+    /*
+     * Adds a freshly built graph to the current one. An empty plain Graph is
+     * simply replaced; other graphs (e.g. a PersistentGraph, which has to
+     * log every mutation) get each vertex and edge added individually.
+     */
+    private void addToGraph(Graph built) {
+    	if (graph.getClass() == Graph.class && graph.order() == 0) {
+    		graph = built;
+    		return;
+    	}
+    	
+    	Graph typed = graph instanceof Graph ? (Graph) graph : null;
+    	for (String vertex : built.getAllVertices()) {
+    		graph.addVertex(vertex);
+    		List<String> dependencies = built.getAdjacentVerticesOf(vertex);
+    		for (int i = 0; i < dependencies.size(); i++) {
+    			// keep the kinds of the edge where the graph can store them
+    			if (typed != null) {
+    				typed.addEdge(vertex, dependencies.get(i), built.kindsAt(vertex, i));
+    			}
+    			else {
+    				graph.addEdge(vertex, dependencies.get(i));
+    			}
+    		}
+    	}
+    }
+    
+    /**
+     * Picks one version of the given package and of each package it 
+     * transitively depends upon, such that every version range in the json 
+     * file is satisfied. Entries without a version count as version 0.0.0.
+     * As long as no entry has a version or a version range, the packages are
+     * taken from the graph instead of being kept twice, so a package only 
+     * named as a dependency counts as version 0.0.0 as well.
+     * 
+     * @param pkg the package to install
+     * @param range the acceptable versions of pkg, e.g. "^1.2" or "*"
+     * @return Map<String, Package>, the chosen version of every package needed
+     * 
+     * @throws PackageNotFoundException if the package passed does not exist in the 
+     * json file.
+     * 
+     * @throws VersionConflictException if no choice of versions satisfies all ranges
+     */
+    public Map<String, Package> resolveVersions(String pkg, String range) 
+    		throws PackageNotFoundException, VersionConflictException {
+    	VersionResolver resolver;
+    	if (registry == null) {
+    		IndexedGraph indexed = indexed();
+    		resolver = new VersionResolver(Collections.emptyMap(), name -> packageOf(indexed, name));
+    	}
+    	else {
+    		resolver = new VersionResolver(registry);
+    	}
+    	return resolver.resolve(pkg, VersionRange.parse(range));
+    }
+    
+    /*
+     * Returns whether any of the packages has a version or a version range 
+     * on a dependency, which only the registry can hold.
+     */
+    private static boolean isVersioned(List<Package> packages) {
+    	for (Package pkg : packages) {
+    		if (pkg.getVersion() != null) {
+    			return true;
+    		}
+    		for (int kind : DependencyKind.KINDS) {
+    			String[] dependencies = pkg.getDependencies(kind);
+    			if (dependencies != null) {
+    				for (String dependency : dependencies) {
+    					// the same split as Package.dependencyRange, a leading @ 
+    					// belongs to a scoped name
+    					if (dependency.lastIndexOf('@') > 0) {
+    						return true;
+    					}
+    				}
+    			}
+    		}
+    	}
+    	return false;
+    }
+    
+    /*
+     * Returns a package of a graph as an unversioned Package with its 
+     * runtime dependencies, or null if it is not in the graph.
+     */
+    private static Package packageOf(IndexedGraph indexed, String name) {
+    	int id = indexed.indexOf(name);
+    	if (id < 0) {
+    		return null;
+    	}
+    	int[] adjacent = new int[indexed.degreeOf(id)];
+    	int found = indexed.adjacentIdsOf(id, DependencyKind.RUNTIME, adjacent, 0);
+    	String[] dependencies = new String[found];
+    	for (int i = 0; i < found; i++) {
+    		dependencies[i] = indexed.nameOf(adjacent[i]);
+    	}
+    	return new Package(name, null, dependencies);
+    }
+    
+    /**
+     * Resolves versions as resolveVersions does and returns the chosen 
+     * packages in a valid installation order, each as name@version.
+     * 
+     * @param pkg the package to install
+     * @param range the acceptable versions of pkg, e.g. "^1.2" or "*"
+     * @return List<String>, order in which the chosen versions have to be installed
+     * 
+     * @throws CycleException if the chosen versions depend on each other in a cycle
+     * 
+     * @throws PackageNotFoundException if the package passed does not exist in the 
+     * json file.
+     * 
+     * @throws VersionConflictException if no choice of versions satisfies all ranges
+     */
+    public List<String> getResolvedInstallationOrder(String pkg, String range) 
+    		throws CycleException, PackageNotFoundException, VersionConflictException {
+    	Map<String, Package> chosen = resolveVersions(pkg, range);
+    	
+    	// graph of only the chosen versions
+    	Graph resolved = new Graph();
+    	for (Package chosenPackage : chosen.values()) {
+    		resolved.addVertex(chosenPackage.getName());
+    		for (String dependency : chosenPackage.getDependencies()) {
+    			resolved.addEdge(chosenPackage.getName(), Package.dependencyName(dependency));
+    		}
+    	}
+    	
+    	List<String> orderList = new ArrayList<String>();
+    	for (String name : new PackageManager(resolved).getInstallationOrder(pkg)) {
+    		orderList.add(name + "@" + chosen.get(name).getParsedVersion());
+    	}
+    	return orderList;
+    }
+    
+    /*
+     * Returns the graph as an IndexedGraph for int based traversals. A Graph
+     * is queried through its frozen snapshot, which is only rebuilt after the
+     * graph changes. Other graph implementations are copied per call.
+     */
+    private IndexedGraph indexed() {
+    	if (graph instanceof IndexedGraph) {
+    		return (IndexedGraph) graph;
+    	}
+    	if (graph instanceof Graph) {
+    		return ((Graph) graph).freeze();
+    	}
+    	return FrozenGraph.of(graph);
+    }
+    
+    /*
+     * Same as indexed(), recording in profile (if not null) whether an 
+     * existing snapshot could be used.
+     */
+    private IndexedGraph indexed(QueryProfile profile) {
+    	if (profile != null) {
+    		profile.cache(graph instanceof IndexedGraph || (graph instanceof Graph && ((Graph) graph).isFrozen()));
+    	}
+    	return indexed();
+    }
+    
+    /*
+     * Returns the graph this package manager queries.
+     */
+    GraphADT getGraph() {
+    	return graph;
     }
     
     /**
@@ -113,6 +418,263 @@ public class PackageManager {
      * dependency graph.
      */
     public List<String> getInstallationOrder(String pkg) throws CycleException, PackageNotFoundException {
+    	if (pkg == null) {
+    		throw new PackageNotFoundException();
+    	}
+    	if (queryLog != null) {
+    		queryCounts.computeIfAbsent(pkg, p -> new LongAdder()).increment();
+    	}
+    	
+    	// sampled calls take the same path, so their profiles show cache 
+    	// hits as well as traversals
+    	Consumer<QueryProfile> sink = sampledSink();
+    	if (sink != null) {
+    		QueryProfile profile = profileInstallationOrder(pkg);
+    		sink.accept(profile);
+    		return profile.getResult();
+    	}
+    	
+    	List<String> cached = cachedOrder(pkg, null);
+    	if (cached != null) {
+    		return cached;
+    	}
+    	return getInstallationOrder(pkg, DependencyKind.ALL, null);
+    }
+    
+    /*
+     * Returns the installation order of pkg from the cache warmer, or null 
+     * if no warmer holds it for the current graph. The lookup is recorded 
+     * into profile if one is given.
+     */
+    private List<String> cachedOrder(String pkg, QueryProfile profile) {
+    	CacheWarmer warmer = cacheWarmer;
+    	if (warmer == null || isCurrent(warmer.getSnapshot()) == false) {
+    		return null;
+    	}
+    	List<String> cached = warmer.get(pkg);
+    	if (profile != null) {
+    		profile.cache(cached != null);
+    		profile.endPhase("cache");
+    	}
+    	return cached;
+    }
+    
+    /**
+     * Given a package name, returns a list of packages in a valid 
+     * installation order, following only dependencies of the given kinds.
+     * 
+     * For example, getInstallationOrder("A", DependencyKind.RUNTIME | 
+     * DependencyKind.BUILD) lists what is needed to build A, without its
+     * test and optional dependencies.
+     * 
+     * @param mask the DependencyKind bits of the dependencies to follow
+     * @return List<String>, order in which the packages have to be installed
+     * 
+     * @throws CycleException if you encounter a cycle among the followed 
+     * dependencies of the package
+     * 
+     * @throws PackageNotFoundException if the package passed does not exist in the 
+     * dependency graph.
+     */
+    public List<String> getInstallationOrder(String pkg, int mask) throws CycleException, PackageNotFoundException {
+    	return getInstallationOrder(pkg, mask, null);
+    }
+    
+    /**
+     * Given a package name, returns the installation order together with a 
+     * breakdown of the work needed to compute it.
+     * 
+     * @return QueryProfile whose getResult() is the installation order
+     * 
+     * @throws CycleException if you encounter a cycle in the graph while finding
+     * the installation order
+     * 
+     * @throws PackageNotFoundException if the package passed does not exist in the 
+     * dependency graph.
+     */
+    public QueryProfile profileInstallationOrder(String pkg) throws CycleException, PackageNotFoundException {
+    	QueryProfile profile = new QueryProfile("getInstallationOrder(" + pkg + ")");
+    	List<String> cached = pkg == null ? null : cachedOrder(pkg, profile);
+    	profile.setResult(cached != null ? cached : getInstallationOrder(pkg, DependencyKind.ALL, profile));
+    	return profile;
+    }
+    
+    /**
+     * Profiles a random share of the getInstallationOrder and toInstall 
+     * calls and hands their profiles to sink, e.g. to log the slowest ones.
+     * 
+     * @param rate share of the calls to profile, e.g. 0.01; 0 turns sampling off
+     * @param sink receives the profile of each sampled call
+     */
+    public void setProfileSampling(double rate, Consumer<QueryProfile> sink) {
+    	profileSink = rate > 0 ? sink : null;
+    	profileRate = rate;
+    }
+    
+    /*
+     * Returns the sink if the current call should be profiled, otherwise null.
+     */
+    private Consumer<QueryProfile> sampledSink() {
+    	Consumer<QueryProfile> sink = profileSink;
+    	if (sink == null || ThreadLocalRandom.current().nextDouble() >= profileRate) {
+    		return null;
+    	}
+    	return sink;
+    }
+    
+    /*
+     * Installation order of one package on a given snapshot of the graph,
+     * used by the cache warm-up threads.
+     */
+    List<String> getInstallationOrder(IndexedGraph snapshot, String pkg) 
+    		throws CycleException, PackageNotFoundException {
+    	int root = snapshot.indexOf(pkg);
+    	if (root < 0) {
+    		throw new PackageNotFoundException();
+    	}
+    	List<String> orderList = new ArrayList<String>();
+    	getInstallationOrderHelper(snapshot, root, DependencyKind.ALL, new byte[snapshot.order()], orderList, null);
+    	return orderList;
+    }
+    
+    /**
+     * Starts counting getInstallationOrder calls per package, so that a 
+     * later run can warm its cache with the most frequent ones. Counts 
+     * already saved in the file are kept and added to.
+     * 
+     * @param logFilepath the file saveQueryLog writes the counts to
+     * @throws IOException if the existing file cannot be read
+     */
+    public void recordQueries(String logFilepath) throws IOException {
+    	for (Map.Entry<String, Long> entry : readQueryLog(logFilepath).entrySet()) {
+    		queryCounts.computeIfAbsent(entry.getKey(), p -> new LongAdder()).add(entry.getValue());
+    	}
+    	queryLog = Paths.get(logFilepath);
+    }
+    
+    /**
+     * Writes the recorded query counts to the file given to recordQueries, 
+     * one line of count and package per package, most frequent first. Only
+     * the MAX_LOGGED_QUERIES most frequent packages are kept so the file 
+     * stays small.
+     * 
+     * @throws IOException if the file cannot be written
+     */
+    public void saveQueryLog() throws IOException {
+    	Path log = queryLog;
+    	if (log == null) {
+    		throw new IllegalStateException("queries are not recorded");
+    	}
+    	
+    	List<String> lines = new ArrayList<String>();
+    	queryCounts.entrySet().stream()
+    		.sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+    		.limit(MAX_LOGGED_QUERIES)
+    		.forEach(e -> lines.add(e.getValue().sum() + "\t" + e.getKey()));
+    	
+    	// write a temporary file first so a crash never leaves half a log
+    	Path temp = log.resolveSibling(log.getFileName() + ".tmp");
+    	Files.write(temp, lines, StandardCharsets.UTF_8);
+    	Files.move(temp, log, StandardCopyOption.REPLACE_EXISTING);
+    }
+    
+    /**
+     * Starts warming the installation order cache in background threads 
+     * with the hottest packages of a query log written by saveQueryLog, and 
+     * builds the ClosureSets of the graph along the way.
+     * 
+     * The warm-up works on the current snapshot of the graph, so queries 
+     * are answered as usual while it runs and hit the cache as soon as 
+     * their package is warmed. Once the graph changes the cache is no 
+     * longer used. The returned CacheWarmer reports progress and hit rates.
+     * 
+     * @param logFilepath the query log, a missing file warms nothing
+     * @param hottest the number of most frequent packages to warm
+     * @param threads the number of warm-up threads
+     * @return the running warm-up
+     * @throws IOException if the query log cannot be read
+     */
+    public CacheWarmer warmCache(String logFilepath, int hottest, int threads) throws IOException {
+    	IndexedGraph snapshot = indexed();
+    	List<String> hot = new ArrayList<String>();
+    	for (String pkg : readQueryLog(logFilepath).keySet()) {
+    		if (hot.size() == hottest) {
+    			break;
+    		}
+    		if (snapshot.indexOf(pkg) >= 0) {
+    			hot.add(pkg);
+    		}
+    	}
+    	
+    	CacheWarmer warmer = new CacheWarmer(this, snapshot, hot);
+    	cacheWarmer = warmer;
+    	warmer.start(threads);
+    	return warmer;
+    }
+    
+    /**
+     * Returns the cache started by warmCache, or null.
+     */
+    public CacheWarmer getCacheWarmer() {
+    	return cacheWarmer;
+    }
+    
+    /*
+     * Reads a query log into a map of package to count, most frequent first.
+     */
+    private static Map<String, Long> readQueryLog(String logFilepath) throws IOException {
+    	List<String> lines;
+    	try {
+    		lines = Files.readAllLines(Paths.get(logFilepath), StandardCharsets.UTF_8);
+    	}
+    	catch (NoSuchFileException e) {
+    		lines = new ArrayList<String>();
+    	}
+    	
+    	Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    	for (int i = 0; i < lines.size(); i++) {
+    		String line = lines.get(i);
+    		if (line.isEmpty()) {
+    			continue;
+    		}
+    		int tab = line.indexOf('\t');
+    		try {
+    			counts.merge(line.substring(tab + 1), Long.parseLong(line.substring(0, Math.max(0, tab))), Long::sum);
+    		}
+    		catch (NumberFormatException e) {
+    			throw new IOException(logFilepath + ": malformed query log line " + (i + 1));
+    		}
+    	}
+    	return counts;
+    }
+    
+    /*
+     * Returns whether snapshot is the current state of the graph, without 
+     * building a new snapshot.
+     */
+    private boolean isCurrent(IndexedGraph snapshot) {
+    	if (graph == snapshot) {
+    		return true;
+    	}
+    	return graph instanceof Graph && ((Graph) graph).isFrozen() && ((Graph) graph).freeze() == snapshot;
+    }
+    
+    /*
+     * Keeps closures built in the background if the graph has not changed 
+     * since.
+     */
+    void offerClosureSets(ClosureSets closures) {
+    	if (isCurrent(closures.getGraph())) {
+    		closureSets = closures;
+    	}
+    }
+    
+    /*
+     * Installation order of one package following the edges in mask, 
+     * recording into profile if it is not null.
+     */
+    private List<String> getInstallationOrder(String pkg, int mask, QueryProfile profile) 
+    		throws CycleException, PackageNotFoundException {
     	// set of all vertices
     	Set<String> verticesList = graph.getAllVertices();
     	
@@ -121,49 +683,223 @@ public class PackageManager {
     		throw new PackageNotFoundException();
     	}
     	
-    	// create hashmap and arraylist
-    	HashMap<String, Integer> map = new HashMap<String, Integer>();
-    	List<String> list = new ArrayList<String>();
-    	
-    	// -1 will represent a node that is unvisited
-    	// make every node unvisited
-    	for (String node : graph.getAllVertices()) {
-    		map.put(node, -1);
+    	// the graph is traversed on int ids
+    	IndexedGraph indexed = indexed(profile);
+    	int root = indexed.indexOf(pkg);
+    	if (profile != null) {
+    		profile.endPhase("lookup");
     	}
     	
-    	// call recursive helper method
-    	return getInstallationOrderHelper(list, pkg, map);
+    	List<String> orderList = new ArrayList<String>();
+    	getInstallationOrderHelper(indexed, root, mask, new byte[indexed.order()], orderList, profile);
+    	if (profile != null) {
+    		profile.endPhase("traverse");
+    	}
+    	return orderList;
     }
     
-    private List<String> getInstallationOrderHelper(List<String> orderList, String vertex, HashMap<String, 
-    		Integer> hashMap) throws CycleException {
+    /**
+     * Given a package name, returns the packages in a valid installation 
+     * order, limited by the given options.
+     * 
+     * Packages deeper than options.getMaxDepth() and excluded packages are 
+     * not traversed, only packages accepted by the filter are returned and 
+     * the traversal ends once options.getMaxResults() packages were found. 
+     * With a depth limit, the depth is also lowered to the first depth that 
+     * already holds options.getMaxResults() accepted packages besides pkg. 
+     * The work done, including the traversal state, is therefore bounded by 
+     * the part of the graph within the limits, not by the full closure of the 
+     * package or the size of the graph.
+     * 
+     * Within the result each package is still listed before any package in 
+     * the result that depends upon it.
+     * 
+     * @return List<String>, order in which the packages have to be installed
+     * 
+     * @throws CycleException if a cycle is found within the traversed packages
+     * 
+     * @throws PackageNotFoundException if the package passed does not exist in the 
+     * dependency graph.
+     */
+    public List<String> getInstallationOrder(String pkg, QueryOptions options) 
+    		throws CycleException, PackageNotFoundException {
+    	IndexedGraph indexed = indexed();
+    	int root = indexed.indexOf(pkg);
+    	if (root < 0) {
+    		throw new PackageNotFoundException();
+    	}
     	
-    	// 0 represents the current vertex to keep track of cycling errors
-    	hashMap.put(vertex,0);
+    	List<String> orderList = new ArrayList<String>();
+    	if (options.excludes(pkg) || options.getMaxResults() == 0) {
+    		return orderList;
+    	}
     	
-    	// loops through dependency list to visit each vertex that is dependent upon the current vertex
-    	for(String node : graph.getAdjacentVerticesOf(vertex)) {
-    		// checks that node is not null and the map contains the node
-    		if (node != null && hashMap.containsKey(node) == true) {
-    			// checks for a cycle exception if the node has been visited before
-    			if (hashMap.get(node) == 0) {
-    				throw new CycleException();
-    			}
-    			// recursive call
-    			else if (hashMap.get(node) != 1) {
-    				getInstallationOrderHelper(orderList, node, hashMap);
+    	// only the packages the query touches get a state; with a depth limit
+    	// every other package is blocked, and the packages within the limit 
+    	// are found by breadth-first search so each one is reached at its 
+    	// smallest depth
+    	boolean limited = options.getMaxDepth() != QueryOptions.UNLIMITED;
+    	VertexStateMap states = new VertexStateMap(limited ? InstallOrderIterator.BLOCKED 
+    			: InstallOrderIterator.UNVISITED);
+    	for (String name : options.getExclude()) {
+    		int id = indexed.indexOf(name);
+    		if (id >= 0) {
+    			states.put(id, EXCLUDED);
+    		}
+    	}
+    	if (limited) {
+    		states.put(root, InstallOrderIterator.UNVISITED);
+    		
+    		// the search also stops after the first level by which enough 
+    		// packages for the result are within reach; the root comes last in
+    		// the order, so it is not counted
+    		int accepted = 0;
+    		int[] level = { root };
+    		int levelSize = 1;
+    		int[] nextLevel = new int[16];
+    		int[] adjacent = new int[16];
+    		for (int depth = 0; depth < options.getMaxDepth() && levelSize > 0 
+    				&& accepted < options.getMaxResults(); depth++) {
+    			int nextSize = 0;
+    			for (int l = 0; l < levelSize; l++) {
+    				int id = level[l];
+    				adjacent = grow(adjacent, indexed.degreeOf(id));
+    				int found = indexed.adjacentIdsOf(id, options.getKinds(), adjacent, 0);
+    				for (int i = 0; i < found; i++) {
+    					int dependency = adjacent[i];
+    					if (states.get(dependency) == InstallOrderIterator.BLOCKED) {
+    						states.put(dependency, InstallOrderIterator.UNVISITED);
+    						if (nextSize == nextLevel.length) {
+    							nextLevel = Arrays.copyOf(nextLevel, nextSize * 2);
+    						}
+    						nextLevel[nextSize++] = dependency;
+    						if (options.accepts(indexed.nameOf(dependency))) {
+    							accepted++;
+    						}
+    					}
+    				}
     			}
+    			int[] swap = level;
+    			level = nextLevel;
+    			nextLevel = swap;
+    			levelSize = nextSize;
     		}
     	}
     	
-    	orderList.add(vertex);
-    	
-    	// mark vertex as visited
-    	hashMap.put(vertex, 1);
+    	// depth-first post-order over the allowed packages
+    	InstallOrderIterator walk = new InstallOrderIterator(indexed, root, options.getKinds(), states);
+    	try {
+    		for (int vertex = walk.nextId(); vertex >= 0; vertex = walk.nextId()) {
+    			String name = indexed.nameOf(vertex);
+    			if (options.accepts(name)) {
+    				orderList.add(name);
+    				
+    				// stop early once enough packages were found
+    				if (orderList.size() >= options.getMaxResults()) {
+    					break;
+    				}
+    			}
+    		}
+    	}
+    	catch (UncheckedCycleException e) {
+    		throw e.getCause();
+    	}
     	
     	return orderList;
     }
     
+    /**
+     * Given a package name, returns an Iterator over the packages in a valid 
+     * installation order.
+     * 
+     * Packages are produced while the graph is traversed, as soon as all of 
+     * their dependencies have been produced, so the caller can act on the 
+     * first packages before the rest of the closure has been visited and no 
+     * list of the whole result is kept.
+     * 
+     * @return Iterator<String> over the packages in installation order. Its
+     * hasNext and next methods throw UncheckedCycleException if the 
+     * traversal encounters a cycle.
+     * 
+     * @throws PackageNotFoundException if the package passed does not exist in the 
+     * dependency graph.
+     */
+    public Iterator<String> iterateInstallationOrder(String pkg) throws PackageNotFoundException {
+    	return iterateInstallationOrder(pkg, DependencyKind.ALL);
+    }
+    
+    /**
+     * Same as iterateInstallationOrder(pkg), following only dependencies of 
+     * the given kinds.
+     * 
+     * @param mask the DependencyKind bits of the dependencies to follow
+     * @return Iterator<String> over the packages in installation order
+     * 
+     * @throws PackageNotFoundException if the package passed does not exist in the 
+     * dependency graph.
+     */
+    public Iterator<String> iterateInstallationOrder(String pkg, int mask) throws PackageNotFoundException {
+    	IndexedGraph indexed = indexed();
+    	int root = indexed.indexOf(pkg);
+    	if (root < 0) {
+    		throw new PackageNotFoundException();
+    	}
+    	
+    	return new InstallOrderIterator(indexed, root, mask);
+    }
+    
+    /**
+     * Given a package name, returns a sequential Stream of the packages in a 
+     * valid installation order, produced lazily as in iterateInstallationOrder.
+     * 
+     * @return Stream<String> of the packages in installation order. Terminal
+     * operations throw UncheckedCycleException if the traversal encounters 
+     * a cycle.
+     * 
+     * @throws PackageNotFoundException if the package passed does not exist in the 
+     * dependency graph.
+     */
+    public Stream<String> streamInstallationOrder(String pkg) throws PackageNotFoundException {
+    	return streamInstallationOrder(pkg, DependencyKind.ALL);
+    }
+    
+    /**
+     * Same as streamInstallationOrder(pkg), following only dependencies of 
+     * the given kinds.
+     * 
+     * @param mask the DependencyKind bits of the dependencies to follow
+     * @return Stream<String> of the packages in installation order
+     * 
+     * @throws PackageNotFoundException if the package passed does not exist in the 
+     * dependency graph.
+     */
+    public Stream<String> streamInstallationOrder(String pkg, int mask) throws PackageNotFoundException {
+    	Iterator<String> iterator = iterateInstallationOrder(pkg, mask);
+    	return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, 
+    			Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+    
+    /*
+     * Appends every unvisited package reachable from root to orderList in 
+     * post-order, following only edges with a DependencyKind in mask.
+     * 
+     * state holds an InstallOrderIterator state per id and is updated, so 
+     * several calls can share it. If profile is not null the visit is 
+     * recorded into it.
+     */
+    private void getInstallationOrderHelper(IndexedGraph indexed, int root, int mask, byte[] state, 
+    		List<String> orderList, QueryProfile profile) throws CycleException {
+    	InstallOrderIterator walk = new InstallOrderIterator(indexed, root, mask, state, profile);
+    	try {
+    		for (int vertex = walk.nextId(); vertex >= 0; vertex = walk.nextId()) {
+    			orderList.add(indexed.nameOf(vertex));
+    		}
+    	}
+    	catch (UncheckedCycleException e) {
+    		throw e.getCause();
+    	}
+    }
+    
     /**
      * Given two packages - one to be installed and the other installed, 
      * return a List of the packages that need to be newly installed. 
@@ -185,9 +921,63 @@ public class PackageManager {
      * do not exist in the dependency graph.
      */
     public List<String> toInstall(String newPkg, String installedPkg) throws CycleException, PackageNotFoundException {
+    	Consumer<QueryProfile> sink = sampledSink();
+    	if (sink != null) {
+    		QueryProfile profile = profileToInstall(newPkg, installedPkg);
+    		sink.accept(profile);
+    		return profile.getResult();
+    	}
+    	return toInstall(newPkg, installedPkg, DependencyKind.ALL, null);
+    }
+    
+    /**
+     * Given two packages - one to be installed and the other installed, 
+     * return a List of the packages that need to be newly installed, 
+     * following only dependencies of the given kinds for both packages.
+     * 
+     * @param mask the DependencyKind bits of the dependencies to follow
+     * @return List<String>, packages that need to be newly installed.
+     * 
+     * @throws CycleException if you encounter a cycle among the followed 
+     * dependencies of the given packages
+     * 
+     * @throws PackageNotFoundException if any of the packages passed 
+     * do not exist in the dependency graph.
+     */
+    public List<String> toInstall(String newPkg, String installedPkg, int mask) 
+    		throws CycleException, PackageNotFoundException {
+    	return toInstall(newPkg, installedPkg, mask, null);
+    }
+    
+    /**
+     * Given two packages - one to be installed and the other installed, 
+     * returns the packages that need to be newly installed together with a
+     * breakdown of the work needed to compute them.
+     * 
+     * @return QueryProfile whose getResult() is the result of toInstall
+     * 
+     * @throws CycleException if you encounter a cycle in the graph while finding
+     * the dependencies of the given packages
+     * 
+     * @throws PackageNotFoundException if any of the packages passed 
+     * do not exist in the dependency graph.
+     */
+    public QueryProfile profileToInstall(String newPkg, String installedPkg) 
+    		throws CycleException, PackageNotFoundException {
+    	QueryProfile profile = new QueryProfile("toInstall(" + newPkg + ", " + installedPkg + ")");
+    	profile.setResult(toInstall(newPkg, installedPkg, DependencyKind.ALL, profile));
+    	return profile;
+    }
+    
+    /*
+     * toInstall following the edges in mask, recording into profile if it 
+     * is not null.
+     */
+    private List<String> toInstall(String newPkg, String installedPkg, int mask, QueryProfile profile) 
+    		throws CycleException, PackageNotFoundException {
         // create lists of installation order for each package
-    	List<String> installOrder = getInstallationOrder(newPkg);
-        List<String> installedPkgList = getInstallationOrder(installedPkg);
+    	List<String> installOrder = getInstallationOrder(newPkg, mask, profile);
+        List<String> installedPkgList = getInstallationOrder(installedPkg, mask, profile);
         
         // remove duplicates
         for (String node : installedPkgList) {
@@ -195,10 +985,163 @@ public class PackageManager {
         		installOrder.remove(node);
         	}
         }
+        if (profile != null) {
+        	profile.endPhase("merge");
+        }
     	
     	return installOrder;
     }
     
+    /**
+     * Given packages to remove from a host and the packages installed on it, 
+     * return the packages to uninstall in a valid uninstallation order.
+     * 
+     * Every installed package in remove is uninstalled, together with every 
+     * installed dependency that no remaining installed package depends on 
+     * any more (an orphan). Installed packages that nothing depends on are 
+     * treated as explicitly installed and are never orphaned.
+     * 
+     * For example, with jsonfile.json and A, B, C and D installed, 
+     * toUninstall([A], [A, B, C, D]) returns [A, B, C, D] (B and C in either 
+     * order) while toUninstall([B], [A, B, C, D]) returns only [B].
+     * 
+     * Reference counts are taken over the installed packages once, after 
+     * which only the removed packages and their dependencies are visited.
+     * 
+     * @return List<String>, packages to uninstall, each one before any package
+     * it depends on
+     * 
+     * @throws CycleException if the packages to uninstall contain a cycle
+     * 
+     * @throws PackageNotFoundException if any of the packages passed 
+     * do not exist in the dependency graph.
+     */
+    public List<String> toUninstall(Collection<String> remove, Collection<String> installed) 
+    		throws CycleException, PackageNotFoundException {
+    	return toUninstall(remove, installed, DependencyKind.ALL);
+    }
+    
+    /**
+     * Same as toUninstall(remove, installed), counting only dependencies of 
+     * the given kinds, e.g. DependencyKind.RUNTIME to keep the build and test
+     * dependencies of removed packages out of the reference counts.
+     * 
+     * @param mask the DependencyKind bits of the dependencies to follow
+     * @return List<String>, packages to uninstall, each one before any package
+     * it depends on
+     * 
+     * @throws CycleException if the packages to uninstall contain a cycle
+     * 
+     * @throws PackageNotFoundException if any of the packages passed 
+     * do not exist in the dependency graph.
+     */
+    public List<String> toUninstall(Collection<String> remove, Collection<String> installed, int mask) 
+    		throws CycleException, PackageNotFoundException {
+    	IndexedGraph indexed = indexed();
+    	boolean[] isInstalled = new boolean[indexed.order()];
+    	int[] references = new int[indexed.order()];
+    	int[] edges = new int[16];
+    	
+    	// mark the installed packages
+    	List<Integer> installedIds = new ArrayList<Integer>(installed.size());
+    	for (String pkg : installed) {
+    		int id = indexed.indexOf(pkg);
+    		if (id < 0) {
+    			throw new PackageNotFoundException();
+    		}
+    		if (isInstalled[id] == false) {
+    			isInstalled[id] = true;
+    			installedIds.add(id);
+    		}
+    	}
+    	
+    	// count how many installed packages depend on each installed package
+    	for (int id : installedIds) {
+    		edges = grow(edges, indexed.degreeOf(id));
+    		for (int i = 0, found = indexed.adjacentIdsOf(id, mask, edges, 0); i < found; i++) {
+    			if (isInstalled[edges[i]]) {
+    				references[edges[i]]++;
+    			}
+    		}
+    	}
+    	
+    	// start with the installed packages to remove
+    	boolean[] removed = new boolean[indexed.order()];
+    	List<Integer> removedIds = new ArrayList<Integer>();
+    	for (String pkg : remove) {
+    		int id = indexed.indexOf(pkg);
+    		if (id < 0) {
+    			throw new PackageNotFoundException();
+    		}
+    		if (isInstalled[id] && removed[id] == false) {
+    			removed[id] = true;
+    			removedIds.add(id);
+    		}
+    	}
+    	
+    	// release the references of removed packages, a dependency whose count
+    	// drops to zero is orphaned and removed as well
+    	for (int next = 0; next < removedIds.size(); next++) {
+    		int id = removedIds.get(next);
+    		edges = grow(edges, indexed.degreeOf(id));
+    		for (int i = 0, found = indexed.adjacentIdsOf(id, mask, edges, 0); i < found; i++) {
+    			int dependency = edges[i];
+    			if (isInstalled[dependency] && removed[dependency] == false && --references[dependency] == 0) {
+    				removed[dependency] = true;
+    				removedIds.add(dependency);
+    			}
+    		}
+    	}
+    	
+    	// order the removed packages so that dependents come first, counting
+    	// only the dependents that are removed too
+    	int[] dependents = new int[indexed.order()];
+    	for (int id : removedIds) {
+    		edges = grow(edges, indexed.degreeOf(id));
+    		for (int i = 0, found = indexed.adjacentIdsOf(id, mask, edges, 0); i < found; i++) {
+    			if (removed[edges[i]]) {
+    				dependents[edges[i]]++;
+    			}
+    		}
+    	}
+    	
+    	List<Integer> ready = new ArrayList<Integer>();
+    	for (int id : removedIds) {
+    		if (dependents[id] == 0) {
+    			ready.add(id);
+    		}
+    	}
+    	
+    	List<String> uninstallOrder = new ArrayList<String>(removedIds.size());
+    	for (int next = 0; next < ready.size(); next++) {
+    		int id = ready.get(next);
+    		uninstallOrder.add(indexed.nameOf(id));
+    		edges = grow(edges, indexed.degreeOf(id));
+    		for (int i = 0, found = indexed.adjacentIdsOf(id, mask, edges, 0); i < found; i++) {
+    			if (removed[edges[i]] && --dependents[edges[i]] == 0) {
+    				ready.add(edges[i]);
+    			}
+    		}
+    	}
+    	
+    	// packages left over depend on each other
+    	if (uninstallOrder.size() != removedIds.size()) {
+    		throw new CycleException();
+    	}
+    	
+    	return uninstallOrder;
+    }
+    
+    /*
+     * Returns buffer, or a larger array if it cannot hold degree ids.
+     */
+    private static int[] grow(int[] buffer, int degree) {
+    	if (buffer.length < degree) {
+    		buffer = new int[Math.max(degree, buffer.length * 2)];
+    	}
+    	return buffer;
+    }
+    
     /**
      * Return a valid global installation order of all the packages in the 
      * dependency graph.
@@ -212,36 +1155,60 @@ public class PackageManager {
      * @throws CycleException if you encounter a cycle in the graph
      */
     public List<String> getInstallationOrderForAllPackages() throws CycleException {
-    	// create variables
-    	String vertex = "";
     	List<String> orderList = new ArrayList<>();
-    	Set<String> packageSet = getAllPackages();
     	
-    	// loop through all packages
-    	while (orderList.containsAll(getAllPackages()) == false) {
-    		packageSet = getAllPackages();
-    		
-    		// remove packages that have been accounted for
-    		packageSet.removeAll(orderList);
-    		
-    		vertex = getPackageWithMaxDependencies();
-    		
-    		try {
-    			for (String n : getInstallationOrder(vertex)) {
-    				// checks if vertices are in order and adds them if they are not
-    				if (orderList.contains(n) == false) {
-    					orderList.add(n);
-    				}
-    			}
-    		}
-    		catch (PackageNotFoundException e) {
-    			//do nothing
-    		}
+    	// one traversal shares its visited state across all packages, so every
+    	// package is visited once
+    	IndexedGraph indexed = indexed();
+    	byte[] state = new byte[indexed.order()];
+    	for (int id = 0; id < indexed.order(); id++) {
+    		getInstallationOrderHelper(indexed, id, DependencyKind.ALL, state, orderList, null);
     	}
     	
     	return orderList;
     }
+
+    /**
+     * Returns a valid global installation order computed by a parallel
+     * topological sort (see ParallelTopologicalSort).
+     *
+     * @param deterministic whether packages should be ordered by the length
+     * of their longest dependency chain and then by name, so the result is
+     * the same on every run
+     * @return List<String>, order in which all the packages have to be installed
+     * @throws CycleException if you encounter a cycle in the graph
+     */
+    public List<String> getInstallationOrderForAllPackages(boolean deterministic) throws CycleException {
+    	return new ParallelTopologicalSort(indexed()).sort(deterministic);
+    }
     
+    /**
+     * Returns the shape and estimated memory footprint of the dependency 
+     * graph (see GraphStats), computed in linear time.
+     * 
+     * @return the statistics of the current graph
+     */
+    public GraphStats getGraphStats() {
+    	return new GraphStats(graph);
+    }
+    
+    /**
+     * Returns the closures of every package of the current graph, stored with
+     * structural sharing (see ClosureSets). The closures are kept until the 
+     * graph changes, so repeated calls on the same snapshot are free.
+     * 
+     * @return the closures of the current snapshot of the graph
+     */
+    public ClosureSets getClosureSets() {
+    	IndexedGraph indexed = indexed();
+    	ClosureSets closures = closureSets;
+    	if (closures == null || closures.getGraph() != indexed) {
+    		closures = new ClosureSets(indexed);
+    		closureSets = closures;
+    	}
+    	return closures;
+    }
+
     /**
      * Find and return the name of the package with the maximum number of dependencies.
      * 
@@ -256,34 +1223,183 @@ public class PackageManager {
      * @throws CycleException if you encounter a cycle in the graph
      */
     public String getPackageWithMaxDependencies() throws CycleException {
-    	// create variables to represent max and current dependencies
-    	int maxDependencies = 0;
-    	int currentDependencies = 0;
-    	String md = ""; // String version of the package with the max dependencies to return
+    	return getPackageWithMaxDependencies(DependencyKind.ALL);
+    }
+    
+    /**
+     * Find and return the name of the package with the maximum number of 
+     * dependencies, following only dependencies of the given kinds.
+     * 
+     * @param mask the DependencyKind bits of the dependencies to follow
+     * @return String, name of the package with most dependencies.
+     * @throws CycleException if you encounter a cycle among the followed dependencies
+     */
+    public String getPackageWithMaxDependencies(int mask) throws CycleException {
+    	// ties are broken by package name
+    	List<String> top = getTopPackagesByDependencies(1, mask);
+    	return top.isEmpty() ? "" : top.get(0);
+    }
+    
+    /**
+     * Returns the k packages with the most transitive dependencies, most 
+     * first. Packages with the same count are ordered by name.
+     * 
+     * The dependency counts of all packages are computed in one parallel 
+     * pass and ranked with a heap of at most k entries.
+     * 
+     * @param k the number of packages to return
+     * @return List<String>, at most k package names
+     * @throws CycleException if there is a cycle in the graph
+     */
+    public List<String> getTopPackagesByDependencies(int k) throws CycleException {
+    	return getTopPackagesByDependencies(k, DependencyKind.ALL);
+    }
+    
+    /**
+     * Returns the k packages with the most transitive dependencies of the
+     * given kinds, most first. Packages with the same count are ordered by name.
+     * 
+     * @param k the number of packages to return
+     * @param mask the DependencyKind bits of the dependencies to follow
+     * @return List<String>, at most k package names
+     * @throws CycleException if there is a cycle among the followed dependencies
+     */
+    public List<String> getTopPackagesByDependencies(int k, int mask) throws CycleException {
+    	IndexedGraph indexed = indexed();
+    	return topPackages(indexed, closureSizes(indexed, null, mask), k);
+    }
+    
+    /**
+     * Returns the k packages with the most transitive dependents (packages 
+     * that directly or indirectly depend on them), most first. Packages with 
+     * the same count are ordered by name.
+     * 
+     * @param k the number of packages to return
+     * @return List<String>, at most k package names
+     * @throws CycleException if there is a cycle in the graph
+     */
+    public List<String> getTopPackagesByDependents(int k) throws CycleException {
+    	return getTopPackagesByDependents(k, DependencyKind.ALL);
+    }
+    
+    /**
+     * Returns the k packages with the most transitive dependents through
+     * dependencies of the given kinds, most first. Packages with the same 
+     * count are ordered by name.
+     * 
+     * @param k the number of packages to return
+     * @param mask the DependencyKind bits of the dependencies to follow
+     * @return List<String>, at most k package names
+     * @throws CycleException if there is a cycle among the followed dependencies
+     */
+    public List<String> getTopPackagesByDependents(int k, int mask) throws CycleException {
+    	IndexedGraph indexed = indexed();
+    	return topPackages(indexed, closureSizes(indexed, new ReverseAdjacency(indexed, mask), mask), k);
+    }
+    
+    /*
+     * Counts, for every vertex, the other vertices reachable from it. With a
+     * reverse adjacency the dependents are counted instead. Only edges with 
+     * a DependencyKind in mask are followed. Vertices are counted in 
+     * parallel, each thread reusing one stamp array.
+     */
+    private static int[] closureSizes(IndexedGraph indexed, ReverseAdjacency reverse, int mask) 
+    		throws CycleException {
+    	int order = indexed.order();
+    	if (new StronglyConnectedComponents(indexed, mask).hasCycle()) {
+    		throw new CycleException();
+    	}
     	
-    	// loop through all vertices
-    	for (String vertex : graph.getAllVertices()) {
-    		try {
-                currentDependencies = getInstallationOrder(vertex).size();
-    		} 
-    		catch (PackageNotFoundException e) {
-                e.printStackTrace();
+    	int[] sizes = new int[order];
+    	ThreadLocal<int[]> marks = ThreadLocal.withInitial(() -> new int[order]);
+    	ThreadLocal<int[][]> stacks = ThreadLocal.withInitial(() -> new int[][] { new int[16], new int[16] });
+    	
+    	IntStream.range(0, order).parallel().forEach(root -> {
+    		int[] mark = marks.get();
+    		int[][] buffers = stacks.get();
+    		int[] stack = buffers[0];
+    		int[] adjacent = buffers[1];
+    		int current = root + 1;
+    		int count = 0;
+    		int top = 0;
+    		
+    		mark[root] = current;
+    		stack[top++] = root;
+    		while (top > 0) {
+    			int vertex = stack[--top];
+    			int start = 0;
+    			int degree;
+    			if (reverse == null) {
+    				degree = indexed.degreeOf(vertex);
+    				if (adjacent.length < degree) {
+    					adjacent = new int[Math.max(degree, adjacent.length * 2)];
+    				}
+    				degree = indexed.adjacentIdsOf(vertex, mask, adjacent, 0);
+    			}
+    			else {
+    				adjacent = reverse.targets;
+    				start = reverse.offsets[vertex];
+    				degree = reverse.degreeOf(vertex);
+    			}
+    			
+    			for (int i = start; i < start + degree; i++) {
+    				int next = adjacent[i];
+    				if (mark[next] != current) {
+    					mark[next] = current;
+    					count++;
+    					if (top == stack.length) {
+    						stack = Arrays.copyOf(stack, top * 2);
+    					}
+    					stack[top++] = next;
+    				}
+    			}
+    		}
+    		
+    		// keep grown buffers for the next vertex on this thread
+    		buffers[0] = stack;
+    		if (reverse == null) {
+    			buffers[1] = adjacent;
+    		}
+    		sizes[root] = count;
+    	});
+    	
+    	return sizes;
+    }
+    
+    /*
+     * Returns the names of the k vertices with the largest sizes, ties
+     * broken by name, using a min-heap of at most k entries.
+     */
+    private static List<String> topPackages(IndexedGraph indexed, int[] sizes, int k) {
+    	Comparator<Integer> ranking = (a, b) -> sizes[a] != sizes[b] ? Integer.compare(sizes[a], sizes[b]) 
+    			: indexed.nameOf(b).compareTo(indexed.nameOf(a));
+    	PriorityQueue<Integer> heap = new PriorityQueue<Integer>(Math.max(1, k), ranking);
+    	
+    	for (int id = 0; id < sizes.length && k > 0; id++) {
+    		if (heap.size() < k) {
+    			heap.add(id);
+    		}
+    		else if (ranking.compare(id, heap.peek()) > 0) {
+    			heap.poll();
+    			heap.add(id);
     		}
-
-    		// set max dependencies to current dependencies if current is larger
-            if (currentDependencies > maxDependencies) {
-                maxDependencies = currentDependencies;
-                
-                // change the String variable to be returned to the new largest vertex
-                md = vertex;
-            }
     	}
-
-    	return md;
+    	
+    	// the heap holds the smallest of the top k first
+    	LinkedList<String> top = new LinkedList<String>();
+    	while (heap.isEmpty() == false) {
+    		top.addFirst(indexed.nameOf(heap.poll()));
+    	}
+    	return new ArrayList<String>(top);
     }
 
+    /**
+     * Command line entry point, see PackageManagerCli for the commands.
+     * 
+     * @param args e.g. --graph valid.json install-order A
+     */
     public static void main (String [] args) {
-        System.out.println("PackageManager.main()");
+        System.exit(PackageManagerCli.run(args, System.out, System.err));
     }
     
 }
@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * Filename:   PackageManagerCli.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Command line interface of PackageManager.main, meant to be called many
+ * times per build:
+ *
+ *   PackageManager --graph FILE install-order PKG
+ *   PackageManager --graph FILE to-install NEW INSTALLED
+ *   PackageManager --graph FILE all
+ *   PackageManager --graph FILE max-deps
+ *   PackageManager --graph FILE snapshot
+ *
+ * --kinds runtime,build,test,optional limits install-order, to-install and
+ * max-deps to dependencies of those kinds; by default every kind is
+ * followed.
+ *
+ * The snapshot command writes the graph as a LazyGraph index next to the
+ * json file (FILE.idx, or the path given with --snapshot), including the
+ * kind of every edge. Every other command reads that index instead of
+ * parsing the json whenever it exists and is not older than the json file,
+ * so a query only pays for opening the index and reading the packages it
+ * touches. The index is replaced atomically, and one that cannot be opened
+ * is skipped in favour of the json file. Together with the AppCDS archive built by "make cds" this keeps
+ * each call short. An index written before edge kinds were stored is
+ * refused for queries with --kinds.
+ *
+ * Results are printed one package per line. The exit code is 0 on success,
+ * 1 for usage errors, 2 if a package is not found, 3 for a cycle and 4 if
+ * the graph cannot be read.
+ */
+class PackageManagerCli {
+	static final int OK = 0;
+	static final int USAGE = 1;
+	static final int NOT_FOUND = 2;
+	static final int CYCLE = 3;
+	static final int READ_ERROR = 4;
+
+	private static final String USAGE_TEXT = "usage: PackageManager --graph FILE [--snapshot FILE] "
+			+ "[--kinds runtime,build,test,optional] "
+			+ "(install-order PKG | to-install NEW INSTALLED | all | max-deps | snapshot)";
+
+	private PackageManagerCli() {
+	}
+
+	/**
+	 * Runs one command.
+	 *
+	 * @param args the command line
+	 * @param out where results are printed
+	 * @param err where errors are printed
+	 * @return the exit code
+	 */
+	static int run(String[] args, PrintStream out, PrintStream err) {
+		String graphFile = null;
+		String snapshotFile = null;
+		int mask = DependencyKind.ALL;
+		int i = 0;
+		while (i < args.length && args[i].startsWith("--")) {
+			if (i + 1 == args.length) {
+				err.println(USAGE_TEXT);
+				return USAGE;
+			}
+			if (args[i].equals("--graph")) {
+				graphFile = args[i + 1];
+			}
+			else if (args[i].equals("--snapshot")) {
+				snapshotFile = args[i + 1];
+			}
+			else if (args[i].equals("--kinds")) {
+				mask = parseKinds(args[i + 1]);
+				if (mask == 0) {
+					err.println("unknown dependency kinds " + args[i + 1]);
+					return USAGE;
+				}
+			}
+			else {
+				err.println("unknown option " + args[i]);
+				return USAGE;
+			}
+			i += 2;
+		}
+		if (graphFile == null || i == args.length) {
+			err.println(USAGE_TEXT);
+			return USAGE;
+		}
+
+		String command = args[i];
+		int operands = args.length - i - 1;
+		int expected = command.equals("install-order") ? 1 : command.equals("to-install") ? 2 : 0;
+		if (operands != expected) {
+			err.println(USAGE_TEXT);
+			return USAGE;
+		}
+		if (mask != DependencyKind.ALL && (command.equals("all") || command.equals("snapshot"))) {
+			err.println(command + " does not take --kinds");
+			return USAGE;
+		}
+
+		Path json = Paths.get(graphFile);
+		Path snapshot = Paths.get(snapshotFile != null ? snapshotFile : graphFile + ".idx");
+		LazyGraph lazy = null;
+		try {
+			if (command.equals("snapshot")) {
+				PackageManager manager = new PackageManager();
+				manager.constructGraph(graphFile);
+				LazyGraph.writeIndex(manager.getGraph(), snapshot);
+				return OK;
+			}
+
+			PackageManager manager;
+			if (isFresh(snapshot, json)) {
+				lazy = open(snapshot, json, err);
+			}
+			if (lazy != null) {
+				if (mask != DependencyKind.ALL && lazy.storesKinds() == false) {
+					err.println(snapshot + " has no dependency kinds, write it again with the snapshot command");
+					return READ_ERROR;
+				}
+				manager = new PackageManager(lazy);
+			}
+			else {
+				manager = new PackageManager();
+				manager.constructGraph(graphFile);
+			}
+
+			switch (command) {
+				case "install-order":
+					print(manager.getInstallationOrder(args[i + 1], mask), out);
+					return OK;
+				case "to-install":
+					print(manager.toInstall(args[i + 1], args[i + 2], mask), out);
+					return OK;
+				case "all":
+					print(manager.getInstallationOrderForAllPackages(), out);
+					return OK;
+				case "max-deps":
+					out.println(manager.getPackageWithMaxDependencies(mask));
+					return OK;
+				default:
+					err.println("unknown command " + command);
+					err.println(USAGE_TEXT);
+					return USAGE;
+			}
+		}
+		catch (PackageNotFoundException e) {
+			err.println("package not found");
+			return NOT_FOUND;
+		}
+		catch (CycleException e) {
+			err.println("cycle in the dependencies");
+			return CYCLE;
+		}
+		catch (IOException | ParseException e) {
+			err.println("cannot read " + graphFile + ": " + e);
+			return READ_ERROR;
+		}
+		finally {
+			if (lazy != null) {
+				try {
+					lazy.close();
+				}
+				catch (IOException e) {
+					// nothing was written
+				}
+			}
+		}
+	}
+
+	/*
+	 * Returns whether the snapshot exists and is not older than the json
+	 * file, or the json file is gone.
+	 */
+	private static boolean isFresh(Path snapshot, Path json) throws IOException {
+		if (Files.isRegularFile(snapshot) == false) {
+			return false;
+		}
+		if (Files.exists(json) == false) {
+			return true;
+		}
+		return Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(json)) >= 0;
+	}
+
+	/*
+	 * Opens the snapshot, or returns null if it cannot be opened and the json
+	 * file is there to be parsed instead.
+	 */
+	private static LazyGraph open(Path snapshot, Path json, PrintStream err) throws IOException {
+		try {
+			return LazyGraph.open(snapshot);
+		}
+		catch (IOException e) {
+			if (Files.exists(json) == false) {
+				throw e;
+			}
+			err.println("cannot read " + snapshot + ", reading " + json + " instead: " + e);
+			return null;
+		}
+	}
+
+	/*
+	 * Parses a comma separated list of kinds into DependencyKind bits, 0 if
+	 * a kind is unknown.
+	 */
+	private static int parseKinds(String list) {
+		int mask = 0;
+		for (String kind : list.split(",")) {
+			switch (kind.trim()) {
+				case "runtime":
+					mask |= DependencyKind.RUNTIME;
+					break;
+				case "build":
+					mask |= DependencyKind.BUILD;
+					break;
+				case "test":
+					mask |= DependencyKind.TEST;
+					break;
+				case "optional":
+					mask |= DependencyKind.OPTIONAL;
+					break;
+				case "all":
+					mask |= DependencyKind.ALL;
+					break;
+				default:
+					return 0;
+			}
+		}
+		return mask;
+	}
+
+	/*
+	 * Prints one package per line with a single write.
+	 */
+	private static void print(List<String> packages, PrintStream out) {
+		StringBuilder lines = new StringBuilder();
+		for (String pkg : packages) {
+			lines.append(pkg).append('\n');
+		}
+		out.print(lines);
+		out.flush();
+	}
+}
@@ -0,0 +1,169 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the command line interface
+ * @author Stephen Fan
+ *
+ */
+class PackageManagerCliTest {
+
+    /**
+     * Tests the query commands on a json file and the exit codes of errors
+     */
+    @Test
+    public void test1_commands() {
+    	String[] expected = {
+    		"install-order A", "D\nB\nC\nA\n",
+    		"to-install A B", "C\nA\n",
+    		"max-deps", "A\n",
+    	};
+    	for (int i = 0; i < expected.length; i += 2) {
+    		String[] args = ("--graph shared_dependencies.json --snapshot missing.idx " + expected[i]).split(" ");
+    		ByteArrayOutputStream out = new ByteArrayOutputStream();
+    		int code = PackageManagerCli.run(args, new PrintStream(out), new PrintStream(new ByteArrayOutputStream()));
+    		if (code != PackageManagerCli.OK || out.toString().equals(expected[i + 1]) == false) {
+    			fail(expected[i] + " printed " + out + " with exit code " + code);
+    		}
+    	}
+    	
+    	PrintStream none = new PrintStream(new ByteArrayOutputStream());
+    	if (PackageManagerCli.run("--graph shared_dependencies.json install-order Z".split(" "), none, none) 
+    			!= PackageManagerCli.NOT_FOUND) {
+    		fail("an unknown package should exit with NOT_FOUND");
+    	}
+    	if (PackageManagerCli.run("--graph cyclic.json all".split(" "), none, none) != PackageManagerCli.CYCLE) {
+    		fail("a cycle should exit with CYCLE");
+    	}
+    	if (PackageManagerCli.run("--graph shared_dependencies.json to-install A".split(" "), none, none) 
+    			!= PackageManagerCli.USAGE) {
+    		fail("a missing operand should exit with USAGE");
+    	}
+    	if (PackageManagerCli.run("--graph missing.json all".split(" "), none, none) != PackageManagerCli.READ_ERROR) {
+    		fail("a missing graph should exit with READ_ERROR");
+    	}
+    }
+
+    /**
+     * Tests that queries read the snapshot written by the snapshot command
+     */
+    @Test
+    public void test2_snapshot() {
+    	Path directory = null;
+    	try {
+    		directory = Files.createTempDirectory("cli");
+    		Path json = directory.resolve("graph.json");
+    		Files.copy(Paths.get("shared_dependencies.json"), json, StandardCopyOption.REPLACE_EXISTING);
+    		
+    		PrintStream none = new PrintStream(new ByteArrayOutputStream());
+    		if (PackageManagerCli.run(new String[] { "--graph", json.toString(), "snapshot" }, none, none) 
+    				!= PackageManagerCli.OK || Files.exists(directory.resolve("graph.json.idx")) == false) {
+    			fail("snapshot should write graph.json.idx");
+    		}
+    		
+    		// the snapshot keeps the kinds of the edges
+    		Files.copy(Paths.get("typed.json"), json, StandardCopyOption.REPLACE_EXISTING);
+    		PackageManagerCli.run(new String[] { "--graph", json.toString(), "snapshot" }, none, none);
+    		ByteArrayOutputStream typed = new ByteArrayOutputStream();
+    		int typedCode = PackageManagerCli.run(new String[] { "--graph", json.toString(), "--kinds", "runtime", 
+    				"install-order", "app" }, new PrintStream(typed), none);
+    		if (typedCode != PackageManagerCli.OK || typed.toString().equals("core\nlib\napp\n") == false) {
+    			fail("runtime order of app from the snapshot should be core, lib, app: " + typed);
+    		}
+    		if (PackageManagerCli.run(new String[] { "--graph", json.toString(), "--kinds", "runtime", "all" }, 
+    				none, none) != PackageManagerCli.USAGE) {
+    			fail("all should not take --kinds");
+    		}
+    		
+    		// without the json file only the snapshot can answer
+    		Files.copy(Paths.get("shared_dependencies.json"), json, StandardCopyOption.REPLACE_EXISTING);
+    		PackageManagerCli.run(new String[] { "--graph", json.toString(), "snapshot" }, none, none);
+    		Files.delete(json);
+    		ByteArrayOutputStream out = new ByteArrayOutputStream();
+    		int code = PackageManagerCli.run(new String[] { "--graph", json.toString(), "all" }, new PrintStream(out), none);
+    		String all = out.toString();
+    		if (code != PackageManagerCli.OK || all.split("\n").length != 4 || all.endsWith("A\n") == false) {
+    			fail("all should be read from the snapshot: " + all);
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    	finally {
+    		if (directory != null) {
+    			try {
+    				Files.deleteIfExists(directory.resolve("graph.json"));
+    				Files.deleteIfExists(directory.resolve("graph.json.idx"));
+    				Files.delete(directory);
+    			}
+    			catch (Exception e) {
+    				// temporary directory is left behind
+    			}
+    		}
+    	}
+    }
+    
+    /**
+     * Tests that the snapshot is replaced without leftovers and that a snapshot
+     * that cannot be opened falls back to the json file
+     */
+    @Test
+    public void test3_brokenSnapshot() {
+    	Path directory = null;
+    	try {
+    		directory = Files.createTempDirectory("cli");
+    		Path json = directory.resolve("graph.json");
+    		Path snapshot = directory.resolve("graph.json.idx");
+    		Files.copy(Paths.get("shared_dependencies.json"), json, StandardCopyOption.REPLACE_EXISTING);
+    		
+    		PrintStream none = new PrintStream(new ByteArrayOutputStream());
+    		PackageManagerCli.run(new String[] { "--graph", json.toString(), "snapshot" }, none, none);
+    		PackageManagerCli.run(new String[] { "--graph", json.toString(), "snapshot" }, none, none);
+    		try (Stream<Path> files = Files.list(directory)) {
+    			if (files.count() != 2) {
+    				fail("only the json file and its snapshot should be left");
+    			}
+    		}
+    		
+    		// a truncated snapshot that is newer than the json file
+    		Files.write(snapshot, new byte[] { 'P', '4' });
+    		ByteArrayOutputStream out = new ByteArrayOutputStream();
+    		int code = PackageManagerCli.run(new String[] { "--graph", json.toString(), "install-order", "B" }, 
+    				new PrintStream(out), none);
+    		if (code != PackageManagerCli.OK || out.toString().equals("D\nB\n") == false) {
+    			fail("install-order should be read from the json file: " + out);
+    		}
+    		
+    		// without the json file there is nothing to fall back to
+    		Files.delete(json);
+    		if (PackageManagerCli.run(new String[] { "--graph", json.toString(), "install-order", "B" }, none, none) 
+    				!= PackageManagerCli.READ_ERROR) {
+    			fail("a broken snapshot without the json file should be a read error");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    	finally {
+    		if (directory != null) {
+    			try {
+    				Files.deleteIfExists(directory.resolve("graph.json"));
+    				Files.deleteIfExists(directory.resolve("graph.json.idx"));
+    				Files.delete(directory);
+    			}
+    			catch (Exception e) {
+    				// temporary directory is left behind
+    			}
+    		}
+    	}
+    }
+}
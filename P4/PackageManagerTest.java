@@ -1,11 +1,18 @@
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -288,4 +295,656 @@ class PackageManagerTest {
     		fail("no CycleException was thrown");
     	}
     }
+    
+    /** 
+     * Tests that toUninstall removes orphaned dependencies in uninstallation order
+     */
+    @Test
+    public void test9_toUninstall() {
+    	PackageManager pm = new PackageManager();
+    	List<String> installed = new ArrayList<String>();
+    	List<String> list = new ArrayList<String>();
+    	
+    	// construct the Graph from the JSON file
+    	try {
+    		pm.constructGraph("jsonfile.json");
+    		installed = pm.getInstallationOrder("A");
+    	}
+    	catch (Exception e) {
+    		fail("Exception was thrown");
+    	}
+    	
+    	// removing A orphans everything below it
+    	try {
+    		list = pm.toUninstall(Arrays.asList("A"), installed);
+    	}
+    	catch (Exception e) {
+    		fail("No exception should have been thrown");
+    	}
+    	
+    	if (list.size() != 4 || list.get(0).equals("A") == false || list.get(3).equals("D") == false) {
+    		fail("Uninstallation order should be A, B/C, C/B, D");
+    	}
+    	
+    	// removing B keeps D since C still depends on it
+    	try {
+    		list = pm.toUninstall(Arrays.asList("B"), installed);
+    	}
+    	catch (Exception e) {
+    		fail("No exception should have been thrown");
+    	}
+    	
+    	if (list.size() != 1 || list.get(0).equals("B") == false) {
+    		fail("Only B should be uninstalled");
+    	}
+    	
+    	// unknown packages are reported
+    	try {
+    		pm.toUninstall(Arrays.asList("X"), installed);
+    		fail("PackageNotFoundException should have been thrown");
+    	}
+    	catch (PackageNotFoundException e) {
+    		// test passed
+    	}
+    	catch (CycleException e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests that getInstallationOrder respects depth, filter, result and exclude limits
+     */
+    @Test
+    public void test10_getInstallationOrderWithOptions() {
+    	PackageManager pm = new PackageManager();
+    	List<String> list = new ArrayList<String>();
+    	
+    	try {
+    		pm.constructGraph("jsonfile.json");
+    	}
+    	catch (Exception e) {
+    		fail("Exception was thrown");
+    	}
+    	
+    	try {
+    		// direct dependencies only
+    		list = pm.getInstallationOrder("A", new QueryOptions().setMaxDepth(1));
+    		if (list.size() != 3 || list.contains("D") || list.get(2).equals("A") == false) {
+    			fail("Depth 1 should return B, C and A");
+    		}
+    		
+    		// only packages matching a filter, still in installation order
+    		list = pm.getInstallationOrder("A", new QueryOptions().setFilter(p -> p.equals("A") || p.equals("D")));
+    		if (list.equals(Arrays.asList("D", "A")) == false) {
+    			fail("Filter should return D and A");
+    		}
+    		
+    		// first two packages only
+    		list = pm.getInstallationOrder("A", new QueryOptions().setMaxResults(2));
+    		if (list.size() != 2 || list.get(0).equals("D") == false) {
+    			fail("Two packages starting with D should be returned");
+    		}
+    		
+    		// excluded packages are not traversed
+    		list = pm.getInstallationOrder("A", new QueryOptions().setExclude(Arrays.asList("B", "C")));
+    		if (list.equals(Arrays.asList("A")) == false) {
+    			fail("Only A should be returned when B and C are excluded");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests that the streamed installation order matches getInstallationOrder
+     */
+    @Test
+    public void test11_streamInstallationOrder() {
+    	PackageManager pm = new PackageManager();
+    	
+    	try {
+    		pm.constructGraph("jsonfile.json");
+    		List<String> streamed = pm.streamInstallationOrder("A").collect(Collectors.toList());
+    		if (streamed.equals(pm.getInstallationOrder("A")) == false) {
+    			fail("Streamed order should match getInstallationOrder");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    	
+    	// cycles are reported while iterating
+    	PackageManager cyclic = new PackageManager();
+    	boolean cyclicExceptionThrown = false;
+    	try {
+    		cyclic.constructGraph("cyclic.json");
+    		Iterator<String> iterator = cyclic.iterateInstallationOrder("A");
+    		while (iterator.hasNext()) {
+    			iterator.next();
+    		}
+    	}
+    	catch (UncheckedCycleException e) {
+    		// test passed
+    		cyclicExceptionThrown = true;
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    	
+    	if (cyclicExceptionThrown == false) {
+    		fail("no UncheckedCycleException was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests the top-k rankings by dependencies and by dependents
+     */
+    @Test
+    public void test12_getTopPackages() {
+    	PackageManager pm = new PackageManager();
+    	
+    	try {
+    		pm.constructGraph("jsonfile.json");
+    		
+    		// A has 3 dependencies, B and C have 1 each (tie broken by name), D none
+    		if (pm.getTopPackagesByDependencies(3).equals(Arrays.asList("A", "B", "C")) == false) {
+    			fail("Top 3 by dependencies should be A, B, C");
+    		}
+    		
+    		// D is needed by everything else
+    		if (pm.getTopPackagesByDependents(2).equals(Arrays.asList("D", "B")) == false) {
+    			fail("Top 2 by dependents should be D, B");
+    		}
+    		
+    		if (pm.getTopPackagesByDependencies(10).size() != 4) {
+    			fail("All 4 packages should be returned");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests that versions are resolved by backtracking and fed into the installation order
+     */
+    @Test
+    public void test13_resolveVersions() {
+    	PackageManager pm = new PackageManager();
+    	List<String> list = new ArrayList<String>();
+    	
+    	try {
+    		pm.constructGraph("versioned.json");
+    		
+    		// web 1.1.0 needs log 2 which db cannot use, so web 1.0.0 is chosen
+    		Map<String, Package> chosen = pm.resolveVersions("app", "*");
+    		if (chosen.get("web").getVersion().equals("1.0.0") == false) {
+    			fail("web 1.0.0 should be chosen");
+    		}
+    		if (chosen.get("log").getVersion().equals("1.2.5") == false) {
+    			fail("log 1.2.5 should be chosen");
+    		}
+    		
+    		list = pm.getResolvedInstallationOrder("app", "^1");
+    		if (list.get(0).equals("log@1.2.5") == false || list.get(3).equals("app@1.0.0") == false) {
+    			fail("Installation order should start with log@1.2.5 and end with app@1.0.0");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    	
+    	// no version of app satisfies the range
+    	try {
+    		pm.resolveVersions("app", ">=2");
+    		fail("VersionConflictException should have been thrown");
+    	}
+    	catch (VersionConflictException e) {
+    		// test passed
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests that the parallel global installation order is valid, deterministic on request
+     * and detects cycles
+     */
+    @Test
+    public void test14_parallelInstallationOrderForAllPackages() {
+    	Graph graph = new Graph();
+    	for (int i = 0; i < 5000; i++) {
+    		graph.addEdge("p" + i, "p" + (i / 2));
+    		graph.addEdge("p" + i, "q" + (i % 7));
+    	}
+    	graph.removeEdge("p0", "p0");
+    	PackageManager pm = new PackageManager(graph);
+    	
+    	try {
+    		List<String> list = pm.getInstallationOrderForAllPackages(false);
+    		if (list.size() != graph.order()) {
+    			fail("every package should be listed once");
+    		}
+    		
+    		// every dependency comes before its dependents
+    		Map<String, Integer> position = new HashMap<String, Integer>();
+    		for (int i = 0; i < list.size(); i++) {
+    			position.put(list.get(i), i);
+    		}
+    		for (String pkg : graph.getAllVertices()) {
+    			for (String dependency : graph.getAdjacentVerticesOf(pkg)) {
+    				if (position.get(dependency) > position.get(pkg)) {
+    					fail(dependency + " should be installed before " + pkg);
+    				}
+    			}
+    		}
+    		
+    		// q0 to q6 have no dependencies and come first, in name order
+    		List<String> deterministic = pm.getInstallationOrderForAllPackages(true);
+    		if (deterministic.equals(pm.getInstallationOrderForAllPackages(true)) == false) {
+    			fail("deterministic order should be the same on every run");
+    		}
+    		if (deterministic.get(0).equals("q0") == false || deterministic.get(7).equals("p0") == false) {
+    			fail("deterministic order should start with q0 and list p0 after q6");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    	
+    	// cycles are found as packages that never become ready
+    	try {
+    		PackageManager cyclic = new PackageManager();
+    		cyclic.constructGraph("cyclic.json");
+    		cyclic.getInstallationOrderForAllPackages(true);
+    		fail("CycleException should have been thrown");
+    	}
+    	catch (CycleException e) {
+    		// test passed
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests that newline-delimited registries are parsed in parallel chunks and that 
+     * malformed lines throw a ParseException
+     */
+    @Test
+    public void test15_constructGraphFromNdjson() throws IOException {
+    	File file = File.createTempFile("registry", ".ndjson");
+    	file.deleteOnExit();
+    	try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+    		out.println("{\"name\": \"A\", \"dependencies\": [\"B\", \"C\"]}");
+    		out.println("{\"name\": \"B\", \"version\": 1.2, \"dependencies\": [\"D\"], \"meta\": {\"x\": [1, \"]\"]}}");
+    		out.println();
+    		out.println("{\"name\": \"D\"}");
+    		out.println("{\"dependencies\": [\"D\"], \"name\": \"C\\u0041\"}");
+    		
+    		// enough lines for several chunks
+    		for (int i = 0; i < 2000; i++) {
+    			out.println("{\"name\": \"p" + i + "\", \"dependencies\": [\"p" + (i + 1) + "\"]}");
+    		}
+    	}
+    	
+    	PackageManager pm = new PackageManager();
+    	try {
+    		pm.constructGraph(file.getPath());
+    		List<String> list = pm.getInstallationOrder("B");
+    		if (list.size() != 2 || list.get(0).equals("D") == false) {
+    			fail("Installation order of B should be [D, B]");
+    		}
+    		if (pm.getAllPackages().contains("CA") == false) {
+    			fail("escaped names should be decoded");
+    		}
+    		if (pm.getInstallationOrder("p0").size() != 2001) {
+    			fail("all 2001 packages of the chain should be read");
+    		}
+    		if (pm.resolveVersions("B", "*").get("B").getVersion().equals("1.2") == false) {
+    			fail("numeric version should be kept");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    	
+    	try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+    		out.println("{\"name\": \"A\"}");
+    		out.println("{\"name\": \"B\" \"dependencies\": []}");
+    	}
+    	try {
+    		new PackageManager().constructGraph(file.getPath());
+    		fail("ParseException should have been thrown");
+    	}
+    	catch (ParseException e) {
+    		if (e.getPosition() != 27) {
+    			fail("error position should be the byte offset of the unexpected character");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests that profiled queries report the work they did and that sampled queries 
+     * reach the sink
+     */
+    @Test
+    public void test16_profileQueries() {
+    	PackageManager pm = new PackageManager();
+    	try {
+    		pm.constructGraph("jsonfile.json");
+    		
+    		QueryProfile profile = pm.profileInstallationOrder("A");
+    		if (profile.getResult().equals(pm.getInstallationOrder("A")) == false) {
+    			fail("profiled result should match getInstallationOrder");
+    		}
+    		if (profile.getVerticesVisited() != 4 || profile.getEdgesVisited() != 4) {
+    			fail("4 vertices and 4 edges should be visited");
+    		}
+    		if (profile.getMaxDepth() != 3) {
+    			fail("max depth should be 3");
+    		}
+    		if (profile.getCacheMisses() != 1 || profile.getCacheHits() != 0) {
+    			fail("first query should build the snapshot");
+    		}
+    		
+    		// A was installed with all 4 packages, B with itself and D, and D 
+    		// was already installed when C was traversed
+    		Map<String, Integer> largest = profile.getLargestExclusiveWork();
+    		if (largest.get("A") != 4 || largest.get("B") != 2 || largest.get("C") != 1) {
+    			fail("exclusive work should be A=4, B=2, C=1");
+    		}
+    		
+    		profile = pm.profileToInstall("A", "B");
+    		if (profile.getResult().equals(Arrays.asList("C", "A")) == false) {
+    			fail("toInstall(A, B) should be [C, A]");
+    		}
+    		if (profile.getCacheHits() != 2) {
+    			fail("both traversals should reuse the snapshot");
+    		}
+    		if (profile.getPhaseNanos().keySet().equals(
+    				new LinkedHashSet<String>(Arrays.asList("lookup", "traverse", "merge"))) == false) {
+    			fail("phases should be lookup, traverse and merge");
+    		}
+    		
+    		// every call is sampled at rate 1, none at rate 0
+    		List<QueryProfile> sampled = new ArrayList<QueryProfile>();
+    		pm.setProfileSampling(1, sampled::add);
+    		pm.getInstallationOrder("B");
+    		pm.toInstall("A", "B");
+    		pm.setProfileSampling(0, sampled::add);
+    		pm.getInstallationOrder("B");
+    		if (sampled.size() != 2 || sampled.get(1).getQuery().equals("toInstall(A, B)") == false) {
+    			fail("exactly the two sampled calls should be profiled");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests that dependency kinds are read from typed.json and that traversals follow
+     * only the kinds in their mask
+     */
+    @Test
+    public void test17_dependencyKinds() {
+    	PackageManager pm = new PackageManager();
+    	try {
+    		pm.constructGraph("typed.json");
+    		
+    		List<String> runtime = pm.getInstallationOrder("app", DependencyKind.RUNTIME);
+    		if (runtime.equals(Arrays.asList("core", "lib", "app")) == false) {
+    			fail("runtime order of app should be [core, lib, app]");
+    		}
+    		
+    		List<String> build = pm.getInstallationOrder("app", DependencyKind.RUNTIME | DependencyKind.BUILD);
+    		if (build.size() != 6 || build.contains("parser") == false || build.contains("junit")) {
+    			fail("build order of app should contain the compiler but not junit");
+    		}
+    		
+    		// all kinds are followed by default
+    		if (pm.getInstallationOrder("app").size() != 8) {
+    			fail("installation order of app should contain all 8 packages");
+    		}
+    		
+    		// with lib installed, its test dependency junit is still needed
+    		List<String> tests = pm.toInstall("app", "lib", DependencyKind.RUNTIME | DependencyKind.TEST);
+    		if (tests.equals(Arrays.asList("junit", "app")) == false) {
+    			fail("toInstall should be [junit, app]");
+    		}
+    		
+    		// compiler has the most runtime dependencies, app the most of all kinds
+    		if (pm.getPackageWithMaxDependencies(DependencyKind.RUNTIME).equals("compiler") == false) {
+    			fail("compiler should have the most runtime dependencies");
+    		}
+    		if (pm.getPackageWithMaxDependencies().equals("app") == false) {
+    			fail("app should have the most dependencies");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests that recorded query counts warm the installation order cache of a new
+     * PackageManager and that the cache is not used after the graph changes
+     */
+    @Test
+    public void test18_cacheWarming() {
+    	File log = null;
+    	try {
+    		log = File.createTempFile("queries", ".log");
+    		log.delete();
+    		
+    		// record A three times and B once
+    		PackageManager recorder = new PackageManager();
+    		recorder.constructGraph("shared_dependencies.json");
+    		recorder.recordQueries(log.getPath());
+    		for (int i = 0; i < 3; i++) {
+    			recorder.getInstallationOrder("A");
+    		}
+    		recorder.getInstallationOrder("B");
+    		recorder.saveQueryLog();
+    		
+    		PackageManager pm = new PackageManager();
+    		pm.constructGraph("shared_dependencies.json");
+    		CacheWarmer warmer = pm.warmCache(log.getPath(), 1, 2);
+    		if (warmer.awaitCompletion(10, TimeUnit.SECONDS) == false) {
+    			fail("warm-up should finish");
+    		}
+    		if (warmer.getHotPackages().equals(Arrays.asList("A")) == false || warmer.getCachedCount() != 1) {
+    			fail("only A should be warmed");
+    		}
+    		if (pm.getClosureSets().getGraph() != ((Graph) pm.getGraph()).freeze()) {
+    			fail("closures of the current graph should be built by the warm-up");
+    		}
+    		
+    		// cached results are copies
+    		List<String> order = pm.getInstallationOrder("A");
+    		order.clear();
+    		if (pm.getInstallationOrder("A").equals(recorder.getInstallationOrder("A")) == false) {
+    			fail("cached installation order of A should not change");
+    		}
+    		pm.getInstallationOrder("B");
+    		if (warmer.getHits() != 2 || warmer.getMisses() != 1 || warmer.getHitRateAfterWarming() < 0.6) {
+    			fail("A should hit and B miss the cache: " + warmer);
+    		}
+    		
+    		// profiled calls count the warmed cache too
+    		QueryProfile profile = pm.profileInstallationOrder("A");
+    		if (profile.getCacheHits() != 1 || profile.getCacheMisses() != 0 || profile.getVerticesVisited() != 0) {
+    			fail("profiled A should be answered by the cache: " + profile);
+    		}
+    		profile = pm.profileInstallationOrder("B");
+    		if (profile.getCacheMisses() != 1 || profile.getCacheHits() != 1 || profile.getVerticesVisited() == 0) {
+    			fail("profiled B should miss the cache and reuse the snapshot: " + profile);
+    		}
+    		
+    		// null is an unknown package, with or without a warm cache
+    		try {
+    			pm.getInstallationOrder(null);
+    			fail("PackageNotFoundException should be thrown for null");
+    		}
+    		catch (PackageNotFoundException e) {
+    			// expected
+    		}
+    		
+    		// after a change the cache is bypassed
+    		pm.getGraph().addEdge("D", "E");
+    		if (pm.getInstallationOrder("A").size() != 5 || warmer.getHits() != 3) {
+    			fail("the cache should not be used after the graph changed");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    	finally {
+    		if (log != null) {
+    			log.delete();
+    		}
+    	}
+    }
+    
+    /** 
+     * Tests that kinds survive loading into a PersistentGraph and that the iterator,
+     * QueryOptions and toUninstall follow only the kinds in their mask
+     */
+    @Test
+    public void test19_dependencyKindsEverywhere() {
+    	try (PersistentGraph persistent = new PersistentGraph(java.nio.file.Files.createTempDirectory("typed"))) {
+    		PackageManager pm = new PackageManager(persistent);
+    		pm.constructGraph("typed.json");
+    		
+    		if (pm.getInstallationOrder("app", DependencyKind.RUNTIME).equals(Arrays.asList("core", "lib", "app")) == false) {
+    			fail("runtime order of app in a PersistentGraph should be [core, lib, app]");
+    		}
+    		
+    		List<String> iterated = new ArrayList<String>();
+    		pm.iterateInstallationOrder("app", DependencyKind.RUNTIME).forEachRemaining(iterated::add);
+    		if (iterated.equals(Arrays.asList("core", "lib", "app")) == false) {
+    			fail("iterator should follow only runtime dependencies");
+    		}
+    		if (pm.streamInstallationOrder("app", DependencyKind.TEST).collect(Collectors.toList())
+    				.equals(Arrays.asList("lib", "junit", "app")) == false) {
+    			fail("stream should follow only test dependencies");
+    		}
+    		
+    		List<String> limited = pm.getInstallationOrder("app", new QueryOptions().setKinds(DependencyKind.RUNTIME));
+    		if (limited.equals(Arrays.asList("core", "lib", "app")) == false) {
+    			fail("QueryOptions kinds should limit the traversal");
+    		}
+    		
+    		// compiler is only a build dependency, so it is not counted at runtime
+    		List<String> installed = Arrays.asList("app", "lib", "core", "compiler");
+    		if (pm.toUninstall(Arrays.asList("app"), installed, DependencyKind.RUNTIME)
+    				.equals(Arrays.asList("app", "lib")) == false) {
+    			fail("toUninstall should only release runtime dependencies");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    }
+    
+    /**
+     * Tests that unversioned packages are resolved from the graph and stay
+     * resolvable once versioned packages are read
+     */
+    @Test
+    public void test20_unversionedResolve() {
+    	PackageManager pm = new PackageManager();
+    	try {
+    		pm.constructGraph("shared_dependencies.json");
+    		Map<String, Package> chosen = pm.resolveVersions("A", "*");
+    		if (chosen.keySet().equals(new LinkedHashSet<String>(Arrays.asList("A", "B", "C", "D"))) == false) {
+    			fail("A, B, C and D should be chosen but were " + chosen.keySet());
+    		}
+    		if (chosen.get("A").getVersion() != null || chosen.get("B").getDependencies().length != 1) {
+    			fail("A should have no version and B one dependency");
+    		}
+    		
+    		pm.constructGraph("versioned.json");
+    		if (pm.resolveVersions("app", "*").get("web").getVersion().equals("1.0.0") == false) {
+    			fail("web 1.0.0 should be chosen");
+    		}
+    		if (pm.resolveVersions("A", "*").size() != 4) {
+    			fail("A should still be resolved after versioned packages were read");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    }
+    
+    /**
+     * Tests that a range on a scoped dependency is enforced when no package 
+     * has a version
+     */
+    @Test
+    public void test21_scopedRange() throws IOException {
+    	File file = File.createTempFile("registry", ".ndjson");
+    	file.deleteOnExit();
+    	try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+    		out.println("{\"name\": \"app\", \"dependencies\": [\"@corp/log@^1.0\"]}");
+    		out.println("{\"name\": \"@corp/log\"}");
+    	}
+    	
+    	PackageManager pm = new PackageManager();
+    	try {
+    		pm.constructGraph(file.getPath());
+    		pm.resolveVersions("app", "*");
+    		fail("VersionConflictException should have been thrown");
+    	}
+    	catch (VersionConflictException e) {
+    		// @corp/log has only version 0.0.0
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown: " + e);
+    	}
+    }
+    
+    /**
+     * Tests that a depth limited query stops at the depth that fills the 
+     * result and that the sparse state map keeps every vertex it is given
+     */
+    @Test
+    public void test22_boundedDepthSearch() {
+    	PackageManager pm = new PackageManager();
+    	
+    	try {
+    		pm.constructGraph("jsonfile.json");
+    		
+    		// B and C at depth 1 already fill the result, D is never reached
+    		List<String> list = pm.getInstallationOrder("A", new QueryOptions().setMaxDepth(5).setMaxResults(2));
+    		if (list.size() != 2 || list.contains("D") || list.contains("A")) {
+    			fail("Depth 1 should be enough for two packages");
+    		}
+    		
+    		// with more results wanted the whole closure is searched
+    		list = pm.getInstallationOrder("A", new QueryOptions().setMaxDepth(5).setMaxResults(10));
+    		if (list.equals(pm.getInstallationOrder("A")) == false) {
+    			fail("The full order should be returned");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    	
+    	VertexStateMap states = new VertexStateMap(InstallOrderIterator.BLOCKED);
+    	for (int id = 0; id < 1000; id += 3) {
+    		states.put(id, InstallOrderIterator.UNVISITED);
+    	}
+    	states.put(3, InstallOrderIterator.FINISHED);
+    	if (states.size() != 334 || states.get(3) != InstallOrderIterator.FINISHED 
+    			|| states.get(999) != InstallOrderIterator.UNVISITED || states.get(1) != InstallOrderIterator.BLOCKED) {
+    		fail("The state map should keep every state it was given");
+    	}
+    }
 }
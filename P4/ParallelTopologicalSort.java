@@ -0,0 +1,176 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Filename:   ParallelTopologicalSort.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Installation order of all packages, computed on the common fork/join pool.
+ *
+ * Every package keeps an atomic count of the dependencies it is still
+ * waiting for. Packages without dependencies are ready; a worker installs a
+ * ready package and decrements the counts of its dependents, and the worker
+ * that brings a count to zero goes on with that dependent. No locks are
+ * taken. Packages whose count never reaches zero are on or behind a cycle.
+ *
+ * The order in which workers finish depends on scheduling. The deterministic
+ * order instead lists packages by level (the length of their longest
+ * dependency chain) and then by name, which is the same on every run.
+ */
+public class ParallelTopologicalSort {
+	// ready packages one worker handles before splitting off the rest
+	private static final int GRAIN = 1024;
+
+	private final IndexedGraph graph;
+
+	/**
+	 * Prepares the sort of a graph. The graph itself is not changed.
+	 *
+	 * @param graph the graph to sort
+	 */
+	public ParallelTopologicalSort(GraphADT graph) {
+		if (graph instanceof IndexedGraph) {
+			this.graph = (IndexedGraph) graph;
+		}
+		else if (graph instanceof Graph) {
+			this.graph = ((Graph) graph).freeze();
+		}
+		else {
+			this.graph = FrozenGraph.of(graph);
+		}
+	}
+
+	/**
+	 * Returns all packages so that each package is listed before any
+	 * package that depends upon it.
+	 *
+	 * @param deterministic whether to order the packages by level and name
+	 * instead of the order in which the workers installed them
+	 * @return List<String> of all packages in installation order
+	 * @throws CycleException if the graph contains a cycle
+	 */
+	public List<String> sort(boolean deterministic) throws CycleException {
+		int order = graph.order();
+		ReverseAdjacency dependents = new ReverseAdjacency(graph);
+
+		// dependencies every package is still waiting for
+		AtomicIntegerArray remaining = new AtomicIntegerArray(order);
+		int[] ready = new int[order];
+		int readyCount = 0;
+		for (int id = 0; id < order; id++) {
+			int degree = graph.degreeOf(id);
+			remaining.set(id, degree);
+			if (degree == 0) {
+				ready[readyCount++] = id;
+			}
+		}
+
+		int[] installed = new int[order];
+		AtomicInteger position = new AtomicInteger();
+		AtomicIntegerArray levels = deterministic ? new AtomicIntegerArray(order) : null;
+
+		ForkJoinPool.commonPool().invoke(new Worker(Arrays.copyOf(ready, readyCount),
+				dependents, remaining, levels, installed, position));
+
+		// packages on or behind a cycle were never ready
+		if (position.get() != order) {
+			throw new CycleException();
+		}
+
+		List<String> orderList = new ArrayList<String>(order);
+		if (deterministic) {
+			Integer[] ids = new Integer[order];
+			String[] names = new String[order];
+			for (int id = 0; id < order; id++) {
+				ids[id] = id;
+				names[id] = graph.nameOf(id);
+			}
+			Arrays.parallelSort(ids, (a, b) -> {
+				int comparison = Integer.compare(levels.get(a), levels.get(b));
+				return comparison != 0 ? comparison : names[a].compareTo(names[b]);
+			});
+			for (int id : ids) {
+				orderList.add(names[id]);
+			}
+		}
+		else {
+			for (int id : installed) {
+				orderList.add(graph.nameOf(id));
+			}
+		}
+		return orderList;
+	}
+
+	/*
+	 * Installs a batch of ready packages and everything they make ready,
+	 * handing half of its work to a new task whenever it has too much.
+	 */
+	private static class Worker extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] batch;
+		private final ReverseAdjacency dependents;
+		private final AtomicIntegerArray remaining;
+		private final AtomicIntegerArray levels;
+		private final int[] installed;
+		private final AtomicInteger position;
+
+		Worker(int[] batch, ReverseAdjacency dependents, AtomicIntegerArray remaining,
+				AtomicIntegerArray levels, int[] installed, AtomicInteger position) {
+			this.batch = batch;
+			this.dependents = dependents;
+			this.remaining = remaining;
+			this.levels = levels;
+			this.installed = installed;
+			this.position = position;
+		}
+
+		@Override
+		protected void compute() {
+			int[] stack = Arrays.copyOf(batch, Math.max(16, batch.length));
+			int top = batch.length;
+			List<Worker> forked = new ArrayList<Worker>();
+
+			while (top > 0) {
+				// split off the bottom half of a large stack
+				if (top > 2 * GRAIN) {
+					int half = top / 2;
+					Worker worker = new Worker(Arrays.copyOf(stack, half),
+							dependents, remaining, levels, installed, position);
+					worker.fork();
+					forked.add(worker);
+					System.arraycopy(stack, half, stack, 0, top - half);
+					top -= half;
+				}
+
+				int vertex = stack[--top];
+				installed[position.getAndIncrement()] = vertex;
+
+				// all dependencies are installed, so the level is final
+				int level = levels == null ? 0 : levels.get(vertex) + 1;
+				for (int i = dependents.offsets[vertex]; i < dependents.offsets[vertex + 1]; i++) {
+					int dependent = dependents.targets[i];
+					if (levels != null) {
+						levels.accumulateAndGet(dependent, level, Math::max);
+					}
+					if (remaining.decrementAndGet(dependent) == 0) {
+						if (top == stack.length) {
+							stack = Arrays.copyOf(stack, top * 2);
+						}
+						stack[top++] = dependent;
+					}
+				}
+			}
+
+			for (Worker worker : forked) {
+				worker.join();
+			}
+		}
+	}
+}
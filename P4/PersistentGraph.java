@@ -0,0 +1,522 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Filename:   PersistentGraph.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Graph whose mutations survive a restart.
+ *
+ * Every call to addVertex, removeVertex, addEdge and removeEdge is appended
+ * to a write-ahead log before it is applied. Log records are buffered and
+ * written with a single fsync every syncInterval records (or on sync()),
+ * so a crash loses at most the last unsynced batch. Every checkpointInterval
+ * records the whole graph is written to a compact checkpoint file and the
+ * log is truncated, which bounds the amount of log replayed on startup.
+ *
+ * Each log record carries a sequence number and the checkpoint stores the
+ * sequence number it covers, so a crash between writing a checkpoint and
+ * truncating the log never replays a mutation twice.
+ */
+public class PersistentGraph extends Graph implements Closeable {
+	// file names inside the graph directory
+	static final String LOG_FILE = "graph.log";
+	static final String CHECKPOINT_FILE = "graph.checkpoint";
+
+	// magic numbers at the start of a checkpoint file, without and with
+	// the kinds of every edge
+	private static final int CHECKPOINT_MAGIC = 0x50344350;
+	private static final int CHECKPOINT_MAGIC_KINDS = 0x5034434b;
+
+	// log record operation codes
+	private static final byte ADD_VERTEX = 1;
+	private static final byte REMOVE_VERTEX = 2;
+	private static final byte ADD_EDGE = 3;
+	private static final byte REMOVE_EDGE = 4;
+	private static final byte ADD_EDGE_KINDS = 5;
+	private static final byte REMOVE_EDGE_KINDS = 6;
+
+	// default batching parameters
+	public static final int DEFAULT_SYNC_INTERVAL = 1024;
+	public static final int DEFAULT_CHECKPOINT_INTERVAL = 1 << 20;
+
+	private final Path directory;
+	private final int syncInterval;
+	private final int checkpointInterval;
+
+	private FileChannel log;
+	private ByteArrayOutputStream pending;
+	private DataOutputStream record;
+	private ByteArrayOutputStream recordBytes;
+
+	private long sequence;         // sequence number of the last logged mutation
+	private int unsynced;          // records buffered since the last fsync
+	private int sinceCheckpoint;   // records logged since the last checkpoint
+	private boolean replaying;     // true while mutations are re-applied on open
+
+	/**
+	 * Opens (or creates) a persistent graph in the given directory using the
+	 * default sync and checkpoint intervals.
+	 *
+	 * @param directory directory holding the checkpoint and log files
+	 * @throws IOException if the files cannot be read or created
+	 */
+	public PersistentGraph(Path directory) throws IOException {
+		this(directory, DEFAULT_SYNC_INTERVAL, DEFAULT_CHECKPOINT_INTERVAL);
+	}
+
+	/**
+	 * Opens (or creates) a persistent graph in the given directory.
+	 *
+	 * The last checkpoint is loaded and every complete log record written after
+	 * it is replayed. A torn or corrupt record at the end of the log (from a
+	 * crash mid-write) ends the replay and is cut off the log.
+	 *
+	 * @param directory directory holding the checkpoint and log files
+	 * @param syncInterval number of mutations buffered per fsync
+	 * @param checkpointInterval number of mutations between checkpoints
+	 * @throws IOException if the files cannot be read or created
+	 */
+	public PersistentGraph(Path directory, int syncInterval, int checkpointInterval) throws IOException {
+		super();
+
+		if (syncInterval < 1 || checkpointInterval < 1) {
+			throw new IllegalArgumentException("intervals must be positive");
+		}
+
+		this.directory = directory;
+		this.syncInterval = syncInterval;
+		this.checkpointInterval = checkpointInterval;
+		this.pending = new ByteArrayOutputStream();
+		this.recordBytes = new ByteArrayOutputStream();
+		this.record = new DataOutputStream(recordBytes);
+
+		Files.createDirectories(directory);
+
+		// restore the checkpoint and then replay the log on top of it
+		replaying = true;
+		try {
+			long checkpointSequence = readCheckpoint();
+			sequence = checkpointSequence;
+
+			log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			long validLength = replayLog(checkpointSequence);
+
+			// drop a torn tail so new records are not appended after garbage
+			if (validLength < log.size()) {
+				log.truncate(validLength);
+				log.force(false);
+			}
+			log.position(validLength);
+		}
+		finally {
+			replaying = false;
+		}
+	}
+
+	/**
+	 * Add new vertex to the graph and log the mutation.
+	 */
+	@Override
+	public void addVertex(String vertex) {
+		if (vertex == null) {
+			return;
+		}
+
+		append(ADD_VERTEX, vertex, null);
+		super.addVertex(vertex);
+		checkpointIfDue();
+	}
+
+	/**
+	 * Remove a vertex and all associated edges from the graph and log the mutation.
+	 */
+	@Override
+	public void removeVertex(String vertex) {
+		if (vertex == null) {
+			return;
+		}
+
+		append(REMOVE_VERTEX, vertex, null);
+		super.removeVertex(vertex);
+		checkpointIfDue();
+	}
+
+	/**
+	 * Add the edge from vertex1 to vertex2 and log the mutation.
+	 */
+	@Override
+	public void addEdge(String vertex1, String vertex2) {
+		if (vertex1 == null || vertex2 == null) {
+			return;
+		}
+
+		append(ADD_EDGE, vertex1, vertex2);
+		super.addEdge(vertex1, vertex2);
+		checkpointIfDue();
+	}
+
+	/**
+	 * Add the kinds of a dependency to the edge from vertex1 to vertex2 and 
+	 * log the mutation.
+	 */
+	@Override
+	public void addEdge(String vertex1, String vertex2, int kind) {
+		if (vertex1 == null || vertex2 == null || (kind & DependencyKind.ALL) == 0) {
+			return;
+		}
+
+		append(ADD_EDGE_KINDS, vertex1, vertex2, kind);
+		super.addEdge(vertex1, vertex2, kind);
+		checkpointIfDue();
+	}
+
+	/**
+	 * Remove kinds from the edge from vertex1 to vertex2 and log the mutation.
+	 */
+	@Override
+	public void removeEdge(String vertex1, String vertex2, int kind) {
+		if (vertex1 == null || vertex2 == null) {
+			return;
+		}
+
+		append(REMOVE_EDGE_KINDS, vertex1, vertex2, kind);
+		super.removeEdge(vertex1, vertex2, kind);
+		checkpointIfDue();
+	}
+
+	/**
+	 * Remove the edge from vertex1 to vertex2 and log the mutation.
+	 */
+	@Override
+	public void removeEdge(String vertex1, String vertex2) {
+		if (vertex1 == null || vertex2 == null) {
+			return;
+		}
+
+		append(REMOVE_EDGE, vertex1, vertex2);
+		super.removeEdge(vertex1, vertex2);
+		checkpointIfDue();
+	}
+
+	/**
+	 * Writes every buffered log record and forces it to disk.
+	 *
+	 * @throws IOException if the log cannot be written
+	 */
+	public void sync() throws IOException {
+		if (pending.size() == 0) {
+			return;
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+		while (buffer.hasRemaining()) {
+			log.write(buffer);
+		}
+		log.force(false);
+
+		pending.reset();
+		unsynced = 0;
+	}
+
+	/**
+	 * Writes the whole graph to a new checkpoint file and truncates the log.
+	 *
+	 * The checkpoint is written to a temporary file, forced to disk and then
+	 * atomically renamed over the previous one, so a crash at any point leaves
+	 * either the old or the new checkpoint in place.
+	 *
+	 * @throws IOException if the checkpoint cannot be written
+	 */
+	public void checkpoint() throws IOException {
+		Path target = directory.resolve(CHECKPOINT_FILE);
+		Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+
+		// write the snapshot with a trailing checksum
+		try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+			CRC32 crc = new CRC32();
+			DataOutputStream out = new DataOutputStream(
+					new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc));
+
+			out.writeInt(CHECKPOINT_MAGIC_KINDS);
+			out.writeLong(sequence);
+			out.writeInt(order());
+			for (String vertex : getAllVertices()) {
+				List<String> adjacent = getAdjacentVerticesOf(vertex);
+				out.writeUTF(vertex);
+				out.writeInt(adjacent.size());
+				for (int i = 0; i < adjacent.size(); i++) {
+					out.writeUTF(adjacent.get(i));
+					out.writeByte(kindsAt(vertex, i));
+				}
+			}
+			out.flush();
+
+			// the checksum itself is written outside of the checked stream
+			new DataOutputStream(file).writeLong(crc.getValue());
+			file.getFD().sync();
+		}
+
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		// the rename must be durable before the log it replaces is dropped,
+		// otherwise a crash could keep the empty log and the old checkpoint
+		syncDirectory();
+
+		// records up to sequence are now covered by the checkpoint
+		pending.reset();
+		unsynced = 0;
+		sinceCheckpoint = 0;
+		log.truncate(0);
+		log.position(0);
+		log.force(true);
+	}
+
+	/**
+	 * Syncs the outstanding log records and closes the log file.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (log.isOpen()) {
+			sync();
+			log.close();
+		}
+	}
+
+	/**
+	 * Returns the sequence number of the last logged mutation.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/*
+	 * Frames a mutation as [length][payload][crc] and buffers it, syncing and
+	 * checkpointing when the respective interval is reached.
+	 */
+	private void append(byte operation, String vertex1, String vertex2) {
+		append(operation, vertex1, vertex2, 0);
+	}
+
+	/*
+	 * Same as above, the kinds are only written for the operations on kinds.
+	 */
+	private void append(byte operation, String vertex1, String vertex2, int kind) {
+		if (replaying) {
+			return;
+		}
+
+		try {
+			recordBytes.reset();
+			record.writeLong(sequence + 1);
+			record.writeByte(operation);
+			record.writeUTF(vertex1);
+			if (vertex2 != null) {
+				record.writeUTF(vertex2);
+			}
+			if (operation == ADD_EDGE_KINDS || operation == REMOVE_EDGE_KINDS) {
+				record.writeByte(kind);
+			}
+			record.flush();
+
+			byte[] payload = recordBytes.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(payload, 0, payload.length);
+
+			DataOutputStream out = new DataOutputStream(pending);
+			out.writeInt(payload.length);
+			out.write(payload);
+			out.writeInt((int) crc.getValue());
+
+			sequence++;
+			unsynced++;
+			sinceCheckpoint++;
+
+			if (unsynced >= syncInterval) {
+				sync();
+			}
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * Flushes the directory entries (the checkpoint rename) to disk. Some 
+	 * platforms, e.g. Windows, cannot open a directory; there the rename is 
+	 * made durable by the file system itself.
+	 */
+	private void syncDirectory() throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(directory, StandardOpenOption.READ);
+		}
+		catch (IOException e) {
+			return;
+		}
+		try (FileChannel dir = channel) {
+			dir.force(true);
+		}
+	}
+
+	/*
+	 * Writes a checkpoint once the mutation that crossed the checkpoint
+	 * interval has been applied to the in-memory graph.
+	 */
+	private void checkpointIfDue() {
+		if (sinceCheckpoint < checkpointInterval) {
+			return;
+		}
+
+		try {
+			checkpoint();
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * Loads the checkpoint file if there is one and returns the sequence
+	 * number it covers.
+	 */
+	private long readCheckpoint() throws IOException {
+		Path path = directory.resolve(CHECKPOINT_FILE);
+		if (Files.exists(path) == false) {
+			return 0;
+		}
+
+		byte[] bytes = Files.readAllBytes(path);
+		if (bytes.length < Long.BYTES) {
+			throw new IOException("checkpoint file is truncated: " + path);
+		}
+
+		CRC32 crc = new CRC32();
+		DataInputStream in = new DataInputStream(new CheckedInputStream(
+				new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES), crc));
+
+		int magic = in.readInt();
+		if (magic != CHECKPOINT_MAGIC && magic != CHECKPOINT_MAGIC_KINDS) {
+			throw new IOException("not a graph checkpoint: " + path);
+		}
+		long checkpointSequence = in.readLong();
+		int vertices = in.readInt();
+		for (int i = 0; i < vertices; i++) {
+			String vertex = in.readUTF();
+			super.addVertex(vertex);
+			int degree = in.readInt();
+			for (int j = 0; j < degree; j++) {
+				String dependency = in.readUTF();
+				int kind = magic == CHECKPOINT_MAGIC_KINDS ? in.readByte() : DependencyKind.RUNTIME;
+				appendEdge(vertex, dependency, kind);
+			}
+		}
+
+		long stored = ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong();
+		if (stored != crc.getValue()) {
+			throw new IOException("checkpoint checksum mismatch: " + path);
+		}
+
+		return checkpointSequence;
+	}
+
+	/*
+	 * Re-applies every complete log record newer than the checkpoint and
+	 * returns the length of the valid prefix of the log.
+	 */
+	private long replayLog(long checkpointSequence) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Files.newInputStream(directory.resolve(LOG_FILE)), 1 << 16));
+		long valid = 0;
+
+		try {
+			while (true) {
+				int length = in.readInt();
+				if (length <= 0 || length > (1 << 20)) {
+					break;
+				}
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				int stored = in.readInt();
+
+				CRC32 crc = new CRC32();
+				crc.update(payload, 0, length);
+				if ((int) crc.getValue() != stored) {
+					break;
+				}
+
+				DataInputStream fields = new DataInputStream(new ByteArrayInputStream(payload));
+				long recordSequence = fields.readLong();
+				byte operation = fields.readByte();
+				String vertex1 = fields.readUTF();
+				String vertex2 = fields.available() > 0 ? fields.readUTF() : null;
+				int kind = fields.available() > 0 ? fields.readByte() : 0;
+
+				// records already contained in the checkpoint are skipped
+				if (recordSequence > checkpointSequence) {
+					apply(operation, vertex1, vertex2, kind);
+					sequence = recordSequence;
+					sinceCheckpoint++;
+				}
+				valid += Integer.BYTES + length + Integer.BYTES;
+			}
+		}
+		catch (EOFException e) {
+			// torn final record, everything before it is valid
+		}
+		finally {
+			in.close();
+		}
+
+		return valid;
+	}
+
+	/*
+	 * Applies a replayed mutation without logging it again.
+	 */
+	private void apply(byte operation, String vertex1, String vertex2, int kind) throws IOException {
+		switch (operation) {
+			case ADD_VERTEX:
+				super.addVertex(vertex1);
+				break;
+			case REMOVE_VERTEX:
+				super.removeVertex(vertex1);
+				break;
+			case ADD_EDGE:
+				super.addEdge(vertex1, vertex2);
+				break;
+			case REMOVE_EDGE:
+				super.removeEdge(vertex1, vertex2);
+				break;
+			case ADD_EDGE_KINDS:
+				super.addEdge(vertex1, vertex2, kind);
+				break;
+			case REMOVE_EDGE_KINDS:
+				super.removeEdge(vertex1, vertex2, kind);
+				break;
+			default:
+				throw new IOException("unknown log operation " + operation);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that PersistentGraph recovers its mutations after a restart
+ * @author Stephen Fan
+ *
+ */
+class PersistentGraphTest {
+
+    /** 
+     * Tests that mutations are replayed from the log when the graph is reopened
+     */
+    @Test
+    public void test1_replayLog() throws IOException {
+    	Path directory = Files.createTempDirectory("graph");
+    	
+    	// mutate the graph and close it
+    	PersistentGraph graph = new PersistentGraph(directory);
+    	graph.addEdge("A", "B");
+    	graph.addEdge("A", "C");
+    	graph.addEdge("B", "C");
+    	graph.removeEdge("A", "C");
+    	graph.close();
+    	
+    	// reopen the graph and check the state was restored
+    	PersistentGraph reopened = new PersistentGraph(directory);
+    	if (reopened.order() != 3) {
+    		fail("order should be 3");
+    	}
+    	if (reopened.size() != 2) {
+    		fail("number of edges should be 2");
+    	}
+    	if (reopened.getAdjacentVerticesOf("A").contains("C")) {
+    		fail("removed edge should not be restored");
+    	}
+    	reopened.close();
+    }
+    
+    /** 
+     * Tests that checkpoints truncate the log and are combined with later records
+     */
+    @Test
+    public void test2_checkpointAndReplay() throws IOException {
+    	Path directory = Files.createTempDirectory("graph");
+    	
+    	// a checkpoint is written every 3 mutations
+    	PersistentGraph graph = new PersistentGraph(directory, 1, 3);
+    	graph.addEdge("A", "B");
+    	graph.addEdge("B", "C");
+    	graph.addVertex("D");
+    	graph.addEdge("D", "A");
+    	graph.removeVertex("C");
+    	graph.close();
+    	
+    	if (Files.exists(directory.resolve(PersistentGraph.CHECKPOINT_FILE)) == false) {
+    		fail("checkpoint file should exist");
+    	}
+    	
+    	PersistentGraph reopened = new PersistentGraph(directory);
+    	if (reopened.order() != 3 || reopened.size() != 2) {
+    		fail("graph should have 3 vertices and 2 edges");
+    	}
+    	if (reopened.getSequence() != 5) {
+    		fail("sequence should be 5");
+    	}
+    	reopened.close();
+    }
+    
+    /** 
+     * Tests that a torn record at the end of the log is discarded
+     */
+    @Test
+    public void test3_tornRecord() throws IOException {
+    	Path directory = Files.createTempDirectory("graph");
+    	
+    	PersistentGraph graph = new PersistentGraph(directory, 1, 1000);
+    	graph.addEdge("A", "B");
+    	graph.addEdge("B", "C");
+    	graph.close();
+    	
+    	// cut the last record in half as if the process crashed mid-write
+    	try (RandomAccessFile log = new RandomAccessFile(
+    			directory.resolve(PersistentGraph.LOG_FILE).toFile(), "rw")) {
+    		log.setLength(log.length() - 5);
+    	}
+    	
+    	PersistentGraph reopened = new PersistentGraph(directory);
+    	if (reopened.size() != 1) {
+    		fail("only the first edge should be restored");
+    	}
+    	
+    	// the graph must still accept new mutations after recovery
+    	reopened.addEdge("C", "D");
+    	reopened.close();
+    	
+    	PersistentGraph again = new PersistentGraph(directory);
+    	if (again.size() != 2 || again.order() != 4) {
+    		fail("graph should have 4 vertices and 2 edges");
+    	}
+    	again.close();
+    }
+    
+    /** 
+     * Tests that edge kinds survive both the checkpoint and the log
+     */
+    @Test
+    public void test4_edgeKinds() throws IOException {
+    	Path directory = Files.createTempDirectory("graph");
+    	
+    	// the first two mutations end up in a checkpoint, the rest in the log
+    	PersistentGraph graph = new PersistentGraph(directory, 1, 2);
+    	graph.addEdge("A", "B", DependencyKind.BUILD);
+    	graph.addEdge("A", "C", DependencyKind.TEST);
+    	graph.addEdge("A", "B", DependencyKind.RUNTIME);
+    	graph.removeEdge("A", "C", DependencyKind.TEST);
+    	graph.close();
+    	
+    	PersistentGraph reopened = new PersistentGraph(directory);
+    	if (reopened.size() != 1) {
+    		fail("number of edges should be 1");
+    	}
+    	if (reopened.getEdgeKinds("A", "B") != (DependencyKind.BUILD | DependencyKind.RUNTIME)) {
+    		fail("edge from A to B should be BUILD and RUNTIME");
+    	}
+    	reopened.close();
+    }
+}
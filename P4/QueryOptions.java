@@ -0,0 +1,128 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Filename:   QueryOptions.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Limits for PackageManager.getInstallationOrder(String, QueryOptions).
+ * 
+ * The traversal stops descending below maxDepth, never enters excluded 
+ * packages, only returns packages accepted by the filter and stops as soon 
+ * as maxResults packages have been returned. Only dependencies of the given
+ * kinds are followed. By default nothing is limited and every kind is
+ * followed.
+ */
+public class QueryOptions {
+	// no limit for depth or number of results
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+	
+	private int maxDepth = UNLIMITED;
+	private int maxResults = UNLIMITED;
+	private Predicate<String> filter = null;
+	private Set<String> exclude = Collections.emptySet();
+	private int kinds = DependencyKind.ALL;
+	
+	/**
+	 * Sets how many levels of dependencies are followed: 1 for direct 
+	 * dependencies only, 2 to include their dependencies and so on.
+	 * 
+	 * @param maxDepth the maximum depth, 0 for only the package itself
+	 * @return this
+	 */
+	public QueryOptions setMaxDepth(int maxDepth) {
+		if (maxDepth < 0) {
+			throw new IllegalArgumentException("maxDepth must not be negative");
+		}
+		this.maxDepth = maxDepth;
+		return this;
+	}
+	
+	/**
+	 * Sets the maximum number of packages returned.
+	 * 
+	 * @param maxResults the maximum number of results
+	 * @return this
+	 */
+	public QueryOptions setMaxResults(int maxResults) {
+		if (maxResults < 0) {
+			throw new IllegalArgumentException("maxResults must not be negative");
+		}
+		this.maxResults = maxResults;
+		return this;
+	}
+	
+	/**
+	 * Sets a filter on package names. Packages that are rejected are still
+	 * traversed, so their accepted dependencies are returned, but they are
+	 * not part of the result.
+	 * 
+	 * @param filter accepts the packages to return, or null for all
+	 * @return this
+	 */
+	public QueryOptions setFilter(Predicate<String> filter) {
+		this.filter = filter;
+		return this;
+	}
+	
+	/**
+	 * Sets packages that are neither returned nor traversed, e.g. packages 
+	 * that are already installed.
+	 * 
+	 * @param exclude the packages to skip
+	 * @return this
+	 */
+	public QueryOptions setExclude(Collection<String> exclude) {
+		this.exclude = new HashSet<String>(exclude);
+		return this;
+	}
+	
+	/**
+	 * Sets the kinds of dependencies that are followed.
+	 * 
+	 * @param kinds the DependencyKind bits, e.g. DependencyKind.RUNTIME
+	 * @return this
+	 */
+	public QueryOptions setKinds(int kinds) {
+		this.kinds = kinds;
+		return this;
+	}
+	
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+	
+	public int getMaxResults() {
+		return maxResults;
+	}
+	
+	public Predicate<String> getFilter() {
+		return filter;
+	}
+	
+	public int getKinds() {
+		return kinds;
+	}
+	
+	public Set<String> getExclude() {
+		return Collections.unmodifiableSet(exclude);
+	}
+	
+	/*
+	 * Returns true if a package passes the filter.
+	 */
+	boolean accepts(String pkg) {
+		return filter == null || filter.test(pkg);
+	}
+	
+	/*
+	 * Returns true if a package is excluded.
+	 */
+	boolean excludes(String pkg) {
+		return exclude.contains(pkg);
+	}
+}
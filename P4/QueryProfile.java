@@ -0,0 +1,179 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Filename:   QueryProfile.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Breakdown of the work done by one profiled query, returned by
+ * PackageManager.profileInstallationOrder and profileToInstall or handed to
+ * the sink set with PackageManager.setProfileSampling.
+ *
+ * The exclusive work of a package is the number of packages that were added
+ * to the installation order while it was being traversed, including itself.
+ * Packages already installed through an earlier branch are not counted
+ * again, so this is not the size of its closure and depends on the order of
+ * the traversal, but it shows where the traversal actually spent its work.
+ *
+ * Every cache a query consults counts as one hit or miss: the orders kept
+ * by a CacheWarmer of the current graph, and the int-indexed snapshot of
+ * the graph, which is a miss if it had to be built first.
+ */
+public class QueryProfile {
+	// number of packages with the most exclusive work that are kept
+	static final int TOP_EXCLUSIVE_WORK = 10;
+
+	private final String query;
+	private List<String> result;
+
+	private int verticesVisited;
+	private int edgesVisited;
+	private int maxDepth;
+	private int cacheHits;
+	private int cacheMisses;
+
+	// nanoseconds per phase, in the order the phases ran
+	private final Map<String, Long> phases = new LinkedHashMap<String, Long>();
+
+	// smallest of the largest exclusive work on top
+	private final PriorityQueue<Map.Entry<String, Integer>> exclusiveWork =
+			new PriorityQueue<Map.Entry<String, Integer>>((a, b) -> Integer.compare(a.getValue(), b.getValue()));
+
+	private long phaseStart;
+
+	QueryProfile(String query) {
+		this.query = query;
+		this.phaseStart = System.nanoTime();
+	}
+
+	/**
+	 * Returns a description of the query, e.g. getInstallationOrder(A).
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns the result of the query.
+	 */
+	public List<String> getResult() {
+		return result;
+	}
+
+	/**
+	 * Returns the number of packages the traversal entered.
+	 */
+	public int getVerticesVisited() {
+		return verticesVisited;
+	}
+
+	/**
+	 * Returns the number of dependency edges the traversal followed.
+	 */
+	public int getEdgesVisited() {
+		return edgesVisited;
+	}
+
+	/**
+	 * Returns the length of the longest dependency path on the traversal stack.
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Returns how many cache lookups were answered, from the CacheWarmer or
+	 * by reusing a graph snapshot.
+	 */
+	public int getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * Returns how many cache lookups were not answered, packages the 
+	 * CacheWarmer did not hold or graph snapshots that had to be built.
+	 */
+	public int getCacheMisses() {
+		return cacheMisses;
+	}
+
+	/**
+	 * Returns the time spent in each phase in nanoseconds, in the order the
+	 * phases ran.
+	 */
+	public Map<String, Long> getPhaseNanos() {
+		return Collections.unmodifiableMap(phases);
+	}
+
+	/**
+	 * Returns the packages with the most exclusive work and the number of
+	 * packages each one added to the order, largest first.
+	 */
+	public Map<String, Integer> getLargestExclusiveWork() {
+		List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(exclusiveWork);
+		entries.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+
+		Map<String, Integer> largest = new LinkedHashMap<String, Integer>();
+		for (Map.Entry<String, Integer> entry : entries) {
+			largest.put(entry.getKey(), entry.getValue());
+		}
+		return largest;
+	}
+
+	@Override
+	public String toString() {
+		return query + ": " + (result == null ? 0 : result.size()) + " packages, "
+				+ verticesVisited + " vertices, " + edgesVisited + " edges, depth " + maxDepth
+				+ ", cache " + cacheHits + " hits " + cacheMisses + " misses, phases " + phases
+				+ ", largest exclusive work " + getLargestExclusiveWork();
+	}
+
+	void setResult(List<String> result) {
+		this.result = result;
+	}
+
+	/*
+	 * Ends the current phase and starts the next one.
+	 */
+	void endPhase(String phase) {
+		long now = System.nanoTime();
+		phases.merge(phase, now - phaseStart, Long::sum);
+		phaseStart = now;
+	}
+
+	void cache(boolean hit) {
+		if (hit) {
+			cacheHits++;
+		}
+		else {
+			cacheMisses++;
+		}
+	}
+
+	void enter(int depth) {
+		verticesVisited++;
+		if (depth > maxDepth) {
+			maxDepth = depth;
+		}
+	}
+
+	void edge() {
+		edgesVisited++;
+	}
+
+	void exclusiveWork(String pkg, int size) {
+		if (exclusiveWork.size() < TOP_EXCLUSIVE_WORK) {
+			exclusiveWork.add(new AbstractMap.SimpleEntry<String, Integer>(pkg, size));
+		}
+		else if (size > exclusiveWork.peek().getValue()) {
+			exclusiveWork.poll();
+			exclusiveWork.add(new AbstractMap.SimpleEntry<String, Integer>(pkg, size));
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * Filename:   ReverseAdjacency.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Dependents of every vertex of an IndexedGraph (the reversed edges, 
+ * optionally only those with a DependencyKind in a mask), 
+ * stored in compressed sparse row form: the dependents of vertex id are 
+ * targets[offsets[id]] .. targets[offsets[id+1]-1].
+ */
+class ReverseAdjacency {
+	final int[] offsets;
+	final int[] targets;
+	
+	ReverseAdjacency(IndexedGraph graph) {
+		this(graph, DependencyKind.ALL);
+	}
+	
+	ReverseAdjacency(IndexedGraph graph, int mask) {
+		int order = graph.order();
+		
+		// one buffer large enough for every dependency list
+		int maxDegree = 0;
+		for (int vertex = 0; vertex < order; vertex++) {
+			maxDegree = Math.max(maxDegree, graph.degreeOf(vertex));
+		}
+		int[] adjacent = new int[maxDegree];
+		
+		// count the dependents of every vertex
+		offsets = new int[order + 1];
+		for (int vertex = 0; vertex < order; vertex++) {
+			int degree = graph.adjacentIdsOf(vertex, mask, adjacent, 0);
+			for (int i = 0; i < degree; i++) {
+				offsets[adjacent[i] + 1]++;
+			}
+		}
+		for (int vertex = 0; vertex < order; vertex++) {
+			offsets[vertex + 1] += offsets[vertex];
+		}
+		
+		// fill in the dependents
+		targets = new int[offsets[order]];
+		int[] fill = new int[order];
+		for (int vertex = 0; vertex < order; vertex++) {
+			int degree = graph.adjacentIdsOf(vertex, mask, adjacent, 0);
+			for (int i = 0; i < degree; i++) {
+				int dependency = adjacent[i];
+				targets[offsets[dependency] + fill[dependency]++] = vertex;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of dependents of a vertex.
+	 */
+	int degreeOf(int id) {
+		return offsets[id + 1] - offsets[id];
+	}
+}
@@ -0,0 +1,325 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Filename:   ShardServer.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Worker process that holds one partition of the dependency graph and 
+ * answers adjacency lookups for it over a local socket.
+ * 
+ * A package belongs to shard ShardedResolver.shardOf(name, shardCount). 
+ * The protocol is a sequence of requests on one connection:
+ * 
+ *   request:  [byte LOOKUP][int count][count x UTF name]
+ *   response: count x ([int degree, -1 if unknown][degree x UTF dependency])
+ * 
+ * and [byte CLOSE] to end the connection. Lookups are batched so the 
+ * coordinator pays one round trip per shard per traversal level.
+ * 
+ * Usage: java ShardServer <registry.json> <shard> <shardCount> [port]
+ * The process prints "READY <port>" once it accepts connections. The
+ * registry (.json or .ndjson) is streamed and only the packages of the 
+ * shard are kept, so a shard never holds the whole registry in memory.
+ */
+public class ShardServer {
+	// request types
+	static final byte LOOKUP = 1;
+	static final byte CLOSE = 0;
+	
+	// dependencies of the packages in this shard
+	private final Map<String, List<String>> partition;
+	private ServerSocket server;
+	
+	/**
+	 * Keeps the packages of one shard from a graph.
+	 * 
+	 * @param graph the full graph, only the shard's part is retained
+	 * @param shard the index of this shard
+	 * @param shardCount the number of shards
+	 */
+	public ShardServer(GraphADT graph, int shard, int shardCount) {
+		partition = new HashMap<String, List<String>>();
+		for (String vertex : graph.getAllVertices()) {
+			if (ShardedResolver.shardOf(vertex, shardCount) == shard) {
+				partition.put(vertex, new ArrayList<String>(graph.getAdjacentVerticesOf(vertex)));
+			}
+		}
+	}
+	
+	/*
+	 * Wraps a partition that was already filtered, used by load().
+	 */
+	private ShardServer(Map<String, List<String>> partition) {
+		this.partition = partition;
+	}
+	
+	/**
+	 * Streams a json or ndjson registry and keeps only the packages of one 
+	 * shard, including packages that only appear as a dependency. Peak memory
+	 * is the shard's partition plus the package being read.
+	 * 
+	 * @param registryPath the registry, read as ndjson if it ends in .ndjson
+	 * @param shard the index of this shard
+	 * @param shardCount the number of shards
+	 * @return the shard server, not started yet
+	 * @throws IOException if the registry cannot be read
+	 * @throws ParseException if the registry is not valid json
+	 */
+	public static ShardServer load(String registryPath, int shard, int shardCount) 
+			throws IOException, ParseException {
+		Map<String, List<String>> partition = new HashMap<String, List<String>>();
+		JSONParser parser = new JSONParser();
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(registryPath), StandardCharsets.UTF_8)) {
+			if (registryPath.endsWith(".ndjson")) {
+				// one package object per line
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.trim().isEmpty() == false) {
+						parser.parse(line, new PackageHandler(partition, shard, shardCount, 1));
+					}
+				}
+			}
+			else {
+				// {"packages": [ package objects ]}
+				parser.parse(reader, new PackageHandler(partition, shard, shardCount, 2));
+			}
+		}
+		return new ShardServer(partition);
+	}
+	
+	/*
+	 * Streaming json handler that collects the name and dependencies of each
+	 * package object and keeps those of one shard.
+	 */
+	private static class PackageHandler implements ContentHandler {
+		private final Map<String, List<String>> partition;
+		private final int shard;
+		private final int shardCount;
+		
+		// object nesting of package objects
+		private final int packageDepth;
+		private int depth;
+		private String key;
+		
+		// the package being read, dependencies grouped by kind
+		private String name;
+		private final List<List<String>> dependencies = new ArrayList<List<String>>();
+		
+		PackageHandler(Map<String, List<String>> partition, int shard, int shardCount, int packageDepth) {
+			this.partition = partition;
+			this.shard = shard;
+			this.shardCount = shardCount;
+			this.packageDepth = packageDepth;
+			for (int i = 0; i < DependencyKind.KINDS.length; i++) {
+				dependencies.add(new ArrayList<String>());
+			}
+		}
+		
+		public void startJSON() {
+		}
+		
+		public void endJSON() {
+		}
+		
+		public boolean startObject() {
+			depth++;
+			return true;
+		}
+		
+		public boolean endObject() {
+			if (depth == packageDepth) {
+				addPackage();
+			}
+			depth--;
+			return true;
+		}
+		
+		public boolean startObjectEntry(String entry) {
+			if (depth == packageDepth) {
+				key = entry;
+			}
+			return true;
+		}
+		
+		public boolean endObjectEntry() {
+			if (depth == packageDepth) {
+				key = null;
+			}
+			return true;
+		}
+		
+		public boolean startArray() {
+			return true;
+		}
+		
+		public boolean endArray() {
+			return true;
+		}
+		
+		public boolean primitive(Object value) {
+			if (depth != packageDepth || key == null || value instanceof String == false) {
+				return true;
+			}
+			if (key.equals("name")) {
+				name = (String) value;
+				return true;
+			}
+			for (int i = 0; i < DependencyKind.KINDS.length; i++) {
+				if (key.equals(DependencyKind.jsonKey(DependencyKind.KINDS[i]))) {
+					dependencies.get(i).add(Package.dependencyName((String) value));
+				}
+			}
+			return true;
+		}
+		
+		/*
+		 * Keeps the package just read if it belongs to this shard, in the 
+		 * same edge order as the graph built by PackageManager.
+		 */
+		private void addPackage() {
+			for (List<String> ofKind : dependencies) {
+				for (String dependency : ofKind) {
+					if (ShardedResolver.shardOf(dependency, shardCount) == shard) {
+						partition.putIfAbsent(dependency, new ArrayList<String>());
+					}
+				}
+			}
+			if (name != null && ShardedResolver.shardOf(name, shardCount) == shard) {
+				List<String> adjacent = partition.computeIfAbsent(name, k -> new ArrayList<String>());
+				for (List<String> ofKind : dependencies) {
+					for (String dependency : ofKind) {
+						if (adjacent.contains(dependency) == false) {
+							adjacent.add(dependency);
+						}
+					}
+				}
+			}
+			name = null;
+			for (List<String> ofKind : dependencies) {
+				ofKind.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of packages held by this shard.
+	 */
+	public int order() {
+		return partition.size();
+	}
+	
+	/**
+	 * Starts accepting connections on the loopback interface in a daemon
+	 * thread, one thread per connection.
+	 * 
+	 * @param port the port, 0 for any free port
+	 * @return the port the server listens on
+	 * @throws IOException if the port cannot be bound
+	 */
+	public int start(int port) throws IOException {
+		server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(() -> {
+			while (server.isClosed() == false) {
+				try {
+					Socket socket = server.accept();
+					Thread handler = new Thread(() -> serve(socket));
+					handler.setDaemon(true);
+					handler.start();
+				}
+				catch (IOException e) {
+					// server socket closed
+				}
+			}
+		}, "shard-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		return server.getLocalPort();
+	}
+	
+	/**
+	 * Stops accepting connections.
+	 */
+	public void stop() throws IOException {
+		if (server != null) {
+			server.close();
+		}
+	}
+	
+	/*
+	 * Answers lookups on one connection until it is closed.
+	 */
+	private void serve(Socket socket) {
+		try (Socket s = socket) {
+			s.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+			
+			while (in.readByte() == LOOKUP) {
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					List<String> adjacent = partition.get(in.readUTF());
+					if (adjacent == null) {
+						out.writeInt(-1);
+						continue;
+					}
+					out.writeInt(adjacent.size());
+					for (String dependency : adjacent) {
+						out.writeUTF(dependency);
+					}
+				}
+				out.flush();
+			}
+		}
+		catch (EOFException e) {
+			// coordinator went away
+		}
+		catch (IOException e) {
+			// the connection is dropped, the coordinator sees the failure
+			System.err.println("shard connection failed: " + e.getMessage());
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("usage: java ShardServer <registry.json> <shard> <shardCount> [port]");
+			System.exit(2);
+		}
+		
+		// the registry is streamed and only this shard is kept
+		int shard = Integer.parseInt(args[1]);
+		int shardCount = Integer.parseInt(args[2]);
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		
+		ShardServer server = load(args[0], shard, shardCount);
+		
+		System.out.println("READY " + server.start(port));
+		System.out.flush();
+		
+		// serve until the coordinator closes stdin or kills the process
+		while (System.in.read() >= 0) {
+			// ignore input
+		}
+		server.stop();
+	}
+}
@@ -0,0 +1,355 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.simple.parser.JSONParser;
+
+/**
+ * Filename:   ShardedResolver.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Coordinator for a graph partitioned across ShardServer processes by 
+ * package-name hash.
+ * 
+ * A query explores the closure of a package level by level: the unseen 
+ * packages of the current frontier are grouped by shard and every shard 
+ * receives a single batched lookup per level, with all shards queried 
+ * concurrently. The replies of every shard are read on their own thread
+ * while the batches are still being written, so neither side can block on a
+ * full socket buffer. The fetched part of the graph is then ordered locally with 
+ * the usual depth-first traversal, so results and exceptions match 
+ * PackageManager.getInstallationOrder.
+ * 
+ * The connections carry one query at a time, so queries are serialized on
+ * the resolver and it can be shared by several threads. If a query fails
+ * with an IOException, replies may be left unread on the connections: all
+ * of them are closed and every later query fails, so a new resolver has to
+ * be connected.
+ */
+public class ShardedResolver implements Closeable {
+	private final Socket[] sockets;
+	private final DataInputStream[] inputs;
+	private final DataOutputStream[] outputs;
+	
+	// one reader thread per shard
+	private final ExecutorService readers;
+	
+	// shard processes started by launch(), destroyed on close
+	private final List<Process> processes = new ArrayList<Process>();
+	
+	// lookups sent by the last query, for monitoring the batching
+	private int lastRoundTrips;
+	
+	// the failure that closed the connections, or null while they are usable
+	private IOException failure;
+	
+	/**
+	 * Connects to running shard servers on the loopback interface.
+	 * 
+	 * @param ports the port of shard i at index i
+	 * @throws IOException if a shard cannot be reached
+	 */
+	public ShardedResolver(int[] ports) throws IOException {
+		sockets = new Socket[ports.length];
+		inputs = new DataInputStream[ports.length];
+		outputs = new DataOutputStream[ports.length];
+		readers = Executors.newFixedThreadPool(Math.max(1, ports.length), task -> {
+			Thread reader = new Thread(task, "shard-reader");
+			reader.setDaemon(true);
+			return reader;
+		});
+		for (int i = 0; i < ports.length; i++) {
+			sockets[i] = new Socket(InetAddress.getLoopbackAddress(), ports[i]);
+			sockets[i].setTcpNoDelay(true);
+			inputs[i] = new DataInputStream(new BufferedInputStream(sockets[i].getInputStream(), 1 << 16));
+			outputs[i] = new DataOutputStream(new BufferedOutputStream(sockets[i].getOutputStream(), 1 << 16));
+		}
+	}
+	
+	/**
+	 * Starts shardCount ShardServer JVMs for a registry on this machine and 
+	 * connects to them. The processes are stopped by close().
+	 * 
+	 * @param registryPath the json registry every shard loads its part from
+	 * @param shardCount the number of shard processes
+	 * @return the connected coordinator
+	 * @throws IOException if a shard fails to start
+	 */
+	public static ShardedResolver launch(String registryPath, int shardCount) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String classpath = classpath();
+		
+		List<Process> started = new ArrayList<Process>();
+		int[] ports = new int[shardCount];
+		try {
+			for (int shard = 0; shard < shardCount; shard++) {
+				ProcessBuilder builder = new ProcessBuilder(java, "-cp", classpath, "ShardServer", 
+						registryPath, String.valueOf(shard), String.valueOf(shardCount));
+				builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+				started.add(builder.start());
+			}
+			
+			// wait for every shard to report its port
+			for (int shard = 0; shard < shardCount; shard++) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(started.get(shard).getInputStream()));
+				String line = reader.readLine();
+				if (line == null || line.startsWith("READY ") == false) {
+					throw new IOException("shard " + shard + " failed to start");
+				}
+				ports[shard] = Integer.parseInt(line.substring("READY ".length()).trim());
+			}
+			
+			ShardedResolver resolver = new ShardedResolver(ports);
+			resolver.processes.addAll(started);
+			return resolver;
+		}
+		catch (IOException e) {
+			for (Process process : started) {
+				process.destroy();
+			}
+			throw e;
+		}
+	}
+	
+	/*
+	 * Returns a class path for the shard JVMs: where this project and
+	 * json-simple were loaded from, followed by the current class path.
+	 */
+	private static String classpath() {
+		StringBuilder path = new StringBuilder();
+		for (Class<?> type : new Class<?>[] { ShardServer.class, JSONParser.class }) {
+			CodeSource source = type.getProtectionDomain().getCodeSource();
+			if (source != null) {
+				try {
+					path.append(new File(source.getLocation().toURI()).getPath()).append(File.pathSeparator);
+				}
+				catch (URISyntaxException e) {
+					// fall back to the class path below
+				}
+			}
+		}
+		return path.append(System.getProperty("java.class.path")).toString();
+	}
+	
+	/**
+	 * Returns the shard of a package.
+	 * 
+	 * @param name the package name
+	 * @param shardCount the number of shards
+	 * @return a shard index between 0 and shardCount-1
+	 */
+	public static int shardOf(String name, int shardCount) {
+		int h = name.hashCode() * 0x9E3779B9;
+		return Math.floorMod(h ^ (h >>> 16), shardCount);
+	}
+	
+	/**
+	 * Given a package name, returns a list of packages in a valid 
+	 * installation order, fetching the closure from the shards.
+	 * 
+	 * @return List<String>, order in which the packages have to be installed
+	 * 
+	 * @throws CycleException if the closure of the package contains a cycle
+	 * 
+	 * @throws PackageNotFoundException if no shard knows the package
+	 * 
+	 * @throws IOException if a shard cannot be reached, or an earlier query 
+	 * failed with an IOException
+	 */
+	public synchronized List<String> getInstallationOrder(String pkg) 
+			throws CycleException, PackageNotFoundException, IOException {
+		if (failure != null) {
+			throw new IOException("the shard connections were closed after a failed query", failure);
+		}
+		
+		Map<String, List<String>> fetched;
+		try {
+			fetched = fetchClosure(pkg);
+		}
+		catch (IOException e) {
+			// the streams may be part way through a batch, none can be reused
+			failure = e;
+			for (Socket socket : sockets) {
+				try {
+					socket.close();
+				}
+				catch (IOException closeFailure) {
+					e.addSuppressed(closeFailure);
+				}
+			}
+			throw e;
+		}
+		if (fetched.get(pkg) == null) {
+			throw new PackageNotFoundException();
+		}
+		
+		// order the fetched subgraph locally
+		GraphBuilder builder = new GraphBuilder(fetched.size(), fetched.size() * 4);
+		for (Map.Entry<String, List<String>> entry : fetched.entrySet()) {
+			builder.addVertex(entry.getKey());
+			if (entry.getValue() != null) {
+				for (String dependency : entry.getValue()) {
+					builder.addEdge(entry.getKey(), dependency);
+				}
+			}
+		}
+		return new PackageManager(builder.buildFrozen()).getInstallationOrder(pkg);
+	}
+	
+	/**
+	 * Returns the number of shard requests made by the last query.
+	 */
+	public synchronized int getLastRoundTrips() {
+		return lastRoundTrips;
+	}
+	
+	/**
+	 * Closes the connections and stops any shards started by launch().
+	 */
+	@Override
+	public void close() throws IOException {
+		for (int i = 0; i < sockets.length; i++) {
+			try {
+				outputs[i].writeByte(ShardServer.CLOSE);
+				outputs[i].flush();
+			}
+			catch (IOException e) {
+				// shard already gone
+			}
+			sockets[i].close();
+		}
+		readers.shutdownNow();
+		for (Process process : processes) {
+			process.destroy();
+		}
+	}
+	
+	/*
+	 * Fetches the dependencies of every package reachable from pkg, one 
+	 * batch per shard per level. Unknown packages map to null.
+	 */
+	private Map<String, List<String>> fetchClosure(String pkg) throws IOException {
+		int shardCount = sockets.length;
+		Map<String, List<String>> fetched = new HashMap<String, List<String>>();
+		List<String> frontier = new ArrayList<String>();
+		frontier.add(pkg);
+		fetched.put(pkg, null);
+		lastRoundTrips = 0;
+		
+		while (frontier.isEmpty() == false) {
+			// group the frontier by shard
+			List<List<String>> batches = new ArrayList<List<String>>();
+			for (int shard = 0; shard < shardCount; shard++) {
+				batches.add(new ArrayList<String>());
+			}
+			for (String name : frontier) {
+				batches.get(shardOf(name, shardCount)).add(name);
+			}
+			
+			// start reading every shard's replies before writing its batch, 
+			// a shard answers while it is still reading
+			List<Future<List<List<String>>>> replies = new ArrayList<Future<List<List<String>>>>();
+			for (int shard = 0; shard < shardCount; shard++) {
+				int count = batches.get(shard).size();
+				DataInputStream input = inputs[shard];
+				replies.add(count == 0 ? null : readers.submit(() -> readReplies(input, count)));
+			}
+			for (int shard = 0; shard < shardCount; shard++) {
+				List<String> batch = batches.get(shard);
+				if (batch.isEmpty()) {
+					continue;
+				}
+				outputs[shard].writeByte(ShardServer.LOOKUP);
+				outputs[shard].writeInt(batch.size());
+				for (String name : batch) {
+					outputs[shard].writeUTF(name);
+				}
+				outputs[shard].flush();
+				lastRoundTrips++;
+			}
+			
+			List<String> next = new ArrayList<String>();
+			for (int shard = 0; shard < shardCount; shard++) {
+				if (replies.get(shard) == null) {
+					continue;
+				}
+				List<List<String>> lists = await(replies.get(shard));
+				List<String> batch = batches.get(shard);
+				for (int i = 0; i < batch.size(); i++) {
+					List<String> adjacent = lists.get(i);
+					if (adjacent == null) {
+						continue;
+					}
+					for (String dependency : adjacent) {
+						if (fetched.containsKey(dependency) == false) {
+							fetched.put(dependency, null);
+							next.add(dependency);
+						}
+					}
+					fetched.put(batch.get(i), adjacent);
+				}
+			}
+			frontier = next;
+		}
+		
+		return fetched;
+	}
+	
+	/*
+	 * Reads the replies to a batch of count lookups, null for unknown packages.
+	 */
+	private static List<List<String>> readReplies(DataInputStream input, int count) throws IOException {
+		List<List<String>> lists = new ArrayList<List<String>>(count);
+		for (int n = 0; n < count; n++) {
+			int degree = input.readInt();
+			if (degree < 0) {
+				lists.add(null);
+				continue;
+			}
+			List<String> adjacent = new ArrayList<String>(degree);
+			for (int i = 0; i < degree; i++) {
+				adjacent.add(input.readUTF());
+			}
+			lists.add(adjacent);
+		}
+		return lists;
+	}
+	
+	/*
+	 * Waits for the replies of a shard, rethrowing its IOException.
+	 */
+	private static List<List<String>> await(Future<List<List<String>>> reply) throws IOException {
+		try {
+			return reply.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for a shard", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("shard reply failed", e.getCause());
+		}
+	}
+}
@@ -0,0 +1,154 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for resolution across shard processes
+ * @author Stephen Fan
+ *
+ */
+class ShardedResolverTest {
+
+    /** 
+     * Tests that shard JVMs together give the same installation order as one PackageManager
+     */
+    @Test
+    public void test1_shardedInstallationOrder() {
+    	PackageManager pm = new PackageManager();
+    	
+    	try (ShardedResolver resolver = ShardedResolver.launch("jsonfile.json", 3)) {
+    		pm.constructGraph("jsonfile.json");
+    		
+    		List<String> list = resolver.getInstallationOrder("A");
+    		if (list.equals(pm.getInstallationOrder("A")) == false) {
+    			fail("Sharded installation order should match the local one");
+    		}
+    		
+    		// one batch per shard per level at most: A, {B, C}, D
+    		if (resolver.getLastRoundTrips() > 3 * 3) {
+    			fail("Lookups should be batched per shard and level");
+    		}
+    		
+    		try {
+    			resolver.getInstallationOrder("X");
+    			fail("PackageNotFoundException should have been thrown");
+    		}
+    		catch (PackageNotFoundException e) {
+    			// test passed
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown: " + e);
+    	}
+    }
+    
+    /** 
+     * Tests that streaming a registry keeps exactly the shard's part of the graph
+     */
+    @Test
+    public void test2_loadPartition() {
+    	PackageManager pm = new PackageManager();
+    	try {
+    		pm.constructGraph("typed.json");
+    		int total = 0;
+    		for (int shard = 0; shard < 3; shard++) {
+    			ShardServer streamed = ShardServer.load("typed.json", shard, 3);
+    			ShardServer copied = new ShardServer(pm.getGraph(), shard, 3);
+    			if (streamed.order() != copied.order()) {
+    				fail("shard " + shard + " should hold the same packages when streamed");
+    			}
+    			total += streamed.order();
+    		}
+    		if (total != pm.getAllPackages().size()) {
+    			fail("every package should be in exactly one shard");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown: " + e);
+    	}
+    }
+    
+    /** 
+     * Tests that a frontier much larger than the socket buffers is fetched without 
+     * blocking
+     */
+    @Test
+    public void test3_largeFrontier() {
+    	GraphBuilder builder = new GraphBuilder();
+    	String padding = "-a-long-package-name-to-fill-the-socket-buffers-quickly";
+    	for (int i = 0; i < 50000; i++) {
+    		builder.addEdge("root", "p" + i + padding);
+    	}
+    	Graph graph = builder.build();
+    	
+    	List<ShardServer> servers = new ArrayList<ShardServer>();
+    	int[] ports = new int[2];
+    	try {
+    		for (int shard = 0; shard < 2; shard++) {
+    			ShardServer server = new ShardServer(graph, shard, 2);
+    			ports[shard] = server.start(0);
+    			servers.add(server);
+    		}
+    		try (ShardedResolver resolver = new ShardedResolver(ports)) {
+    			if (resolver.getInstallationOrder("root").size() != 50001) {
+    				fail("root should have 50000 dependencies");
+    			}
+    		}
+    		for (ShardServer server : servers) {
+    			server.stop();
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown: " + e);
+    	}
+    }
+    
+    /** 
+     * Tests that a failed query closes the connections and later queries fail
+     * instead of reading stale replies
+     */
+    @Test
+    public void test4_failedShard() {
+    	try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+    		// a shard that drops the connection before answering
+    		Thread shard = new Thread(() -> {
+    			try {
+    				server.accept().close();
+    			}
+    			catch (IOException e) {
+    				// test ended
+    			}
+    		});
+    		shard.setDaemon(true);
+    		shard.start();
+    		
+    		try (ShardedResolver resolver = new ShardedResolver(new int[] { server.getLocalPort() })) {
+    			try {
+    				resolver.getInstallationOrder("A");
+    				fail("IOException should have been thrown");
+    			}
+    			catch (IOException e) {
+    				// test passed
+    			}
+    			try {
+    				resolver.getInstallationOrder("A");
+    				fail("The resolver should not be used after a failed query");
+    			}
+    			catch (IOException e) {
+    				if (e.getCause() == null) {
+    					fail("The first failure should be the cause");
+    				}
+    			}
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown: " + e);
+    	}
+    }
+}
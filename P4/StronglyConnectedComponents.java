@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * Filename:   StronglyConnectedComponents.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Strongly connected components of an IndexedGraph, found with an 
+ * iterative version of Tarjan's algorithm in linear time.
+ * 
+ * Components are numbered in the order Tarjan's algorithm completes them,
+ * which is a reverse topological order of the condensation: every edge
+ * between two different components goes from a higher to a lower number,
+ * i.e. dependencies always have lower component numbers than their 
+ * dependents.
+ */
+public class StronglyConnectedComponents {
+	// component number of every vertex
+	private final int[] component;
+	
+	// number of vertices in every component
+	private final int[] sizes;
+	
+	// true for components that are a single vertex depending on itself
+	private final boolean[] selfLoop;
+	
+	/**
+	 * Computes the components of a graph.
+	 * 
+	 * @param graph the graph
+	 */
+	public StronglyConnectedComponents(IndexedGraph graph) {
+		this(graph, DependencyKind.ALL);
+	}
+	
+	/**
+	 * Computes the components of a graph, following only edges with a
+	 * DependencyKind in mask.
+	 * 
+	 * @param graph the graph
+	 * @param mask the DependencyKind bits of the edges to follow
+	 */
+	public StronglyConnectedComponents(IndexedGraph graph, int mask) {
+		int order = graph.order();
+		component = new int[order];
+		Arrays.fill(component, -1);
+		
+		int[] index = new int[order];
+		int[] lowLink = new int[order];
+		Arrays.fill(index, -1);
+		
+		// Tarjan's stack of vertices that are not assigned to a component yet
+		int[] tarjanStack = new int[Math.max(1, order)];
+		boolean[] onStack = new boolean[order];
+		int tarjanTop = 0;
+		
+		// explicit call stack, frames share one array of dependency ids
+		int[] vertexStack = new int[16];
+		int[] nextStack = new int[16];
+		int[] endStack = new int[16];
+		int[] edges = new int[16];
+		
+		int[] componentSizes = new int[16];
+		boolean[] loops = new boolean[16];
+		int count = 0;
+		int counter = 0;
+		
+		for (int root = 0; root < order; root++) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			
+			int depth = 0;
+			int pushed = root;
+			int start = 0;
+			
+			while (true) {
+				// enter a vertex
+				if (pushed >= 0) {
+					if (depth == vertexStack.length) {
+						vertexStack = Arrays.copyOf(vertexStack, depth * 2);
+						nextStack = Arrays.copyOf(nextStack, depth * 2);
+						endStack = Arrays.copyOf(endStack, depth * 2);
+					}
+					int degree = graph.degreeOf(pushed);
+					if (edges.length < start + degree) {
+						edges = Arrays.copyOf(edges, Math.max(edges.length * 2, start + degree));
+					}
+					
+					index[pushed] = counter;
+					lowLink[pushed] = counter;
+					counter++;
+					tarjanStack[tarjanTop++] = pushed;
+					onStack[pushed] = true;
+					
+					vertexStack[depth] = pushed;
+					nextStack[depth] = start;
+					endStack[depth] = start + graph.adjacentIdsOf(pushed, mask, edges, start);
+					depth++;
+					pushed = -1;
+				}
+				
+				int top = depth - 1;
+				int vertex = vertexStack[top];
+				
+				if (nextStack[top] < endStack[top]) {
+					int node = edges[nextStack[top]++];
+					if (index[node] < 0) {
+						pushed = node;
+						start = endStack[top];
+					}
+					else if (onStack[node]) {
+						lowLink[vertex] = Math.min(lowLink[vertex], index[node]);
+					}
+					continue;
+				}
+				
+				// all dependencies done, vertex is the root of a component
+				if (lowLink[vertex] == index[vertex]) {
+					if (count == componentSizes.length) {
+						componentSizes = Arrays.copyOf(componentSizes, count * 2);
+						loops = Arrays.copyOf(loops, count * 2);
+					}
+					int size = 0;
+					int member;
+					do {
+						member = tarjanStack[--tarjanTop];
+						onStack[member] = false;
+						component[member] = count;
+						size++;
+					} while (member != vertex);
+					componentSizes[count] = size;
+					count++;
+				}
+				
+				depth--;
+				if (depth == 0) {
+					break;
+				}
+				int parent = vertexStack[depth - 1];
+				lowLink[parent] = Math.min(lowLink[parent], lowLink[vertex]);
+			}
+		}
+		
+		sizes = Arrays.copyOf(componentSizes, count);
+		selfLoop = Arrays.copyOf(loops, count);
+		
+		// a single vertex is only cyclic if it depends on itself
+		for (int vertex = 0; vertex < order; vertex++) {
+			if (sizes[component[vertex]] == 1) {
+				if (edges.length < graph.degreeOf(vertex)) {
+					edges = new int[graph.degreeOf(vertex)];
+				}
+				int degree = graph.adjacentIdsOf(vertex, mask, edges, 0);
+				for (int i = 0; i < degree; i++) {
+					if (edges[i] == vertex) {
+						selfLoop[component[vertex]] = true;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of components.
+	 */
+	public int count() {
+		return sizes.length;
+	}
+	
+	/**
+	 * Returns the component number of a vertex.
+	 */
+	public int componentOf(int vertex) {
+		return component[vertex];
+	}
+	
+	/**
+	 * Returns the number of vertices in a component.
+	 */
+	public int sizeOf(int component) {
+		return sizes[component];
+	}
+	
+	/**
+	 * Returns true if the vertices of a component depend on each other, 
+	 * i.e. it has more than one vertex or a vertex that depends on itself.
+	 */
+	public boolean isCyclic(int component) {
+		return sizes[component] > 1 || selfLoop[component];
+	}
+	
+	/**
+	 * Returns true if any component is cyclic.
+	 */
+	public boolean hasCycle() {
+		for (int c = 0; c < sizes.length; c++) {
+			if (isCyclic(c)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
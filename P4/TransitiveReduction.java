@@ -0,0 +1,248 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Filename:   TransitiveReduction.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Offline pass that removes redundant dependency edges.
+ * 
+ * An edge A -> C is redundant when C is also reachable from A through 
+ * another path, e.g. A -> B -> C. The reduced graph has the same vertices
+ * and every package has exactly the same transitive closure, so 
+ * installation orders contain the same packages and remain valid, but
+ * traversals follow fewer edges.
+ * 
+ * The reduction works on the condensation of the graph (one vertex per 
+ * strongly connected component), so graphs with cycles are handled too:
+ * edges inside a component are kept, as are the edges needed between 
+ * components. Components are reduced in parallel on the common fork/join
+ * pool.
+ * 
+ * Every DependencyKind is reduced over its own edges and the kept edges
+ * keep the kinds they were kept for, so closures are also unchanged when
+ * only some kinds are followed. An edge is therefore only removed for a
+ * kind if another path of that kind makes it redundant.
+ */
+public class TransitiveReduction {
+	private final IndexedGraph graph;
+	private int removedEdges = -1;
+	
+	/**
+	 * Prepares the reduction of a graph. The graph itself is not changed.
+	 * 
+	 * @param graph the graph to reduce
+	 */
+	public TransitiveReduction(GraphADT graph) {
+		if (graph instanceof IndexedGraph) {
+			this.graph = (IndexedGraph) graph;
+		}
+		else if (graph instanceof Graph) {
+			this.graph = ((Graph) graph).freeze();
+		}
+		else {
+			this.graph = FrozenGraph.of(graph);
+		}
+	}
+	
+	/**
+	 * Builds the reduced graph.
+	 * 
+	 * @return a new Graph with the same vertices and closures and no redundant edges
+	 */
+	public Graph reduce() {
+		Graph reduced = new Graph();
+		for (int vertex = 0; vertex < graph.order(); vertex++) {
+			reduced.addVertex(graph.nameOf(vertex));
+		}
+		
+		// each kind is reduced over its own edges, so closures under any mask
+		// stay the same
+		for (int kind : DependencyKind.KINDS) {
+			reduce(kind, reduced);
+		}
+		
+		removedEdges = graph.size() - reduced.size();
+		return reduced;
+	}
+	
+	/**
+	 * Returns the number of edges removed by the last call to reduce(), 
+	 * including duplicate edges, or -1 if reduce() has not been called.
+	 */
+	public int getRemovedEdgeCount() {
+		return removedEdges;
+	}
+	
+	/*
+	 * Adds to reduced the edges of one kind that are still needed when only
+	 * edges of that kind are followed.
+	 */
+	private void reduce(int kind, Graph reduced) {
+		StronglyConnectedComponents components = new StronglyConnectedComponents(graph, kind);
+		int count = components.count();
+		int order = graph.order();
+		
+		// group the vertices by component
+		int[] start = new int[count + 1];
+		for (int vertex = 0; vertex < order; vertex++) {
+			start[components.componentOf(vertex) + 1]++;
+		}
+		for (int c = 0; c < count; c++) {
+			start[c + 1] += start[c];
+		}
+		int[] members = new int[order];
+		int[] fill = Arrays.copyOf(start, count);
+		for (int vertex = 0; vertex < order; vertex++) {
+			members[fill[components.componentOf(vertex)]++] = vertex;
+		}
+		
+		// distinct successor components of every component
+		int[][] successors = condensation(components, kind, start, members);
+		
+		// for every component, mark what its successors reach and keep only
+		// the successors that are not reachable through another successor
+		int[][] kept = new int[count][];
+		ThreadLocal<int[]> marks = ThreadLocal.withInitial(() -> new int[count]);
+		ThreadLocal<int[]> stamps = ThreadLocal.withInitial(() -> new int[] { 0 });
+		IntStream.range(0, count).parallel().forEach(c -> {
+			kept[c] = reduceComponent(c, successors, marks.get(), stamps.get());
+		});
+		
+		// linked[d] == c + 1 while the kept edge c -> d has no vertex edge yet,
+		// seen[d] == vertex + 1 once vertex -> d was copied
+		int[] linked = new int[count];
+		int[] seen = new int[order];
+		int[] adjacent = new int[16];
+		for (int c = 0; c < count; c++) {
+			for (int d : kept[c]) {
+				linked[d] = c + 1;
+			}
+			for (int m = start[c]; m < start[c + 1]; m++) {
+				int vertex = members[m];
+				int degree = graph.degreeOf(vertex);
+				if (adjacent.length < degree) {
+					adjacent = new int[degree];
+				}
+				int found = graph.adjacentIdsOf(vertex, kind, adjacent, 0);
+				for (int i = 0; i < found; i++) {
+					int dependency = adjacent[i];
+					int to = components.componentOf(dependency);
+					
+					// edges inside a component are all needed, one edge per kept
+					// condensation edge is enough between components
+					boolean needed;
+					if (to == c) {
+						needed = seen[dependency] != vertex + 1;
+					}
+					else {
+						needed = linked[to] == c + 1;
+						if (needed) {
+							linked[to] = 0;
+						}
+					}
+					seen[dependency] = vertex + 1;
+					if (needed == false) {
+						continue;
+					}
+					
+					// the runtime pass comes first and only adds new edges
+					if (kind == DependencyKind.RUNTIME) {
+						reduced.addEdge(graph.nameOf(vertex), graph.nameOf(dependency));
+					}
+					else {
+						reduced.addEdge(graph.nameOf(vertex), graph.nameOf(dependency), kind);
+					}
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Builds the de-duplicated successor lists of the condensation over the
+	 * edges of one kind, from the vertices grouped by component.
+	 */
+	private int[][] condensation(StronglyConnectedComponents components, int kind, int[] start, int[] members) {
+		int count = components.count();
+		
+		int[][] successors = new int[count][];
+		int[] stamp = new int[count];
+		int[] adjacent = new int[16];
+		int[] list = new int[16];
+		for (int c = 0; c < count; c++) {
+			int size = 0;
+			for (int m = start[c]; m < start[c + 1]; m++) {
+				int vertex = members[m];
+				int degree = graph.degreeOf(vertex);
+				if (adjacent.length < degree) {
+					adjacent = new int[degree];
+				}
+				int found = graph.adjacentIdsOf(vertex, kind, adjacent, 0);
+				for (int i = 0; i < found; i++) {
+					int d = components.componentOf(adjacent[i]);
+					if (d != c && stamp[d] != c + 1) {
+						stamp[d] = c + 1;
+						if (size == list.length) {
+							list = Arrays.copyOf(list, size * 2);
+						}
+						list[size++] = d;
+					}
+				}
+			}
+			successors[c] = Arrays.copyOf(list, size);
+		}
+		return successors;
+	}
+	
+	/*
+	 * Returns the successors of component c that are not reachable from
+	 * another successor. mark is a per-thread array, stamp[0] is a per-thread
+	 * counter so mark never has to be cleared.
+	 */
+	private static int[] reduceComponent(int c, int[][] successors, int[] mark, int[] stamp) {
+		int[] direct = successors[c];
+		if (direct.length < 2) {
+			return direct;
+		}
+		
+		int current = ++stamp[0];
+		
+		// depth-first search from the successors of the successors
+		int[] stack = new int[16];
+		int top = 0;
+		for (int d : direct) {
+			for (int e : successors[d]) {
+				if (mark[e] != current) {
+					mark[e] = current;
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, top * 2);
+					}
+					stack[top++] = e;
+				}
+			}
+		}
+		while (top > 0) {
+			int e = stack[--top];
+			for (int f : successors[e]) {
+				if (mark[f] != current) {
+					mark[f] = current;
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, top * 2);
+					}
+					stack[top++] = f;
+				}
+			}
+		}
+		
+		// successors reached that way are redundant
+		int size = 0;
+		int[] result = new int[direct.length];
+		for (int d : direct) {
+			if (mark[d] != current) {
+				result[size++] = d;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+}
@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the transitive reduction pass
+ * @author Stephen Fan
+ *
+ */
+class TransitiveReductionTest {
+
+    /** 
+     * Tests that redundant and duplicate edges are removed while closures stay the same
+     */
+    @Test
+    public void test1_reduceDag() {
+    	// A -> B -> C -> D, plus redundant A -> C, A -> D, B -> D and a duplicate
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "B");
+    	graph.addEdge("A", "C");
+    	graph.addEdge("A", "D");
+    	graph.addEdge("B", "C");
+    	graph.addEdge("B", "D");
+    	graph.addEdge("B", "D");
+    	graph.addEdge("C", "D");
+    	graph.addVertex("E");
+    	
+    	TransitiveReduction reduction = new TransitiveReduction(graph);
+    	Graph reduced = reduction.reduce();
+    	
+    	if (reduced.order() != 5 || reduced.size() != 3) {
+    		fail("reduced graph should keep 5 vertices and 3 edges");
+    	}
+    	if (reduction.getRemovedEdgeCount() != 4) {
+    		fail("4 edges should be removed");
+    	}
+    	
+    	// closures are unchanged
+    	PackageManager before = new PackageManager(graph);
+    	PackageManager after = new PackageManager(reduced);
+    	try {
+    		for (String pkg : graph.getAllVertices()) {
+    			List<String> order = after.getInstallationOrder(pkg);
+    			if (new HashSet<String>(order).equals(new HashSet<String>(before.getInstallationOrder(pkg))) == false) {
+    				fail("closure of " + pkg + " changed");
+    			}
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An incorrect exception was thrown");
+    	}
+    }
+    
+    /** 
+     * Tests that edges inside cycles are kept
+     */
+    @Test
+    public void test2_reduceCyclic() {
+    	// A -> B -> A is a cycle, both depend on C, and C -> D
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "B");
+    	graph.addEdge("B", "A");
+    	graph.addEdge("A", "C");
+    	graph.addEdge("B", "C");
+    	graph.addEdge("A", "D");
+    	graph.addEdge("C", "D");
+    	
+    	TransitiveReduction reduction = new TransitiveReduction(graph);
+    	Graph reduced = reduction.reduce();
+    	
+    	// A -> B, B -> A, one edge into C and C -> D
+    	if (reduced.size() != 4 || reduction.getRemovedEdgeCount() != 2) {
+    		fail("reduced graph should have 4 edges");
+    	}
+    	if (reduced.getAdjacentVerticesOf("A").contains("B") == false 
+    			|| reduced.getAdjacentVerticesOf("B").contains("A") == false) {
+    		fail("cycle edges should be kept");
+    	}
+    }
+    
+    /** 
+     * Tests that every kind is reduced over its own edges and keeps its kinds
+     */
+    @Test
+    public void test3_reduceKinds() {
+    	// A -> C is redundant at runtime through B, but is the only test path
+    	Graph graph = new Graph();
+    	graph.addEdge("A", "B");
+    	graph.addEdge("B", "C");
+    	graph.addEdge("A", "C", DependencyKind.RUNTIME | DependencyKind.TEST);
+    	
+    	Graph reduced = new TransitiveReduction(graph).reduce();
+    	if (reduced.size() != 3) {
+    		fail("reduced graph should keep all 3 edges");
+    	}
+    	if (reduced.kindsAt("A", reduced.getAdjacentVerticesOf("A").indexOf("C")) != DependencyKind.TEST) {
+    		fail("A -> C should only be kept as a test dependency");
+    	}
+    	
+    	try {
+    		PackageManager manager = new PackageManager();
+    		manager.constructGraph("typed.json");
+    		PackageManager after = new PackageManager(new TransitiveReduction(manager.getGraph()).reduce());
+    		if (after.getInstallationOrder("app", DependencyKind.RUNTIME).equals(List.of("core", "lib", "app")) == false) {
+    			fail("runtime order of app should be core, lib, app");
+    		}
+    		if (after.getInstallationOrder("app", DependencyKind.TEST).equals(List.of("lib", "junit", "app")) == false) {
+    			fail("test order of app should be lib, junit, app");
+    		}
+    	}
+    	catch (Exception e) {
+    		fail("An unexpected exception was thrown: " + e);
+    	}
+    }
+}
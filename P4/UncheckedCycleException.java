@@ -0,0 +1,17 @@
+
+/**
+ * Wraps a CycleException where a checked exception cannot be thrown, e.g.
+ * from the Iterator returned by PackageManager.iterateInstallationOrder.
+ */
+@SuppressWarnings("serial")
+public class UncheckedCycleException extends RuntimeException {
+	
+	public UncheckedCycleException(CycleException cause) {
+		super(cause);
+	}
+	
+	@Override
+	public CycleException getCause() {
+		return (CycleException) super.getCause();
+	}
+}
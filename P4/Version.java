@@ -0,0 +1,114 @@
+/**
+ * Filename:   Version.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * A package version of the form major.minor.patch with an optional 
+ * -prerelease suffix, e.g. 1.4.2 or 2.0.0-beta. Missing parts are 0, so 
+ * 1.4 is the same as 1.4.0. A prerelease sorts before the release it 
+ * precedes.
+ */
+public class Version implements Comparable<Version> {
+	public static final Version ZERO = new Version(0, 0, 0, null);
+	
+	private final int major;
+	private final int minor;
+	private final int patch;
+	private final String prerelease;
+	
+	public Version(int major, int minor, int patch, String prerelease) {
+		this.major = major;
+		this.minor = minor;
+		this.patch = patch;
+		this.prerelease = prerelease == null || prerelease.isEmpty() ? null : prerelease;
+	}
+	
+	/**
+	 * Parses a version string.
+	 * 
+	 * @param text the version, e.g. "1.4.2"
+	 * @return the parsed version
+	 * @throws IllegalArgumentException if the text is not a version
+	 */
+	public static Version parse(String text) {
+		String value = text.trim();
+		if (value.startsWith("v")) {
+			value = value.substring(1);
+		}
+		
+		String prerelease = null;
+		int dash = value.indexOf('-');
+		if (dash >= 0) {
+			prerelease = value.substring(dash + 1);
+			value = value.substring(0, dash);
+		}
+		
+		String[] parts = value.split("\\.");
+		if (parts.length == 0 || parts.length > 3) {
+			throw new IllegalArgumentException("invalid version: " + text);
+		}
+		int[] numbers = new int[3];
+		try {
+			for (int i = 0; i < parts.length; i++) {
+				numbers[i] = Integer.parseInt(parts[i]);
+				if (numbers[i] < 0) {
+					throw new IllegalArgumentException("invalid version: " + text);
+				}
+			}
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid version: " + text);
+		}
+		
+		return new Version(numbers[0], numbers[1], numbers[2], prerelease);
+	}
+	
+	public int getMajor() {
+		return major;
+	}
+	
+	public int getMinor() {
+		return minor;
+	}
+	
+	public int getPatch() {
+		return patch;
+	}
+	
+	public String getPrerelease() {
+		return prerelease;
+	}
+	
+	public int compareTo(Version other) {
+		if (major != other.major) {
+			return Integer.compare(major, other.major);
+		}
+		if (minor != other.minor) {
+			return Integer.compare(minor, other.minor);
+		}
+		if (patch != other.patch) {
+			return Integer.compare(patch, other.patch);
+		}
+		
+		// a release is newer than any of its prereleases
+		if (prerelease == null || other.prerelease == null) {
+			return prerelease == null ? (other.prerelease == null ? 0 : 1) : -1;
+		}
+		return prerelease.compareTo(other.prerelease);
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Version && compareTo((Version) o) == 0;
+	}
+	
+	@Override
+	public int hashCode() {
+		return ((major * 31 + minor) * 31 + patch) * 31 + (prerelease == null ? 0 : prerelease.hashCode());
+	}
+	
+	@Override
+	public String toString() {
+		return major + "." + minor + "." + patch + (prerelease == null ? "" : "-" + prerelease);
+	}
+}
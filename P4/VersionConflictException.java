@@ -0,0 +1,8 @@
+
+@SuppressWarnings("serial")
+public class VersionConflictException extends Exception {
+	
+	public VersionConflictException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filename:   VersionRange.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * A constraint on package versions, in the usual npm-like syntax:
+ * 
+ *   *  or empty        any version
+ *   1.2.3 or =1.2.3    exactly 1.2.3
+ *   >1.2 >=1.2 <2 <=2  comparisons
+ *   ^1.2.3             >=1.2.3 <2.0.0 (<0.3.0 for ^0.2.3)
+ *   ~1.2.3             >=1.2.3 <1.3.0
+ * 
+ * Space separated terms must all hold and alternatives are separated by 
+ * ||, e.g. ">=1.0 <1.5 || ^2.1".
+ */
+public class VersionRange {
+	public static final VersionRange ANY = parse("*");
+	
+	// the range matches if every comparator of any alternative matches
+	private final List<List<Comparator>> alternatives;
+	private final String text;
+	
+	private VersionRange(List<List<Comparator>> alternatives, String text) {
+		this.alternatives = alternatives;
+		this.text = text;
+	}
+	
+	/**
+	 * Parses a range.
+	 * 
+	 * @param text the range, e.g. "^1.2"
+	 * @return the parsed range
+	 * @throws IllegalArgumentException if the text is not a valid range
+	 */
+	public static VersionRange parse(String text) {
+		List<List<Comparator>> alternatives = new ArrayList<List<Comparator>>();
+		
+		for (String alternative : text.split("\\|\\|")) {
+			List<Comparator> terms = new ArrayList<Comparator>();
+			for (String term : alternative.trim().split("\\s+")) {
+				if (term.isEmpty() || term.equals("*") || term.equals("x")) {
+					continue;
+				}
+				parseTerm(term, terms);
+			}
+			alternatives.add(terms);
+		}
+		
+		return new VersionRange(alternatives, text.trim().isEmpty() ? "*" : text.trim());
+	}
+	
+	/**
+	 * Returns true if a version satisfies the range.
+	 */
+	public boolean contains(Version version) {
+		for (List<Comparator> terms : alternatives) {
+			boolean matches = true;
+			for (Comparator term : terms) {
+				if (term.matches(version) == false) {
+					matches = false;
+					break;
+				}
+			}
+			if (matches) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public String toString() {
+		return text;
+	}
+	
+	/*
+	 * Adds the comparators for one term of a range.
+	 */
+	private static void parseTerm(String term, List<Comparator> terms) {
+		if (term.startsWith("^")) {
+			Version low = Version.parse(term.substring(1));
+			Version high = low.getMajor() > 0 ? new Version(low.getMajor() + 1, 0, 0, null)
+					: new Version(0, low.getMinor() + 1, 0, null);
+			terms.add(new Comparator(">=", low));
+			terms.add(new Comparator("<", high));
+		}
+		else if (term.startsWith("~")) {
+			Version low = Version.parse(term.substring(1));
+			terms.add(new Comparator(">=", low));
+			terms.add(new Comparator("<", new Version(low.getMajor(), low.getMinor() + 1, 0, null)));
+		}
+		else {
+			String operator = "=";
+			for (String candidate : new String[] { ">=", "<=", ">", "<", "=" }) {
+				if (term.startsWith(candidate)) {
+					operator = candidate;
+					break;
+				}
+			}
+			String version = operator.equals("=") && term.startsWith("=") == false ? term 
+					: term.substring(operator.length());
+			terms.add(new Comparator(operator, Version.parse(version)));
+		}
+	}
+	
+	/*
+	 * A single comparison against a version.
+	 */
+	private static class Comparator {
+		private final String operator;
+		private final Version version;
+		
+		Comparator(String operator, Version version) {
+			this.operator = operator;
+			this.version = version;
+		}
+		
+		boolean matches(Version candidate) {
+			int comparison = candidate.compareTo(version);
+			switch (operator) {
+				case ">=":
+					return comparison >= 0;
+				case "<=":
+					return comparison <= 0;
+				case ">":
+					return comparison > 0;
+				case "<":
+					return comparison < 0;
+				default:
+					return comparison == 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,359 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Filename:   VersionResolver.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ *
+ * Picks one version of every required package so that all version ranges
+ * of the chosen packages are satisfied.
+ *
+ * The search assigns the most constrained package first and tries its
+ * versions from newest to oldest. When a package has no acceptable version
+ * left, the packages whose choices caused that are collected as the
+ * conflict set; the search jumps straight back to the latest of them
+ * (skipping unrelated choices) and the conflicting combination of versions
+ * is remembered, so the same dead end is never explored twice.
+ */
+public class VersionResolver {
+	// candidate versions of every package, newest first
+	private final Map<String, List<Package>> candidates;
+
+	// the single version of a package that is not in candidates, or null
+	private final Function<String, Package> fallback;
+
+	// current choice of every assigned package
+	private final Map<String, Package> assignment = new LinkedHashMap<String, Package>();
+
+	// ranges imposed on every package, with the package that imposed them
+	private final Map<String, List<Constraint>> constraints = new HashMap<String, List<Constraint>>();
+
+	// learned conflicts, indexed by every name@version they contain
+	private final Map<String, List<Map<String, Version>>> learned = new HashMap<String, List<Map<String, Version>>>();
+
+	private int decisions;
+	private int learnedHits;
+
+	/**
+	 * Creates a resolver over the given candidates.
+	 *
+	 * @param packages every known version of every package
+	 */
+	public VersionResolver(Map<String, List<Package>> packages) {
+		this(packages, name -> null);
+	}
+
+	/**
+	 * Creates a resolver over the given candidates. A package that has no
+	 * candidates is looked up with fallback when it is first needed, e.g. to
+	 * take unversioned packages from a graph instead of keeping them all.
+	 *
+	 * @param packages every known version of every package
+	 * @param fallback returns the only version of a package that is not in
+	 * packages, or null if the package is not known
+	 */
+	public VersionResolver(Map<String, List<Package>> packages, Function<String, Package> fallback) {
+		this.fallback = fallback;
+		candidates = new HashMap<String, List<Package>>();
+		for (Map.Entry<String, List<Package>> entry : packages.entrySet()) {
+			List<Package> versions = new ArrayList<Package>(entry.getValue());
+			versions.sort((a, b) -> b.getParsedVersion().compareTo(a.getParsedVersion()));
+			candidates.put(entry.getKey(), versions);
+		}
+	}
+
+	/**
+	 * Resolves the versions needed to install a package.
+	 *
+	 * @param name the package to install
+	 * @param range the acceptable versions of that package
+	 * @return Map from package name to the chosen version of it, for the
+	 * package and everything it transitively depends upon
+	 * @throws PackageNotFoundException if the package is not known
+	 * @throws VersionConflictException if no combination of versions satisfies
+	 * all constraints
+	 */
+	public Map<String, Package> resolve(String name, VersionRange range)
+			throws PackageNotFoundException, VersionConflictException {
+		if (versionsOf(name).isEmpty()) {
+			throw new PackageNotFoundException();
+		}
+
+		// learned conflicts depend on the root range, so they are kept per call
+		assignment.clear();
+		constraints.clear();
+		learned.clear();
+		decisions = 0;
+		learnedHits = 0;
+
+		// the root constraint has no origin
+		addConstraint(name, range, null);
+		Set<String> conflict = solve();
+		if (conflict != null) {
+			throw new VersionConflictException("no versions of " + name + " " + range
+					+ " satisfy all dependency constraints");
+		}
+
+		return new LinkedHashMap<String, Package>(assignment);
+	}
+
+	/**
+	 * Returns the number of versions tried by the last call to resolve().
+	 */
+	public int getDecisionCount() {
+		return decisions;
+	}
+
+	/**
+	 * Returns how often a learned conflict pruned a version during the last
+	 * call to resolve().
+	 */
+	public int getLearnedConflictHits() {
+		return learnedHits;
+	}
+
+	/*
+	 * Assigns the remaining constrained packages. Returns null on success,
+	 * otherwise the names of the assigned packages responsible for the failure.
+	 */
+	private Set<String> solve() {
+		String name = pickUnassigned();
+		if (name == null) {
+			return null;
+		}
+
+		Set<String> conflict = new HashSet<String>();
+		List<Package> viable = viable(name);
+
+		for (Package candidate : viable) {
+			// skip versions that complete a learned conflict
+			Set<String> known = learnedConflict(name, candidate.getParsedVersion());
+			if (known != null) {
+				learnedHits++;
+				conflict.addAll(known);
+				continue;
+			}
+
+			decisions++;
+			assignment.put(name, candidate);
+			int added = addDependencies(candidate);
+
+			Set<String> failed = checkDependencies(candidate);
+			if (failed == null) {
+				failed = solve();
+				if (failed == null) {
+					return null;
+				}
+			}
+
+			removeDependencies(candidate, added);
+			assignment.remove(name);
+
+			// this choice was not involved, so neither is any other version of it
+			if (failed.contains(name) == false) {
+				return failed;
+			}
+			failed.remove(name);
+			conflict.addAll(failed);
+		}
+
+		// the ranges on this package restricted the versions that were tried
+		conflict.addAll(origins(name));
+		conflict.remove(null);
+		learn(conflict);
+		return conflict;
+	}
+
+	/*
+	 * Returns the unassigned package with the fewest acceptable versions, or
+	 * null if every constrained package is assigned.
+	 */
+	private String pickUnassigned() {
+		String best = null;
+		int bestCount = Integer.MAX_VALUE;
+		for (String name : constraints.keySet()) {
+			if (assignment.containsKey(name) == false) {
+				int count = viable(name).size();
+				if (count < bestCount || (count == bestCount && name.compareTo(best) < 0)) {
+					best = name;
+					bestCount = count;
+				}
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Returns the versions of a package that satisfy all of its constraints.
+	 */
+	private List<Package> viable(String name) {
+		List<Package> viable = new ArrayList<Package>();
+		for (Package candidate : versionsOf(name)) {
+			if (satisfies(name, candidate.getParsedVersion())) {
+				viable.add(candidate);
+			}
+		}
+		return viable;
+	}
+
+	/*
+	 * Returns the candidate versions of a package, newest first, looking it
+	 * up with the fallback if it has none yet.
+	 */
+	private List<Package> versionsOf(String name) {
+		List<Package> versions = candidates.get(name);
+		if (versions == null) {
+			Package pkg = fallback.apply(name);
+			versions = pkg == null ? Collections.emptyList() : Collections.singletonList(pkg);
+			candidates.put(name, versions);
+		}
+		return versions;
+	}
+
+	private boolean satisfies(String name, Version version) {
+		for (Constraint constraint : constraints.getOrDefault(name, Collections.emptyList())) {
+			if (constraint.range.contains(version) == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Checks that every dependency of a newly assigned package can still be
+	 * satisfied. Returns null if so, otherwise the responsible packages.
+	 */
+	private Set<String> checkDependencies(Package pkg) {
+		for (String dependency : dependencies(pkg)) {
+			String name = Package.dependencyName(dependency);
+			Package assigned = assignment.get(name);
+
+			if (assigned != null) {
+				if (satisfies(name, assigned.getParsedVersion()) == false) {
+					Set<String> conflict = new HashSet<String>(origins(name));
+					conflict.add(name);
+					conflict.remove(null);
+					return conflict;
+				}
+			}
+			else if (viable(name).isEmpty()) {
+				Set<String> conflict = new HashSet<String>(origins(name));
+				conflict.remove(null);
+				return conflict;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Adds the ranges of a package's dependencies and returns how many were added.
+	 */
+	private int addDependencies(Package pkg) {
+		int added = 0;
+		for (String dependency : dependencies(pkg)) {
+			addConstraint(Package.dependencyName(dependency), Package.dependencyRange(dependency), pkg.getName());
+			added++;
+		}
+		return added;
+	}
+
+	/*
+	 * Removes the ranges added by addDependencies, which are the last ones
+	 * in each list since assignments are undone in reverse order.
+	 */
+	private void removeDependencies(Package pkg, int added) {
+		String[] dependencies = dependencies(pkg);
+		for (int i = added - 1; i >= 0; i--) {
+			String name = Package.dependencyName(dependencies[i]);
+			List<Constraint> list = constraints.get(name);
+			list.remove(list.size() - 1);
+			if (list.isEmpty()) {
+				constraints.remove(name);
+			}
+		}
+	}
+
+	private void addConstraint(String name, VersionRange range, String origin) {
+		constraints.computeIfAbsent(name, k -> new ArrayList<Constraint>()).add(new Constraint(range, origin));
+	}
+
+	/*
+	 * Returns the packages that imposed ranges on a package (null for the root).
+	 */
+	private Set<String> origins(String name) {
+		Set<String> origins = new HashSet<String>();
+		for (Constraint constraint : constraints.getOrDefault(name, Collections.emptyList())) {
+			origins.add(constraint.origin);
+		}
+		return origins;
+	}
+
+	/*
+	 * Remembers that the current versions of the given packages conflict.
+	 */
+	private void learn(Set<String> conflict) {
+		if (conflict.isEmpty()) {
+			return;
+		}
+
+		Map<String, Version> nogood = new HashMap<String, Version>();
+		for (String name : conflict) {
+			nogood.put(name, assignment.get(name).getParsedVersion());
+		}
+		for (Map.Entry<String, Version> entry : nogood.entrySet()) {
+			learned.computeIfAbsent(entry.getKey() + "@" + entry.getValue(),
+					k -> new ArrayList<Map<String, Version>>()).add(nogood);
+		}
+	}
+
+	/*
+	 * Returns the other packages of a learned conflict that choosing this
+	 * version would complete, or null if there is none.
+	 */
+	private Set<String> learnedConflict(String name, Version version) {
+		for (Map<String, Version> nogood : learned.getOrDefault(name + "@" + version, Collections.emptyList())) {
+			boolean complete = true;
+			for (Map.Entry<String, Version> entry : nogood.entrySet()) {
+				if (entry.getKey().equals(name)) {
+					continue;
+				}
+				Package assigned = assignment.get(entry.getKey());
+				if (assigned == null || assigned.getParsedVersion().equals(entry.getValue()) == false) {
+					complete = false;
+					break;
+				}
+			}
+			if (complete) {
+				Set<String> others = new HashSet<String>(nogood.keySet());
+				others.remove(name);
+				return others;
+			}
+		}
+		return null;
+	}
+
+	private static String[] dependencies(Package pkg) {
+		return pkg.getDependencies() == null ? new String[0] : pkg.getDependencies();
+	}
+
+	/*
+	 * A range imposed on a package by origin, or by the caller if origin is null.
+	 */
+	private static class Constraint {
+		final VersionRange range;
+		final String origin;
+
+		Constraint(VersionRange range, String origin) {
+			this.range = range;
+			this.origin = origin;
+		}
+	}
+}
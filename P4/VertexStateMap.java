@@ -0,0 +1,90 @@
+import java.util.Arrays;
+
+/**
+ * Filename:   VertexStateMap.java
+ * Project:    p4
+ * Authors:    Stephen Fan
+ * 
+ * Traversal state of the vertices a query touches, for queries that only
+ * reach a small part of a large graph.
+ * 
+ * The ids are kept in an open-addressing table with linear probing that is
+ * at most half full, next to a byte per slot. Vertices that were never set
+ * have the default state given to the constructor, so memory and time
+ * grow with the vertices set rather than with the order of the graph.
+ */
+class VertexStateMap {
+	// marks an empty slot, ids are never negative
+	private static final int EMPTY = -1;
+	
+	private final byte defaultState;
+	private int[] ids = new int[16];
+	private byte[] states = new byte[16];
+	private int size;
+	
+	VertexStateMap(byte defaultState) {
+		this.defaultState = defaultState;
+		Arrays.fill(ids, EMPTY);
+	}
+	
+	/*
+	 * Returns the state of a vertex.
+	 */
+	byte get(int id) {
+		int slot = find(ids, id);
+		return ids[slot] == EMPTY ? defaultState : states[slot];
+	}
+	
+	/*
+	 * Sets the state of a vertex.
+	 */
+	void put(int id, byte state) {
+		int slot = find(ids, id);
+		if (ids[slot] == EMPTY) {
+			if (2 * (size + 1) > ids.length) {
+				grow();
+				slot = find(ids, id);
+			}
+			ids[slot] = id;
+			size++;
+		}
+		states[slot] = state;
+	}
+	
+	/*
+	 * Returns the number of vertices that were set.
+	 */
+	int size() {
+		return size;
+	}
+	
+	/*
+	 * Returns the slot of id, or the empty slot where it belongs.
+	 */
+	private static int find(int[] table, int id) {
+		int mask = table.length - 1;
+		int slot = (id * 0x9E3779B9) >>> 1 & mask;
+		while (table[slot] != EMPTY && table[slot] != id) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+	
+	/*
+	 * Doubles the table and moves every entry into it.
+	 */
+	private void grow() {
+		int[] oldIds = ids;
+		byte[] oldStates = states;
+		ids = new int[oldIds.length * 2];
+		states = new byte[oldIds.length * 2];
+		Arrays.fill(ids, EMPTY);
+		for (int i = 0; i < oldIds.length; i++) {
+			if (oldIds[i] != EMPTY) {
+				int slot = find(ids, oldIds[i]);
+				ids[slot] = oldIds[i];
+				states[slot] = oldStates[i];
+			}
+		}
+	}
+}